@@ -0,0 +1,89 @@
+import benchmark.NetworkHarness;
+
+/**
+ * {@link NetworkHarness NetworkHarness} driving a {@link Simulator Simulator}.
+ */
+public class SimulatorHarness implements NetworkHarness {
+
+    /**
+     * The simulator
+     */
+    private Simulator simulator;
+
+    /**
+     * Index of the next round
+     */
+    private int currExchange;
+
+    /**
+     * Sum of the looked up next hops, kept so the lookups cannot be optimised away
+     */
+    private int lookupChecksum;
+
+    @Override
+    public void setUp(String[] config) throws Exception {
+        simulator = new Simulator(config);
+        currExchange = 0;
+    }
+
+    @Override
+    public int converge(int maxRounds) {
+        int rounds = 0;
+        while (rounds < maxRounds) {
+            simulator.simulateRound(currExchange++);
+            rounds++;
+            if (simulator.isStable()) {
+                break;
+            }
+        }
+        return rounds;
+    }
+
+    @Override
+    public int sendCostsToNeighbours() {
+        int numOfNodes = simulator.getNumOfNodes();
+        for (int nodeId = 0; nodeId < numOfNodes; nodeId++) {
+            simulator.getNode(nodeId).sendCostsToNeighbours();
+        }
+        return numOfNodes;
+    }
+
+    @Override
+    public int handleCostsMsgs() {
+        int numOfNodes = simulator.getNumOfNodes();
+        for (int nodeId = 0; nodeId < numOfNodes; nodeId++) {
+            simulator.getNode(nodeId).receiveCostsFromNeighbours(null);
+        }
+        // every link carries one message in each direction
+        return 2 * simulator.getTopology().getNumOfLinks();
+    }
+
+    @Override
+    public int lookupNextHops() {
+        int numOfNodes = simulator.getNumOfNodes();
+        int checksum = 0;
+        for (int nodeId = 0; nodeId < numOfNodes; nodeId++) {
+            NetworkNode node = simulator.getNode(nodeId);
+            for (int destinationId = 0; destinationId < numOfNodes; destinationId++) {
+                checksum += node.getNextHopToDest(simulator.getNode(destinationId));
+            }
+        }
+        lookupChecksum = checksum;
+        return numOfNodes * numOfNodes;
+    }
+
+    @Override
+    public long forwardTraffic() {
+        return simulator.forwardTraffic().getPackets();
+    }
+
+    @Override
+    public boolean simulateRound() {
+        return simulator.simulateRound(currExchange++);
+    }
+
+    @Override
+    public void runSimulation(String[] config) throws Exception {
+        new Simulator(config).startSimulation();
+    }
+}
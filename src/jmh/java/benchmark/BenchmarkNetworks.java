@@ -0,0 +1,78 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the simulator configs the benchmarks run on.
+ */
+public final class BenchmarkNetworks {
+
+    /**
+     * Seed of the random networks, fixed so that runs of different releases see the same networks
+     */
+    public static final long SEED = 2016L;
+
+    /**
+     * Infinity cost of the benchmark networks. High enough for every node to learn a route to every other node.
+     */
+    public static final int INFINITY = 1 << 20;
+
+    /**
+     * Highest link cost
+     */
+    private static final int MAX_LINK_COST = 9;
+
+    private BenchmarkNetworks() {
+    }
+
+    /**
+     * Builds the config of a connected random network. The network is a random spanning tree with random links added
+     * until the nodes have the requested average degree.
+     *
+     * @param numOfNodes     number of nodes
+     * @param averageDegree  average number of neighbours per node
+     * @param splitHorizon   true to turn split horizon on
+     * @param untilStability true to stop the simulation once the network is stable
+     * @param maxExchanges   the most exchanges the simulation runs
+     * @param engineFlags    further header flags selecting the engine
+     * @return the lines of the config
+     */
+    public static String[] config(int numOfNodes, int averageDegree, boolean splitHorizon, boolean untilStability, int maxExchanges, String engineFlags) {
+        Random random = new Random(SEED);
+        List<String> lines = new ArrayList<String>();
+        lines.add("-numOfNodes " + numOfNodes + " -maxExchanges " + maxExchanges + " -untilStability " + untilStability
+                + " -splitHorizon " + (splitHorizon ? "on" : "off") + " -infinity " + INFINITY + " -verbosity quiet " + engineFlags);
+
+        HashSet<Long> links = new HashSet<Long>();
+        long numOfLinks = Math.max(numOfNodes - 1, (long) numOfNodes * averageDegree / 2);
+        long maxLinks = (long) numOfNodes * (numOfNodes - 1) / 2;
+        numOfLinks = Math.min(numOfLinks, maxLinks);
+        for (int node = 1; node < numOfNodes; node++) {
+            addLink(lines, links, random.nextInt(node), node, random);
+        }
+        while (links.size() < numOfLinks) {
+            int from = random.nextInt(numOfNodes);
+            int to = random.nextInt(numOfNodes);
+            if (from != to) {
+                addLink(lines, links, Math.min(from, to), Math.max(from, to), random);
+            }
+        }
+
+        lines.add("## links changes");
+        lines.add("## show best routes");
+        lines.add("## trace routing tables");
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * Helper method for adding a link unless the two nodes are linked already
+     */
+    private static void addLink(List<String> lines, HashSet<Long> links, int from, int to, Random random) {
+        if (links.add(((long) from << 32) | to)) {
+            lines.add(from + " " + to + " " + (1 + random.nextInt(MAX_LINK_COST)));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time from an empty network to convergence with {@code -untilStability true}, including the set up of
+ * the simulator.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ConvergenceBenchmark {
+
+    /**
+     * Upper bound on the exchanges, far above what the benchmark networks need
+     */
+    private static final int MAX_EXCHANGES = 100000;
+
+    @Param({"100", "1000"})
+    public int numOfNodes;
+
+    @Param({"4", "16"})
+    public int averageDegree;
+
+    @Param({"true", "false"})
+    public boolean splitHorizon;
+
+    /**
+     * Header flags selecting the engine, e.g. "-exchange parallel -schedule worklist"
+     */
+    @Param({"-exchange sequential"})
+    public String engineFlags;
+
+    private NetworkHarness harness;
+
+    private String[] config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        harness = NetworkHarness.create();
+        config = BenchmarkNetworks.config(numOfNodes, averageDegree, splitHorizon, true, MAX_EXCHANGES, engineFlags);
+    }
+
+    @Benchmark
+    public void untilStability() throws Exception {
+        harness.runSimulation(config);
+    }
+}
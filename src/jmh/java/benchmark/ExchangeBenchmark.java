@@ -0,0 +1,101 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the exchange on a converged network.
+ * <p>
+ * Every invocation is a sweep over all nodes, so the score is in sweeps per second. The {@code nodes} and
+ * {@code messages} counters give the throughput of single {@code sendCostsToNeighbours} and {@code handleCostsMsg}
+ * calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExchangeBenchmark {
+
+    @Param({"100", "1000"})
+    public int numOfNodes;
+
+    @Param({"4", "16"})
+    public int averageDegree;
+
+    @Param({"true", "false"})
+    public boolean splitHorizon;
+
+    /**
+     * Header flags selecting the engine, e.g. "-exchange parallel -schedule worklist"
+     */
+    @Param({"-exchange sequential"})
+    public String engineFlags;
+
+    private NetworkHarness harness;
+
+    /**
+     * Counts the nodes and messages handled per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long nodes;
+        public long messages;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+            messages = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        harness = NetworkHarness.create();
+        harness.setUp(BenchmarkNetworks.config(numOfNodes, averageDegree, splitHorizon, false, Integer.MAX_VALUE, engineFlags));
+        harness.converge(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Every node pushes its routes to its neighbours
+     */
+    @Benchmark
+    public int sendCostsToNeighbours(Counters counters) {
+        int nodes = harness.sendCostsToNeighbours();
+        counters.nodes += nodes;
+        return nodes;
+    }
+
+    /**
+     * Every node handles the routes of all its neighbours
+     */
+    @Benchmark
+    public int handleCostsMsg(Counters counters) {
+        int messages = harness.handleCostsMsgs();
+        counters.messages += messages;
+        return messages;
+    }
+
+    /**
+     * A full round of the simulator including the stability check
+     */
+    @Benchmark
+    public boolean simulateRound() {
+        return harness.simulateRound();
+    }
+}
@@ -0,0 +1,84 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Next hop lookups on a converged network, in the routing tables or in the compiled forwarding tables.
+ * <p>
+ * Every invocation looks up the next hop from every node towards every node on one thread, so the {@code lookups}
+ * counter gives the lookups per second of one core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ForwardingBenchmark {
+
+    @Param({"100", "1000"})
+    public int numOfNodes;
+
+    @Param({"4"})
+    public int averageDegree;
+
+    /**
+     * Number of subnets the nodes are grouped into, 0 for none
+     */
+    @Param({"0", "16"})
+    public int subnets;
+
+    /**
+     * True to look up the next hops in the forwarding tables
+     */
+    @Param({"false", "true"})
+    public boolean fib;
+
+    private NetworkHarness harness;
+
+    /**
+     * Counts the lookups per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long lookups;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lookups = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String engineFlags = "-exchange sequential -fib " + fib + (subnets > 0 ? " -subnets " + subnets : "");
+        harness = NetworkHarness.create();
+        harness.setUp(BenchmarkNetworks.config(numOfNodes, averageDegree, true, false, Integer.MAX_VALUE, engineFlags));
+        harness.converge(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Every node looks up its next hop towards every node
+     */
+    @Benchmark
+    public int lookupNextHops(Counters counters) {
+        int lookups = harness.lookupNextHops();
+        counters.lookups += lookups;
+        return lookups;
+    }
+}
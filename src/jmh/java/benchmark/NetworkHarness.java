@@ -0,0 +1,88 @@
+package benchmark;
+
+/**
+ * Interface through which the benchmarks drive the simulator.
+ * <p>
+ * The simulator lives in the default package, which cannot be imported from a named package and which the JMH
+ * generator does not accept for benchmark classes. The default package class {@code SimulatorHarness} implements
+ * this interface and is loaded by name.
+ */
+public interface NetworkHarness {
+
+    /**
+     * Name of the implementing class
+     */
+    String IMPLEMENTATION = "SimulatorHarness";
+
+    /**
+     * Sets up a simulator without running it
+     *
+     * @param config the lines of the simulator config
+     * @throws Exception if the config is not valid
+     */
+    void setUp(String[] config) throws Exception;
+
+    /**
+     * Simulates rounds until no routing table changes
+     *
+     * @param maxRounds the most rounds to simulate
+     * @return the number of simulated rounds
+     */
+    int converge(int maxRounds);
+
+    /**
+     * Lets every node send its routes to its neighbours once, in node id order
+     *
+     * @return the number of nodes which have sent
+     */
+    int sendCostsToNeighbours();
+
+    /**
+     * Lets every node handle the current routes of all its neighbours once
+     *
+     * @return the number of handled messages
+     */
+    int handleCostsMsgs();
+
+    /**
+     * Lets every node look up its next hop towards every other node once
+     *
+     * @return the number of lookups
+     */
+    int lookupNextHops();
+
+    /**
+     * Forwards the packets of the traffic flows of the config once
+     *
+     * @return the number of forwarded packets
+     */
+    long forwardTraffic();
+
+    /**
+     * Simulates the next round
+     *
+     * @return true if the simulation should continue
+     */
+    boolean simulateRound();
+
+    /**
+     * Sets up a simulator and runs the whole simulation
+     *
+     * @param config the lines of the simulator config
+     * @throws Exception if the config is not valid
+     */
+    void runSimulation(String[] config) throws Exception;
+
+    /**
+     * Creates the harness
+     *
+     * @return a new harness
+     */
+    static NetworkHarness create() {
+        try {
+            return Class.forName(IMPLEMENTATION).asSubclass(NetworkHarness.class).newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Harness " + IMPLEMENTATION + " not found on the class path", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packet forwarding of the traffic engine on a converged network.
+ * <p>
+ * Every invocation forwards one packet of each of the random flows hop by hop on {@code threads} threads, so the
+ * {@code packets} counter gives the packets per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrafficBenchmark {
+
+    @Param({"1000", "10000"})
+    public int numOfNodes;
+
+    @Param({"4"})
+    public int averageDegree;
+
+    /**
+     * Number of random flows
+     */
+    @Param({"100000"})
+    public int flows;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    /**
+     * True to look up the next hops in the forwarding tables
+     */
+    @Param({"false", "true"})
+    public boolean fib;
+
+    private NetworkHarness harness;
+
+    /**
+     * Counts the packets per second
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long packets;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            packets = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String engineFlags = "-exchange parallel -threads " + threads + " -fib " + fib + " -traffic " + flows + " -seed " + BenchmarkNetworks.SEED;
+        harness = NetworkHarness.create();
+        harness.setUp(BenchmarkNetworks.config(numOfNodes, averageDegree, true, false, Integer.MAX_VALUE, engineFlags));
+        harness.converge(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Forwards one packet of every flow
+     */
+    @Benchmark
+    public long forwardTraffic(Counters counters) {
+        long packets = harness.forwardTraffic();
+        counters.packets += packets;
+        return packets;
+    }
+}
@@ -0,0 +1,331 @@
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Asynchronous network exchange where every node is an actor with a bounded mailbox of advertisements.
+ * <p>
+ * The actors are lightweight tasks multiplexed over a {@link ForkJoinPool}: an actor is scheduled on the pool only
+ * while its mailbox holds messages, and only one thread runs an actor at a time, so a node only ever changes its own
+ * state and no lock is shared between nodes. At the start of an exchange every node checks its links, ages its routes
+ * and sends its advertisement to its neighbours. A node whose routes change while it reads its mailbox sends a
+ * triggered update, so the changes ripple through the network until no message is left. The exchange ends at that
+ * point, which is detected by counting the actors which are scheduled or running. Like in RIP the triggered updates
+ * are rate limited: a node sends at most {@link #MAX_TRIGGERED_UPDATES} of them per exchange and advertises any later
+ * change in the next exchange, so routes which keep changing cannot keep an exchange from ending.
+ * <p>
+ * A message sent to a full mailbox is dropped, like a datagram sent to a router whose queue is full. The routes it
+ * carried are advertised again in the next exchange.
+ */
+public class ActorExchange {
+
+    /**
+     * Number of triggered updates a node sends per exchange at most
+     */
+    private static final int MAX_TRIGGERED_UPDATES = 8;
+
+    /**
+     * The nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * Links of the network
+     */
+    private final LinkTopology topology;
+
+    /**
+     * The pool the actors run on
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The sink the output of the nodes is passed on to
+     */
+    private final SimulationEventSink sink;
+
+    /**
+     * Output buffer of every node or null if the sink does not show routing table changes
+     */
+    private final EventBuffer[] buffers;
+
+    /**
+     * The actor of every node
+     */
+    private final Actor[] actors;
+
+    /**
+     * Number of messages a mailbox holds
+     */
+    private final int mailboxSize;
+
+    /**
+     * Number of actors which are scheduled or running, plus one while the exchange is being started
+     */
+    private final AtomicInteger activeActors = new AtomicInteger();
+
+    /**
+     * Number of messages read from the mailboxes
+     */
+    private final LongAdder deliveredMessages = new LongAdder();
+
+    /**
+     * Number of messages dropped because a mailbox was full
+     */
+    private final LongAdder droppedMessages = new LongAdder();
+
+    /**
+     * The thread waiting for the exchange to end
+     */
+    private volatile Thread waiter;
+
+    /**
+     * The first error thrown by an actor during the exchange
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * Constructor
+     *
+     * @param nodes       {@link #nodes}
+     * @param topology    {@link #topology}
+     * @param threads     number of threads of the pool
+     * @param mailboxSize {@link #mailboxSize}
+     * @param sink        {@link #sink}
+     */
+    public ActorExchange(NetworkNode[] nodes, LinkTopology topology, int threads, int mailboxSize, SimulationEventSink sink) {
+        this.nodes = nodes;
+        this.topology = topology;
+        this.pool = new ForkJoinPool(threads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        this.mailboxSize = mailboxSize;
+        this.sink = sink;
+        this.actors = new Actor[nodes.length];
+        for (int i = 0; i < nodes.length; i++) {
+            actors[i] = new Actor(nodes[i]);
+        }
+        if (sink.getVerbosity() == SimulationEventSink.Verbosity.ROUTES) {
+            this.buffers = new EventBuffer[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                buffers[i] = new EventBuffer(sink.getVerbosity(), 4);
+                nodes[i].setEventSink(buffers[i]);
+            }
+        } else {
+            // nothing to keep in order
+            this.buffers = null;
+            for (NetworkNode node : nodes) {
+                node.setEventSink(NoOpEventSink.INSTANCE);
+            }
+        }
+    }
+
+    /**
+     * Simulates one network exchange and waits until no message is left
+     */
+    public void simulateExchange() {
+        waiter = Thread.currentThread();
+        failure = null;
+
+        // stay active while starting the actors so the exchange cannot end early
+        activeActors.set(1);
+        for (Actor actor : actors) {
+            actor.tickPending = true;
+            schedule(actor);
+        }
+        if (activeActors.decrementAndGet() != 0) {
+            while (activeActors.get() != 0) {
+                LockSupport.park(this);
+            }
+        }
+        flushLogs();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Getter for the number of messages read from the mailboxes. Resets the count.
+     *
+     * @return the number of messages delivered since the last call
+     */
+    public long takeDeliveredMessages() {
+        return deliveredMessages.sumThenReset();
+    }
+
+    /**
+     * Getter for the number of messages dropped because a mailbox was full. Resets the count.
+     *
+     * @return the number of messages dropped since the last call
+     */
+    public long takeDroppedMessages() {
+        return droppedMessages.sumThenReset();
+    }
+
+    /**
+     * Stops the threads of the pool
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Passes the buffered output of the nodes on in node id order
+     */
+    private void flushLogs() {
+        if (buffers == null) {
+            return;
+        }
+        for (EventBuffer buffer : buffers) {
+            if (!buffer.isEmpty()) {
+                buffer.replayTo(sink);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Helper method for scheduling an actor on the pool unless it is scheduled or running already
+     *
+     * @param actor the actor
+     */
+    private void schedule(Actor actor) {
+        if (actor.scheduled.compareAndSet(false, true)) {
+            activeActors.incrementAndGet();
+            pool.execute(actor);
+        }
+    }
+
+    /**
+     * Message carrying the advertisement of a node to one of its neighbours
+     */
+    private static final class Message {
+
+        /**
+         * The node which sent the advertisement
+         */
+        private final NetworkNode sender;
+
+        /**
+         * The advertised routes
+         */
+        private final RouteAdvertisement advertisement;
+
+        /**
+         * The neighbour slot of the sender in the receiver
+         */
+        private final int slot;
+
+        Message(NetworkNode sender, RouteAdvertisement advertisement, int slot) {
+            this.sender = sender;
+            this.advertisement = advertisement;
+            this.slot = slot;
+        }
+    }
+
+    /**
+     * Actor of one node
+     */
+    private final class Actor implements Runnable {
+
+        /**
+         * The node
+         */
+        private final NetworkNode node;
+
+        /**
+         * Messages waiting to be read
+         */
+        private final ConcurrentLinkedQueue<Message> mailbox = new ConcurrentLinkedQueue<Message>();
+
+        /**
+         * Number of messages in the mailbox, bounded by {@link #mailboxSize}
+         */
+        private final AtomicInteger queuedMessages = new AtomicInteger();
+
+        /**
+         * Set while the actor is scheduled or running
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Set when the node has to start the exchange by sending its routes
+         */
+        private volatile boolean tickPending;
+
+        /**
+         * Number of triggered updates the node has sent since the start of the exchange
+         */
+        private int triggeredUpdates;
+
+        Actor(NetworkNode node) {
+            this.node = node;
+        }
+
+        /**
+         * Puts a message into the mailbox and schedules the actor
+         *
+         * @param message the message
+         */
+        void deliver(Message message) {
+            if (queuedMessages.incrementAndGet() > mailboxSize) {
+                queuedMessages.decrementAndGet();
+                droppedMessages.increment();
+                return;
+            }
+            mailbox.offer(message);
+            schedule(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (tickPending) {
+                    tickPending = false;
+                    triggeredUpdates = 0;
+                    node.prepareExchange();
+                    sendAdvertisement();
+                }
+                Message message;
+                while ((message = mailbox.poll()) != null) {
+                    queuedMessages.decrementAndGet();
+                    deliveredMessages.increment();
+                    node.receiveAdvertisement(message.sender, message.advertisement, message.slot);
+                }
+                if (node.hasUnpublishedChanges() && triggeredUpdates < MAX_TRIGGERED_UPDATES) {
+                    // triggered update
+                    triggeredUpdates++;
+                    node.publishTriggeredUpdate();
+                    sendAdvertisement();
+                }
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                mailbox.clear();
+                queuedMessages.set(0);
+            } finally {
+                scheduled.set(false);
+                if (!mailbox.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    // messages arrived after the mailbox was emptied, the actor stays active
+                    pool.execute(this);
+                } else if (activeActors.decrementAndGet() == 0) {
+                    LockSupport.unpark(waiter);
+                }
+            }
+        }
+
+        /**
+         * Helper method for sending the published advertisement of the node to its neighbours
+         */
+        private void sendAdvertisement() {
+            int nodeId = node.getNodeId();
+            for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                if (node.isNeighbour(slot)) {
+                    actors[topology.getNeighbour(slot)].deliver(new Message(node, node.getAdvertisementFor(slot), topology.getReverseSlot(slot)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Immutable hierarchical addresses of the nodes of a network.
+ * <p>
+ * The nodes are grouped into subnets. Every subnet gets a CIDR-like prefix of the 10.0.0.0/8 block and every node an
+ * address within the prefix of its subnet. Border nodes which summarise advertise one route to the prefix of their
+ * subnet to the neighbours in other subnets, in place of the routes to every node of the subnet. The routes to the
+ * prefixes are kept in the routing tables like routes to nodes, under the destination ids
+ * [numOfNodes, numOfNodes + numOfSubnets), so a node outside a subnet only needs one route for all of its nodes.
+ */
+public class AddressPlan {
+
+    /**
+     * The first address of the block the subnets are taken from, 10.0.0.0
+     */
+    private static final int BASE_ADDRESS = 10 << 24;
+
+    /**
+     * Length of the prefix of the block the subnets are taken from
+     */
+    private static final int BASE_PREFIX_LENGTH = 8;
+
+    /**
+     * Number of nodes of the network
+     */
+    private final int numOfNodes;
+
+    /**
+     * Number of subnets
+     */
+    private final int numOfSubnets;
+
+    /**
+     * The subnet of every node, indexed by node id
+     */
+    private final int[] subnetOf;
+
+    /**
+     * The index of every node within its subnet, indexed by node id
+     */
+    private final int[] hostOf;
+
+    /**
+     * Number of bits of the addresses which tell the nodes of a subnet apart
+     */
+    private final int hostBits;
+
+    /**
+     * Ids of the nodes which summarise the routes to their subnet
+     */
+    private final BitSet summarizing;
+
+    /**
+     * Constructor
+     *
+     * @param subnetOf     {@link #subnetOf}
+     * @param numOfSubnets {@link #numOfSubnets}
+     * @param summarizing  {@link #summarizing}
+     * @throws Exception if the subnets do not fit into the address block
+     */
+    public AddressPlan(int[] subnetOf, int numOfSubnets, BitSet summarizing) throws Exception {
+        this.numOfNodes = subnetOf.length;
+        this.numOfSubnets = numOfSubnets;
+        this.subnetOf = subnetOf;
+        this.summarizing = summarizing;
+
+        // number the nodes of every subnet in the order of their ids
+        int[] subnetSizes = new int[numOfSubnets];
+        hostOf = new int[numOfNodes];
+        int largestSubnet = 0;
+        for (int nodeId = 0; nodeId < numOfNodes; nodeId++) {
+            hostOf[nodeId] = subnetSizes[subnetOf[nodeId]]++;
+            largestSubnet = Math.max(largestSubnet, subnetSizes[subnetOf[nodeId]]);
+        }
+
+        hostBits = bitsFor(largestSubnet);
+        if (BASE_PREFIX_LENGTH + bitsFor(numOfSubnets) + hostBits > 32) {
+            throw new Exception("The subnets do not fit into the addresses of " + formatAddress(BASE_ADDRESS) + "/" + BASE_PREFIX_LENGTH + ".");
+        }
+    }
+
+    /**
+     * Finds the border nodes of the subnets: the nodes with a link to a node of another subnet
+     *
+     * @param topology the links of the network
+     * @param subnetOf the subnet of every node
+     * @return the ids of the border nodes
+     */
+    public static BitSet borderNodes(LinkTopology topology, int[] subnetOf) {
+        BitSet borders = new BitSet(subnetOf.length);
+        for (int nodeId = 0; nodeId < subnetOf.length; nodeId++) {
+            for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                if (subnetOf[topology.getNeighbour(slot)] != subnetOf[nodeId]) {
+                    borders.set(nodeId);
+                    break;
+                }
+            }
+        }
+        return borders;
+    }
+
+    /**
+     * Splits the subnets which are not connected regions of the network into one subnet per connected region. A prefix
+     * summarised by the border nodes of one region would draw the traffic for the nodes of the other regions too.
+     *
+     * @param topology the links of the network
+     * @param subnetOf the subnet of every node
+     * @return the subnet of every node, numbered from 0 in the order of the lowest node id of every subnet
+     */
+    public static int[] contiguousSubnets(LinkTopology topology, int[] subnetOf) {
+        int numOfNodes = subnetOf.length;
+        int[] contiguous = new int[numOfNodes];
+        Arrays.fill(contiguous, -1);
+        int[] queue = new int[numOfNodes];
+        int numOfSubnets = 0;
+        for (int start = 0; start < numOfNodes; start++) {
+            if (contiguous[start] != -1) {
+                continue;
+            }
+            // breadth first search within the subnet of the start node
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            contiguous[start] = numOfSubnets;
+            while (head < tail) {
+                int nodeId = queue[head++];
+                for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                    int neighbourId = topology.getNeighbour(slot);
+                    if (contiguous[neighbourId] == -1 && subnetOf[neighbourId] == subnetOf[start]) {
+                        contiguous[neighbourId] = numOfSubnets;
+                        queue[tail++] = neighbourId;
+                    }
+                }
+            }
+            numOfSubnets++;
+        }
+        return contiguous;
+    }
+
+    public int getNumOfSubnets() {
+        return numOfSubnets;
+    }
+
+    /**
+     * @return the number of destinations a routing table can hold: the nodes and the prefixes of the subnets
+     */
+    public int getNumOfDestinations() {
+        return numOfNodes + numOfSubnets;
+    }
+
+    /**
+     * @param nodeId the node id
+     * @return the subnet of the node
+     */
+    public int getSubnet(int nodeId) {
+        return subnetOf[nodeId];
+    }
+
+    /**
+     * @param subnet the subnet
+     * @return the destination id of the prefix of the subnet
+     */
+    public int getPrefixId(int subnet) {
+        return numOfNodes + subnet;
+    }
+
+    /**
+     * @param destinationId the destination id
+     * @return true if the destination is the prefix of a subnet rather than a node
+     */
+    public boolean isPrefix(int destinationId) {
+        return destinationId >= numOfNodes;
+    }
+
+    /**
+     * @param prefixId the destination id of a prefix
+     * @return the subnet of the prefix
+     */
+    public int getPrefixSubnet(int prefixId) {
+        return prefixId - numOfNodes;
+    }
+
+    /**
+     * @param nodeId the node id
+     * @return true if the node advertises the prefix of its subnet to the neighbours in other subnets
+     */
+    public boolean isSummarizing(int nodeId) {
+        return summarizing.get(nodeId);
+    }
+
+    /**
+     * @return the number of nodes which summarise their subnet
+     */
+    public int getNumOfSummarizingNodes() {
+        return summarizing.cardinality();
+    }
+
+    /**
+     * @return the length of the prefixes of the subnets
+     */
+    public int getPrefixLength() {
+        return 32 - hostBits;
+    }
+
+    /**
+     * @param nodeId the node id
+     * @return the address of the node, e.g. 10.0.3.7
+     */
+    public String getAddress(int nodeId) {
+        return formatAddress(getNumericAddress(nodeId));
+    }
+
+    /**
+     * @param nodeId the node id
+     * @return the address of the node as a 32-bit number
+     */
+    public int getNumericAddress(int nodeId) {
+        return subnetAddress(subnetOf[nodeId]) | hostOf[nodeId];
+    }
+
+    /**
+     * @param subnet the subnet
+     * @return the first address of the prefix of the subnet as a 32-bit number
+     */
+    public int getNumericPrefix(int subnet) {
+        return subnetAddress(subnet);
+    }
+
+    /**
+     * @param subnet the subnet
+     * @return the prefix of the subnet, e.g. 10.0.3.0/24
+     */
+    public String getPrefix(int subnet) {
+        return formatAddress(subnetAddress(subnet)) + "/" + getPrefixLength();
+    }
+
+    /**
+     * Helper method for finding the first address of a subnet
+     */
+    private int subnetAddress(int subnet) {
+        return BASE_ADDRESS | (subnet << hostBits);
+    }
+
+    /**
+     * Helper method for finding the number of bits needed to tell a number of values apart
+     */
+    private static int bitsFor(int values) {
+        return values <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(values - 1);
+    }
+
+    /**
+     * Helper method for formatting an address in dotted decimal notation
+     */
+    private static String formatAddress(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "." + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+    }
+}
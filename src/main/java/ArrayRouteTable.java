@@ -0,0 +1,448 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Routing table backed by dense primitive arrays indexed by the destination's node ID.
+ * <p>
+ * Node ids are dense in the range [0, numOfNodes) so every destination has a fixed slot and no entry objects are
+ * created during the exchange.
+ */
+public class ArrayRouteTable implements RouteTable {
+
+    /**
+     * Cost value of a slot which does not hold a route
+     */
+    private static final int NO_ROUTE = -1;
+
+    /**
+     * Listener for route table changes
+     */
+    private final NetworkNodeRouteTableListener listener;
+
+    /**
+     * Sink the routing table changes are reported to
+     */
+    private SimulationEventSink sink = NoOpEventSink.INSTANCE;
+
+    /**
+     * The id of the node this routing table belongs to.
+     */
+    private final int nodeId;
+
+    /**
+     * Infinity cost
+     */
+    private final int infinityCost;
+
+    /**
+     * Route costs indexed by destination id. {@link #NO_ROUTE} marks an unknown destination.
+     */
+    private final int[] cost;
+
+    /**
+     * Route next hops indexed by destination id.
+     */
+    private final int[] nextHop;
+
+    /**
+     * Route forget counters indexed by destination id.
+     */
+    private final byte[] forgetCounter;
+
+    /**
+     * Number of known routes, including the route to self.
+     */
+    private int size;
+
+    /**
+     * Version of the routing table. Incremented on every change.
+     */
+    private int version;
+
+    /**
+     * Destinations changed since the last snapshot
+     */
+    private final BitSet changedDestinations;
+
+    /**
+     * Destinations whose next hop has changed since they were last polled, or null if the changes are not tracked
+     */
+    private BitSet nextHopChanges;
+
+    /**
+     * Number of exchanges a destination is held down for after its route has been lost
+     */
+    private int holdDownExchanges = HOLD_DOWN_DEFAULT;
+
+    /**
+     * Costs of the lost routes and remaining exchanges of the hold-downs, indexed by destination id. Only allocated
+     * when routes are held down.
+     */
+    private int[] heldDownCost;
+    private int[] holdDownTimer;
+
+    /**
+     * Destinations currently held down
+     */
+    private final BitSet heldDown = new BitSet();
+
+    /**
+     * Constructor
+     *
+     * @param nodeId       {@link #nodeId}
+     * @param listener     {@link #listener}
+     * @param infinityCost {@link #infinityCost}
+     * @param numOfDestinations number of destinations in the network: the nodes and the prefixes of their subnets
+     */
+    public ArrayRouteTable(int nodeId, NetworkNodeRouteTableListener listener, int infinityCost, int numOfDestinations) {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        this.infinityCost = infinityCost;
+        this.cost = new int[numOfDestinations];
+        this.nextHop = new int[numOfDestinations];
+        this.forgetCounter = new byte[numOfDestinations];
+        Arrays.fill(cost, NO_ROUTE);
+        Arrays.fill(nextHop, NO_NEXT_HOP);
+
+        // creates the default entry to self
+        cost[nodeId] = 0;
+        forgetCounter[nodeId] = FORGET_AFTER_DEFAULT.byteValue();
+        size = 1;
+        changedDestinations = new BitSet(numOfDestinations);
+        changedDestinations.set(nodeId);
+    }
+
+    @Override
+    public int getCost(int destinationId) {
+        if (cost[destinationId] != NO_ROUTE) {
+            forgetCounter[destinationId] = FORGET_AFTER_DEFAULT.byteValue();
+            return cost[destinationId];
+        }
+        return infinityCost;
+    }
+
+    @Override
+    public int peekCost(int destinationId) {
+        return cost[destinationId] != NO_ROUTE ? cost[destinationId] : infinityCost;
+    }
+
+    @Override
+    public void trackNextHopChanges() {
+        nextHopChanges = new BitSet(cost.length);
+        for (int dest = 0; dest < cost.length; dest++) {
+            if (cost[dest] != NO_ROUTE) {
+                nextHopChanges.set(dest);
+            }
+        }
+    }
+
+    @Override
+    public int pollNextHopChange(int fromDestinationId) {
+        int dest = nextHopChanges.nextSetBit(fromDestinationId);
+        if (dest >= 0) {
+            nextHopChanges.clear(dest);
+        }
+        return dest;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public RouteAdvertisement getCosts() {
+        int[] destinations = new int[size];
+        int[] costs = new int[size];
+        int[] nextHops = new int[size];
+        int i = 0;
+        for (int dest = 0; dest < cost.length; dest++) {
+            if (cost[dest] != NO_ROUTE) {
+                destinations[i] = dest;
+                costs[i] = cost[dest];
+                nextHops[i] = nextHop[dest];
+                i++;
+            }
+        }
+        int[] withdrawn = getWithdrawnDestinations();
+        changedDestinations.clear();
+        return new RouteAdvertisement(version, true, destinations, costs, nextHops, size, withdrawn);
+    }
+
+    @Override
+    public RouteAdvertisement getChangedCosts() {
+        int changed = changedDestinations.cardinality();
+        int[] destinations = new int[changed];
+        int[] costs = new int[changed];
+        int[] nextHops = new int[changed];
+        int i = 0;
+        for (int dest = changedDestinations.nextSetBit(0); dest >= 0; dest = changedDestinations.nextSetBit(dest + 1)) {
+            if (cost[dest] != NO_ROUTE) {
+                destinations[i] = dest;
+                costs[i] = cost[dest];
+                nextHops[i] = nextHop[dest];
+                i++;
+            }
+        }
+        int[] withdrawn = getWithdrawnDestinations();
+        changedDestinations.clear();
+        return new RouteAdvertisement(version, false, destinations, costs, nextHops, i, withdrawn);
+    }
+
+    /**
+     * Helper method for finding the changed destinations which no longer have a route
+     *
+     * @return the withdrawn destinations in ascending order
+     */
+    private int[] getWithdrawnDestinations() {
+        int[] withdrawn = new int[changedDestinations.cardinality()];
+        int i = 0;
+        for (int dest = changedDestinations.nextSetBit(0); dest >= 0; dest = changedDestinations.nextSetBit(dest + 1)) {
+            if (cost[dest] == NO_ROUTE) {
+                withdrawn[i++] = dest;
+            }
+        }
+        return i == withdrawn.length ? withdrawn : Arrays.copyOf(withdrawn, i);
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public void removeNeighbour(int neighbourId) {
+        // remove the neighbouring node
+        if (removeEntryForDest(neighbourId)) {
+            // for clarity
+            sink.neighbourRemoved(nodeId, neighbourId);
+        }
+
+        // find and remove all entries learned from the neighbour
+        for (int dest = 0; dest < cost.length; dest++) {
+            if (dest != nodeId && cost[dest] != NO_ROUTE && nextHop[dest] == neighbourId) {
+                // for clarity
+                sink.routeDropped(nodeId, dest, cost[dest], neighbourId, SimulationEventSink.DropReason.NEIGHBOUR_REMOVED);
+
+                // entry learned from the neighbour => remove entry
+                removeEntryForDest(dest);
+            }
+        }
+    }
+
+    /**
+     * Helper method for removing an entry for a particular destination
+     *
+     * @param destinationId the destination node id
+     * @return true if an entry was really removed
+     */
+    private boolean removeEntryForDest(int destinationId) {
+        if (cost[destinationId] == NO_ROUTE) {
+            return false;
+        }
+        if (holdDownExchanges > 0) {
+            heldDownCost[destinationId] = cost[destinationId];
+            holdDownTimer[destinationId] = holdDownExchanges;
+            heldDown.set(destinationId);
+        }
+        if (nextHopChanges != null) {
+            nextHopChanges.set(destinationId);
+        }
+        cost[destinationId] = NO_ROUTE;
+        nextHop[destinationId] = NO_NEXT_HOP;
+        size--;
+        version++;
+        changedDestinations.set(destinationId);
+
+        // notify the listener if an entry was really removed
+        listener.onRouteTableUpdate(this.nodeId);
+        return true;
+    }
+
+    @Override
+    public int reduceAllForgetCounters() {
+        int removed = 0;
+        for (int dest = 0; dest < cost.length; dest++) {
+            if (dest != nodeId && cost[dest] != NO_ROUTE) {
+                forgetCounter[dest]--;
+                if (forgetCounter[dest] <= 0) {
+                    sink.routeDropped(nodeId, dest, cost[dest], nextHop[dest], SimulationEventSink.DropReason.TIMEOUT);
+                    removeEntryForDest(dest);
+                    removed++;
+                }
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void logDestCost(int destinationId, int newCost, int senderId) {
+        // record the new entry ( override old value if exists )
+        if (cost[destinationId] == NO_ROUTE) {
+            size++;
+        }
+        if (nextHopChanges != null && (cost[destinationId] == NO_ROUTE || nextHop[destinationId] != senderId)) {
+            nextHopChanges.set(destinationId);
+        }
+        cost[destinationId] = newCost;
+        nextHop[destinationId] = senderId;
+        forgetCounter[destinationId] = FORGET_AFTER_DEFAULT.byteValue();
+        heldDown.clear(destinationId);
+        version++;
+        changedDestinations.set(destinationId);
+
+        // notify listener for change in routing table
+        listener.onRouteTableUpdate(nodeId);
+
+        // for clarity
+        sink.routeLogged(nodeId, destinationId, newCost, senderId);
+    }
+
+    @Override
+    public int getNextHopTowardsDest(int destinationId) {
+        if (cost[destinationId] != NO_ROUTE) {
+            return nextHop[destinationId];
+        }
+        return NO_NEXT_HOP;
+    }
+
+    @Override
+    public void setEventSink(SimulationEventSink sink) {
+        this.sink = sink;
+    }
+
+    @Override
+    public int getInfinityCost() {
+        return infinityCost;
+    }
+
+    @Override
+    public void dropRoute(int destinationId) {
+        int droppedNextHop = nextHop[destinationId];
+        if (removeEntryForDest(destinationId)) {
+            // for clarity
+            sink.routeDropped(nodeId, destinationId, infinityCost, droppedNextHop, SimulationEventSink.DropReason.INFINITY);
+        }
+    }
+
+    @Override
+    public void withdrawRoute(int destinationId) {
+        int droppedCost = cost[destinationId];
+        int droppedNextHop = nextHop[destinationId];
+        if (removeEntryForDest(destinationId)) {
+            // for clarity
+            sink.routeDropped(nodeId, destinationId, droppedCost, droppedNextHop, SimulationEventSink.DropReason.WITHDRAWN);
+        }
+    }
+
+    @Override
+    public void setHoldDown(int holdDownExchanges) {
+        this.holdDownExchanges = holdDownExchanges;
+        if (holdDownExchanges > 0 && heldDownCost == null) {
+            heldDownCost = new int[cost.length];
+            holdDownTimer = new int[cost.length];
+        }
+    }
+
+    @Override
+    public boolean isHeldDown(int destinationId, int newCost) {
+        return heldDown.get(destinationId) && newCost >= heldDownCost[destinationId];
+    }
+
+    @Override
+    public int reduceHoldDownTimers() {
+        int heldDownDestinations = heldDown.cardinality();
+        for (int dest = heldDown.nextSetBit(0); dest >= 0; dest = heldDown.nextSetBit(dest + 1)) {
+            if (--holdDownTimer[dest] <= 0) {
+                heldDown.clear(dest);
+            }
+        }
+        return heldDownDestinations;
+    }
+
+    @Override
+    public void writeCheckpoint(CheckpointWriter out) throws IOException {
+        out.putInt(version);
+        out.putInt(size);
+        for (int dest = 0; dest < cost.length; dest++) {
+            if (cost[dest] != NO_ROUTE) {
+                out.putInt(dest);
+                out.putInt(cost[dest]);
+                out.putInt(nextHop[dest]);
+                out.putInt(forgetCounter[dest]);
+            }
+        }
+        out.putInt(changedDestinations.cardinality());
+        for (int dest = changedDestinations.nextSetBit(0); dest >= 0; dest = changedDestinations.nextSetBit(dest + 1)) {
+            out.putInt(dest);
+        }
+        out.putInt(heldDown.cardinality());
+        for (int dest = heldDown.nextSetBit(0); dest >= 0; dest = heldDown.nextSetBit(dest + 1)) {
+            out.putInt(dest);
+            out.putInt(heldDownCost[dest]);
+            out.putInt(holdDownTimer[dest]);
+        }
+    }
+
+    @Override
+    public void readCheckpoint(CheckpointReader in) throws IOException {
+        version = in.getInt();
+        size = in.getInt();
+        int[] routes = new int[4 * size];
+        in.getInts(routes, 0, routes.length);
+        if (nextHopChanges != null) {
+            // the routes of the checkpoint replace all routes
+            nextHopChanges.set(0, cost.length);
+        }
+        Arrays.fill(cost, NO_ROUTE);
+        Arrays.fill(nextHop, NO_NEXT_HOP);
+        Arrays.fill(forgetCounter, (byte) 0);
+        for (int i = 0; i < routes.length; i += 4) {
+            cost[routes[i]] = routes[i + 1];
+            nextHop[routes[i]] = routes[i + 2];
+            forgetCounter[routes[i]] = (byte) routes[i + 3];
+        }
+        int[] changed = new int[in.getInt()];
+        in.getInts(changed, 0, changed.length);
+        changedDestinations.clear();
+        for (int dest : changed) {
+            changedDestinations.set(dest);
+        }
+        int[] held = new int[3 * in.getInt()];
+        in.getInts(held, 0, held.length);
+        heldDown.clear();
+        if (holdDownExchanges > 0) {
+            // the hold-downs only matter if this simulation holds routes down too
+            for (int i = 0; i < held.length; i += 3) {
+                heldDown.set(held[i]);
+                heldDownCost[held[i]] = held[i + 1];
+                holdDownTimer[held[i]] = held[i + 2];
+            }
+        }
+    }
+
+    /**
+     * Helper method for boxing a next hop the way it is printed
+     *
+     * @param destinationId the destination node id
+     * @return the next hop or null for the route to self
+     */
+    private Integer printableNextHop(int destinationId) {
+        return nextHop[destinationId] == NO_NEXT_HOP ? null : nextHop[destinationId];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("RouteTable for node : " + nodeId + "\n");
+        b.append("\tdest cost next\n");
+        for (int dest = 0; dest < cost.length; dest++) {
+            if (cost[dest] != NO_ROUTE) {
+                String format = String.format("\t%4d%5d%5d\n", dest, cost[dest], printableNextHop(dest));
+                b.append(format);
+            }
+        }
+
+        return b.toString();
+    }
+}
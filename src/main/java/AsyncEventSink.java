@@ -0,0 +1,223 @@
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Sink which passes the simulation output to another sink on a writer thread.
+ * <p>
+ * Events below the verbosity of the target are skipped on the calling thread. The others are recorded in an
+ * {@link EventBuffer EventBuffer} and handed to the writer thread once the buffer is full or the output is flushed,
+ * so the simulation only pays for copying a few ints per event. Buffers are recycled and at most
+ * {@link #MAX_QUEUED_BUFFERS} of them wait for the writer, after which the simulation waits for it to catch up.
+ */
+public class AsyncEventSink implements SimulationEventSink {
+
+    /**
+     * Number of events handed to the writer thread at once
+     */
+    private static final int EVENTS_PER_BUFFER = 4096;
+
+    /**
+     * Number of full buffers which may wait for the writer thread
+     */
+    private static final int MAX_QUEUED_BUFFERS = 16;
+
+    /**
+     * Marker asking the writer thread to flush the target
+     */
+    private static final EventBuffer FLUSH = new EventBuffer(Verbosity.QUIET, 1);
+
+    /**
+     * Marker asking the writer thread to flush the target and stop
+     */
+    private static final EventBuffer CLOSE = new EventBuffer(Verbosity.QUIET, 1);
+
+    /**
+     * The sink the output is passed to
+     */
+    private final SimulationEventSink target;
+
+    /**
+     * The verbosity of the target
+     */
+    private final Verbosity verbosity;
+
+    /**
+     * Buffers waiting for the writer thread
+     */
+    private final BlockingQueue<EventBuffer> queuedBuffers = new ArrayBlockingQueue<EventBuffer>(MAX_QUEUED_BUFFERS + 2);
+
+    /**
+     * Buffers the writer thread has emptied
+     */
+    private final BlockingQueue<EventBuffer> freeBuffers = new ArrayBlockingQueue<EventBuffer>(MAX_QUEUED_BUFFERS + 1);
+
+    /**
+     * Released by the writer thread every time it has flushed the target
+     */
+    private final Semaphore flushed = new Semaphore(0);
+
+    /**
+     * The writer thread
+     */
+    private final Thread writer;
+
+    /**
+     * The buffer the events are currently recorded in
+     */
+    private EventBuffer buffer;
+
+    /**
+     * Constructor. Starts the writer thread.
+     *
+     * @param target {@link #target}
+     */
+    public AsyncEventSink(SimulationEventSink target) {
+        this.target = target;
+        this.verbosity = target.getVerbosity();
+        this.buffer = new EventBuffer(verbosity, EVENTS_PER_BUFFER);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBuffers();
+            }
+        }, "simulation-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public Verbosity getVerbosity() {
+        return verbosity;
+    }
+
+    @Override
+    public void routeLogged(int nodeId, int destinationId, int cost, int nextHop) {
+        if (verbosity == Verbosity.ROUTES) {
+            buffer.routeLogged(nodeId, destinationId, cost, nextHop);
+            handOverIfFull();
+        }
+    }
+
+    @Override
+    public void routeDropped(int nodeId, int destinationId, int cost, int nextHop, DropReason reason) {
+        if (verbosity == Verbosity.ROUTES) {
+            buffer.routeDropped(nodeId, destinationId, cost, nextHop, reason);
+            handOverIfFull();
+        }
+    }
+
+    @Override
+    public void neighbourRemoved(int nodeId, int neighbourId) {
+        if (verbosity == Verbosity.ROUTES) {
+            buffer.neighbourRemoved(nodeId, neighbourId);
+            handOverIfFull();
+        }
+    }
+
+    @Override
+    public void roundFinished(int round, int changedNodes) {
+        if (verbosity != Verbosity.QUIET) {
+            buffer.roundFinished(round, changedNodes);
+            handOverIfFull();
+        }
+    }
+
+    @Override
+    public void message(String text) {
+        if (verbosity != Verbosity.QUIET) {
+            buffer.message(text);
+            handOverIfFull();
+        }
+    }
+
+    @Override
+    public void flush() {
+        handOver();
+        enqueue(FLUSH);
+        flushed.acquireUninterruptibly();
+    }
+
+    @Override
+    public void close() {
+        handOver();
+        enqueue(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the current buffer to the writer thread once it holds {@link #EVENTS_PER_BUFFER} events
+     */
+    private void handOverIfFull() {
+        if (buffer.size() >= EVENTS_PER_BUFFER) {
+            handOver();
+        }
+    }
+
+    /**
+     * Hands the current buffer to the writer thread and continues with an empty one
+     */
+    private void handOver() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        enqueue(buffer);
+        buffer = freeBuffers.poll();
+        if (buffer == null) {
+            buffer = new EventBuffer(verbosity, EVENTS_PER_BUFFER);
+        }
+    }
+
+    /**
+     * Helper method for queueing a buffer for the writer thread. Waits while the queue is full.
+     *
+     * @param queued the buffer
+     */
+    private void enqueue(EventBuffer queued) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queuedBuffers.put(queued);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Body of the writer thread
+     */
+    private void writeBuffers() {
+        try {
+            while (true) {
+                EventBuffer queued = queuedBuffers.take();
+                if (queued == FLUSH) {
+                    target.flush();
+                    flushed.release();
+                } else if (queued == CLOSE) {
+                    target.close();
+                    return;
+                } else {
+                    queued.replayTo(target);
+                    queued.clear();
+                    freeBuffers.offer(queued);
+                    if (queuedBuffers.isEmpty()) {
+                        // nothing else to write for now
+                        target.flush();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // the writer is a daemon thread so the remaining output is lost only when the simulator is killed
+            Thread.currentThread().interrupt();
+        }
+    }
+}
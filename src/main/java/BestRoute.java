@@ -0,0 +1,93 @@
+/**
+ * Immutable result of following the next hops from one node towards another.
+ */
+public class BestRoute {
+
+    /**
+     * How the next hops ended.
+     */
+    public enum Outcome {
+        /**
+         * The next hops reached the destination
+         */
+        REACHED,
+        /**
+         * The next hops led back to a node already on the route
+         */
+        LOOP,
+        /**
+         * A node on the route has no next hop towards the destination
+         */
+        NO_NEXT_HOP
+    }
+
+    /**
+     * The start of the route
+     */
+    private final int fromNodeId;
+
+    /**
+     * The end of the route
+     */
+    private final int toNodeId;
+
+    /**
+     * The nodes after the start, in order. Ends with the destination if it was reached and with the node which
+     * closes the loop if the next hops loop.
+     */
+    private final int[] hops;
+
+    /**
+     * How the next hops ended
+     */
+    private final Outcome outcome;
+
+    /**
+     * Constructor
+     *
+     * @param fromNodeId {@link #fromNodeId}
+     * @param toNodeId   {@link #toNodeId}
+     * @param hops       {@link #hops}
+     * @param outcome    {@link #outcome}
+     */
+    public BestRoute(int fromNodeId, int toNodeId, int[] hops, Outcome outcome) {
+        this.fromNodeId = fromNodeId;
+        this.toNodeId = toNodeId;
+        this.hops = hops;
+        this.outcome = outcome;
+    }
+
+    /**
+     * @return the number of nodes after the start
+     */
+    public int getHopCount() {
+        return hops.length;
+    }
+
+    /**
+     * @param i the index of the hop
+     * @return the id of the i-th node after the start
+     */
+    public int getHop(int i) {
+        return hops[i];
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder().append(fromNodeId).append(" - > ");
+        for (int i = 0; i < hops.length; i++) {
+            b.append(hops[i]);
+            if (i != hops.length - 1 || outcome == Outcome.NO_NEXT_HOP) {
+                b.append(" -> ");
+            }
+        }
+        if (outcome == Outcome.NO_NEXT_HOP) {
+            b.append(" next hop unknown yet ");
+        }
+        return b.toString();
+    }
+}
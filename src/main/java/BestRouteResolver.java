@@ -0,0 +1,358 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Resolver of the best routes between nodes, found by following the next hops of the routing tables.
+ * <p>
+ * A route is followed iteratively and the nodes already on it are marked with a stamp, so resolving a route costs
+ * O(hops). Resolved routes are cached; when the routing tables of nodes have changed {@link #invalidate(BitSet)} drops
+ * the cached routes which pass through them. {@link #checkReachability(int[], ForkJoinPool)} resolves the routes from
+ * many sources to all destinations in parallel, for one destination at a time so every node is followed once per
+ * destination.
+ */
+public class BestRouteResolver {
+
+    /**
+     * Number of destinations below which a task of the batch mode is not split any further
+     */
+    private static final int NODES_PER_TASK = 16;
+
+    /**
+     * All the nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * Stamp of every node, equal to {@link #stamp} if the node is on the route being resolved
+     */
+    private final int[] visited;
+
+    /**
+     * Stamp of the route being resolved
+     */
+    private int stamp;
+
+    /**
+     * Nodes of the route being resolved
+     */
+    private int[] path;
+
+    /**
+     * Resolved routes by {@link #key(int, int)}
+     */
+    private final HashMap<Long, BestRoute> cache = new HashMap<Long, BestRoute>();
+
+    /**
+     * Keys of the cached routes which pass through every node; the first {@link #routesThroughCount} are used
+     */
+    private final long[][] routesThrough;
+    private final int[] routesThroughCount;
+
+    /**
+     * Constructor
+     *
+     * @param nodes {@link #nodes}
+     */
+    public BestRouteResolver(NetworkNode[] nodes) {
+        this.nodes = nodes;
+        this.visited = new int[nodes.length];
+        this.path = new int[16];
+        this.routesThrough = new long[nodes.length][];
+        this.routesThroughCount = new int[nodes.length];
+    }
+
+    /**
+     * Finds the best route between two nodes, from the cache if it has been resolved since the nodes on it changed
+     *
+     * @param fromNodeId the start of the route
+     * @param toNodeId   the end of the route
+     * @return the route
+     */
+    public BestRoute resolve(int fromNodeId, int toNodeId) {
+        long key = key(fromNodeId, toNodeId);
+        BestRoute route = cache.get(key);
+        if (route == null) {
+            route = follow(fromNodeId, toNodeId);
+            cache.put(key, route);
+            addRouteThrough(fromNodeId, key);
+            for (int i = 0; i < route.getHopCount(); i++) {
+                // a loop may lead back to the start, which is indexed already
+                if (route.getHop(i) != fromNodeId) {
+                    addRouteThrough(route.getHop(i), key);
+                }
+            }
+        }
+        return route;
+    }
+
+    /**
+     * Drops the cached routes which pass through nodes whose routing tables have changed
+     *
+     * @param changedNodes ids of the nodes whose routing tables have changed
+     */
+    public void invalidate(BitSet changedNodes) {
+        for (int nodeId = changedNodes.nextSetBit(0); nodeId >= 0; nodeId = changedNodes.nextSetBit(nodeId + 1)) {
+            long[] keys = routesThrough[nodeId];
+            for (int i = 0; i < routesThroughCount[nodeId]; i++) {
+                BestRoute route = cache.remove(keys[i]);
+                if (route == null) {
+                    // dropped through another changed node already
+                    continue;
+                }
+                // unindex the dropped route from the other nodes on it
+                int fromNodeId = (int) (keys[i] >>> 32);
+                if (fromNodeId != nodeId) {
+                    removeRouteThrough(fromNodeId, keys[i]);
+                }
+                for (int j = 0; j < route.getHopCount(); j++) {
+                    int hop = route.getHop(j);
+                    if (hop != nodeId && hop != fromNodeId) {
+                        removeRouteThrough(hop, keys[i]);
+                    }
+                }
+            }
+            routesThroughCount[nodeId] = 0;
+        }
+    }
+
+    /**
+     * Helper method for following the next hops from one node towards another
+     */
+    private BestRoute follow(int fromNodeId, int toNodeId) {
+        NetworkNode toNode = nodes[toNodeId];
+        if (fromNodeId == toNodeId) {
+            return new BestRoute(fromNodeId, toNodeId, new int[0], BestRoute.Outcome.REACHED);
+        }
+        if (++stamp == 0) {
+            // the stamps wrapped around
+            Arrays.fill(visited, 0);
+            stamp = 1;
+        }
+        int length = 0;
+        int hop = fromNodeId;
+        BestRoute.Outcome outcome;
+        while (true) {
+            int nextHop = nodes[hop].getNextHopToDest(toNode);
+            if (nextHop == RouteTable.NO_NEXT_HOP) {
+                outcome = BestRoute.Outcome.NO_NEXT_HOP;
+                break;
+            }
+            if (visited[nextHop] == stamp) {
+                outcome = BestRoute.Outcome.LOOP;
+                break;
+            }
+            visited[nextHop] = stamp;
+            if (length == path.length) {
+                path = Arrays.copyOf(path, 2 * length);
+            }
+            path[length++] = nextHop;
+            if (nextHop == toNodeId) {
+                outcome = BestRoute.Outcome.REACHED;
+                break;
+            }
+            hop = nextHop;
+        }
+        return new BestRoute(fromNodeId, toNodeId, Arrays.copyOf(path, length), outcome);
+    }
+
+    /**
+     * Helper method for indexing a cached route under a node it passes through
+     */
+    private void addRouteThrough(int nodeId, long key) {
+        long[] keys = routesThrough[nodeId];
+        int count = routesThroughCount[nodeId];
+        if (keys == null) {
+            keys = routesThrough[nodeId] = new long[4];
+        } else if (count == keys.length) {
+            keys = routesThrough[nodeId] = Arrays.copyOf(keys, 2 * count);
+        }
+        keys[count] = key;
+        routesThroughCount[nodeId] = count + 1;
+    }
+
+    /**
+     * Helper method for removing a dropped route from the routes indexed under a node
+     */
+    private void removeRouteThrough(int nodeId, long key) {
+        long[] keys = routesThrough[nodeId];
+        int count = routesThroughCount[nodeId];
+        for (int i = 0; i < count; i++) {
+            if (keys[i] == key) {
+                // the order of the keys does not matter
+                keys[i] = keys[count - 1];
+                routesThroughCount[nodeId] = count - 1;
+                return;
+            }
+        }
+    }
+
+    private static long key(int fromNodeId, int toNodeId) {
+        return ((long) fromNodeId << 32) | (toNodeId & 0xffffffffL);
+    }
+
+    /**
+     * Resolves the routes from the given sources to all other nodes in parallel, without caching them. The routing
+     * tables must not change while the check runs.
+     *
+     * @param sources ids of the start nodes in ascending order
+     * @param pool    the pool the check runs on
+     * @return the reachability of the routes
+     */
+    public Reachability checkReachability(int[] sources, ForkJoinPool pool) {
+        boolean[] isSource = new boolean[nodes.length];
+        for (int source : sources) {
+            isSource[source] = true;
+        }
+        return pool.invoke(new ReachabilityTask(isSource, 0, nodes.length));
+    }
+
+    /**
+     * Counts of the resolved routes of a reachability check.
+     */
+    public static class Reachability {
+        private long routes;
+        private long reached;
+        private long loops;
+        private long noNextHop;
+        private long hops;
+        private int maxHops;
+
+        /**
+         * Helper method for adding the counts of another part of the check
+         */
+        private Reachability add(Reachability other) {
+            routes += other.routes;
+            reached += other.reached;
+            loops += other.loops;
+            noNextHop += other.noNextHop;
+            hops += other.hops;
+            maxHops = Math.max(maxHops, other.maxHops);
+            return this;
+        }
+
+        public long getRoutes() {
+            return routes;
+        }
+
+        public long getReached() {
+            return reached;
+        }
+
+        public long getLoops() {
+            return loops;
+        }
+
+        public long getNoNextHop() {
+            return noNextHop;
+        }
+
+        public int getMaxHops() {
+            return maxHops;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d routes: %d reached (%.2f%%), %d in routing loops, %d without a next hop, mean %.2f hops, longest %d hops",
+                    routes, reached, routes == 0 ? 100.0 : 100.0 * reached / routes, loops, noNextHop, reached == 0 ? 0.0 : (double) hops / reached, maxHops);
+        }
+    }
+
+    /**
+     * Task resolving the routes towards a range of destinations
+     */
+    private class ReachabilityTask extends RecursiveTask<Reachability> {
+        private static final long serialVersionUID = 1L;
+
+
+        /**
+         * Marks of the nodes still being followed while their hop counts are unknown
+         */
+        private static final int FOLLOWING = -1;
+        private static final int LOOP = -2;
+        private static final int NO_NEXT_HOP = -3;
+
+        private final boolean[] isSource;
+        private final int from;
+        private final int to;
+
+        ReachabilityTask(boolean[] isSource, int from, int to) {
+            this.isSource = isSource;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Reachability compute() {
+            if (to - from > NODES_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                ReachabilityTask left = new ReachabilityTask(isSource, from, mid);
+                left.fork();
+                Reachability right = new ReachabilityTask(isSource, mid, to).compute();
+                return left.join().add(right);
+            }
+
+            // hops[node] is the number of hops from the node to the destination, or one of the marks
+            int[] hops = new int[nodes.length];
+            int[] stamps = new int[nodes.length];
+            int[] pending = new int[16];
+            Reachability reachability = new Reachability();
+            for (int destinationId = from; destinationId < to; destinationId++) {
+                NetworkNode destination = nodes[destinationId];
+                int stamp = destinationId + 1;
+                stamps[destinationId] = stamp;
+                hops[destinationId] = 0;
+                for (int sourceId = 0; sourceId < nodes.length; sourceId++) {
+                    if (!isSource[sourceId] || sourceId == destinationId) {
+                        continue;
+                    }
+                    // follow the next hops until a node with a known result
+                    int count = 0;
+                    int hop = sourceId;
+                    int result;
+                    while (true) {
+                        if (stamps[hop] == stamp) {
+                            result = hops[hop] == FOLLOWING ? LOOP : hops[hop];
+                            break;
+                        }
+                        stamps[hop] = stamp;
+                        hops[hop] = FOLLOWING;
+                        if (count == pending.length) {
+                            pending = Arrays.copyOf(pending, 2 * count);
+                        }
+                        pending[count++] = hop;
+                        int nextHop = nodes[hop].getNextHopToDest(destination);
+                        if (nextHop == RouteTable.NO_NEXT_HOP) {
+                            result = NO_NEXT_HOP;
+                            break;
+                        }
+                        hop = nextHop;
+                    }
+
+                    // every followed node shares the result, one hop further away from the destination
+                    for (int i = count - 1; i >= 0; i--) {
+                        if (result >= 0) {
+                            result++;
+                        }
+                        hops[pending[i]] = result;
+                    }
+
+                    reachability.routes++;
+                    if (hops[sourceId] >= 0) {
+                        reachability.reached++;
+                        reachability.hops += hops[sourceId];
+                        reachability.maxHops = Math.max(reachability.maxHops, hops[sourceId]);
+                    } else if (hops[sourceId] == LOOP) {
+                        reachability.loops++;
+                    } else {
+                        reachability.noNextHop++;
+                    }
+                }
+            }
+            return reachability;
+        }
+    }
+}
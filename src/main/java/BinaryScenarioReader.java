@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class which reads a binary scenario file written by {@link BinaryScenarioWriter BinaryScenarioWriter}.
+ * <p>
+ * Every array of the file is memory mapped and copied into the heap in one go, so loading takes about as long as
+ * reading the file.
+ */
+public class BinaryScenarioReader implements ScenarioSource {
+
+    /**
+     * The file
+     */
+    private final FileChannel channel;
+
+    /**
+     * Position of the next unread byte
+     */
+    private long position;
+
+    /**
+     * Index of the current section in {@link BinaryScenarioWriter#SECTION_WIDTHS}, -1 for the links section
+     */
+    private int section = -1;
+
+    /**
+     * Records of the current section, null until the section is loaded
+     */
+    private int[] records;
+
+    /**
+     * Index of the next record of the current section
+     */
+    private int recordIndex;
+
+    /**
+     * Constructor
+     *
+     * @param channel {@link #channel}
+     */
+    public BinaryScenarioReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Opens a binary scenario file
+     *
+     * @param fileName the file name
+     * @return reader of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static BinaryScenarioReader open(String fileName) throws IOException {
+        return new BinaryScenarioReader(FileChannel.open(Paths.get(fileName), StandardOpenOption.READ));
+    }
+
+    @Override
+    public List<String> readHeader() throws IOException {
+        if (readInt() != BinaryScenarioWriter.MAGIC) {
+            throw new IOException("Not a binary scenario file.");
+        }
+        int version = readInt();
+        if (version != BinaryScenarioWriter.VERSION) {
+            throw new IOException("Unsupported binary scenario version " + version + ".");
+        }
+        int headerLength = readInt();
+        ByteBuffer headerBytes = map(headerLength);
+        byte[] bytes = new byte[headerLength];
+        headerBytes.get(bytes);
+        List<String> header = new ArrayList<String>();
+        for (String flag : new String(bytes, StandardCharsets.UTF_8).split(" ")) {
+            if (!flag.isEmpty()) {
+                header.add(flag);
+            }
+        }
+        return header;
+    }
+
+    @Override
+    public LinkTopology readTopology() throws IOException {
+        int numOfNodes = readInt();
+        int numOfSlots = readInt();
+        int[] offsets = readInts(numOfNodes + 1);
+        int[] neighbours = readInts(numOfSlots);
+        int[] costs = readInts(numOfSlots);
+        int[] reverseSlots = readInts(numOfSlots);
+        return new LinkTopology(numOfNodes, offsets, neighbours, costs, reverseSlots);
+    }
+
+    @Override
+    public int readRecord(int[] values) throws Exception {
+        if (section >= BinaryScenarioWriter.SECTION_WIDTHS.length) {
+            return -1;
+        }
+        if (records == null) {
+            if (section == -1) {
+                // the links have been read by readTopology
+                section++;
+                return -1;
+            }
+            int width = BinaryScenarioWriter.SECTION_WIDTHS[section];
+            records = readInts(readInt() * width);
+            recordIndex = 0;
+        }
+        int width = BinaryScenarioWriter.SECTION_WIDTHS[section];
+        if (recordIndex * width == records.length) {
+            // end of the section
+            records = null;
+            section++;
+            return -1;
+        }
+        System.arraycopy(records, recordIndex * width, values, 0, Math.min(width, values.length));
+        recordIndex++;
+        return width;
+    }
+
+    /**
+     * Getter for the position of the last record
+     *
+     * @return the number of the last record within its section, starting with 1
+     */
+    @Override
+    public int getRecordLineNumber() {
+        return recordIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Helper method for reading one int
+     */
+    private int readInt() throws IOException {
+        return map(4).getInt();
+    }
+
+    /**
+     * Helper method for reading an array of ints
+     */
+    private int[] readInts(int count) throws IOException {
+        int[] values = new int[count];
+        if (count > 0) {
+            map(4L * count).asIntBuffer().get(values);
+        }
+        return values;
+    }
+
+    /**
+     * Helper method for mapping the next bytes of the file
+     */
+    private ByteBuffer map(long bytes) throws IOException {
+        if (position + bytes > channel.size()) {
+            throw new IOException("Binary scenario file is truncated.");
+        }
+        ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes).order(BinaryScenarioWriter.BYTE_ORDER);
+        position += bytes;
+        return mapped;
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class which writes binary scenario files and converts text scenario files into them.
+ * <p>
+ * A binary scenario holds the links in the compressed sparse row form of {@link LinkTopology LinkTopology}, so it is
+ * loaded by copying arrays out of a memory mapped file instead of parsing and sorting links. All values are little
+ * endian ints:
+ * <pre>
+ * magic, version
+ * header length in bytes, header bytes (UTF-8)
+ * numOfNodes, numOfSlots
+ * offsets[numOfNodes + 1], neighbours[numOfSlots], costs[numOfSlots], reverseSlots[numOfSlots]
+ * numOfLinkChanges, (node1, node2, afterExchange, newCost)[numOfLinkChanges]
+ * numOfShowBestRoutes, (fromNode, toNode, afterExchange)[numOfShowBestRoutes]
+ * numOfTraces, (node, startExchange, endExchange)[numOfTraces]
+ * </pre>
+ * Usage: {@code java BinaryScenarioWriter input.txt output.bin}
+ */
+public class BinaryScenarioWriter {
+
+    /**
+     * First int of every binary scenario file, "RIPS" in little endian
+     */
+    public static final int MAGIC = 0x53504952;
+
+    /**
+     * Version of the format
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * Byte order of the values
+     */
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Number of values of the records of the link changes, show best routes and trace routing tables sections
+     */
+    public static final int[] SECTION_WIDTHS = {4, 3, 3};
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor
+     *
+     * @param channel the channel the file is written to
+     */
+    private BinaryScenarioWriter(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new Exception("Usage: BinaryScenarioWriter <text scenario> <binary scenario>");
+        }
+        convert(args[0], args[1]);
+    }
+
+    /**
+     * Converts a text scenario file into a binary one. The header is copied as it is, so flags which generate links or
+     * link failures still apply when the binary file is loaded.
+     *
+     * @param textFileName   the text scenario file
+     * @param binaryFileName the binary scenario file to write
+     * @throws Exception if the text scenario is malformed or a file cannot be accessed
+     */
+    public static void convert(String textFileName, String binaryFileName) throws Exception {
+        try (ScenarioReader reader = ScenarioReader.open(textFileName)) {
+            List<String> header = reader.readHeader();
+            int numOfNodesIndex = header.indexOf("-numOfNodes");
+            if (numOfNodesIndex == -1) {
+                throw new Exception("Must specify number of nodes in the network");
+            }
+            int numOfNodes = Integer.valueOf(header.get(numOfNodesIndex + 1));
+
+            // links
+            LinkTopology.Builder topologyBuilder = new LinkTopology.Builder(numOfNodes);
+            int[] link = new int[3];
+            int count;
+            while ((count = reader.readRecord(link)) != -1) {
+                checkRecord(reader, count, link.length);
+                if (link[0] < 0 || link[0] >= numOfNodes || link[1] < 0 || link[1] >= numOfNodes) {
+                    throw new Exception("Line " + reader.getRecordLineNumber() + ": node with ID >= numOfNodes (" + numOfNodes + ") supplied in the links matrix");
+                }
+                topologyBuilder.addLink(link[0], link[1], link[2]);
+            }
+            LinkTopology topology = topologyBuilder.build();
+
+            // scheduled events, checked when the scenario is loaded
+            int[][] sections = new int[SECTION_WIDTHS.length][];
+            for (int section = 0; section < SECTION_WIDTHS.length; section++) {
+                int width = SECTION_WIDTHS[section];
+                int[] record = new int[width];
+                int[] records = new int[16 * width];
+                int size = 0;
+                while ((count = reader.readRecord(record)) != -1) {
+                    checkRecord(reader, count, width);
+                    if (size + width > records.length) {
+                        records = Arrays.copyOf(records, records.length * 2);
+                    }
+                    System.arraycopy(record, 0, records, size, width);
+                    size += width;
+                }
+                sections[section] = Arrays.copyOf(records, size);
+            }
+
+            write(binaryFileName, header, topology, sections);
+        }
+    }
+
+    /**
+     * Writes a binary scenario file
+     *
+     * @param fileName the file name
+     * @param header   the flags of the header
+     * @param topology the links
+     * @param sections the records of the link changes, show best routes and trace routing tables sections, each
+     *                 flattened into one array
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(String fileName, List<String> header, LinkTopology topology, int[][] sections) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryScenarioWriter writer = new BinaryScenarioWriter(channel);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+
+            StringBuilder headerLine = new StringBuilder();
+            for (String flag : header) {
+                headerLine.append(headerLine.length() > 0 ? " " : "").append(flag);
+            }
+            byte[] headerBytes = headerLine.toString().getBytes(StandardCharsets.UTF_8);
+            writer.putInt(headerBytes.length);
+            for (byte b : headerBytes) {
+                writer.ensureSpace(1);
+                writer.buffer.put(b);
+            }
+
+            int numOfNodes = topology.getNumOfNodes();
+            int numOfSlots = topology.endSlot(numOfNodes - 1);
+            writer.putInt(numOfNodes);
+            writer.putInt(numOfSlots);
+            for (int node = 0; node < numOfNodes; node++) {
+                writer.putInt(topology.firstSlot(node));
+            }
+            writer.putInt(numOfSlots);
+            for (int slot = 0; slot < numOfSlots; slot++) {
+                writer.putInt(topology.getNeighbour(slot));
+            }
+            for (int slot = 0; slot < numOfSlots; slot++) {
+                writer.putInt(topology.getCost(slot));
+            }
+            for (int slot = 0; slot < numOfSlots; slot++) {
+                writer.putInt(topology.getReverseSlot(slot));
+            }
+
+            for (int section = 0; section < SECTION_WIDTHS.length; section++) {
+                writer.putInt(sections[section].length / SECTION_WIDTHS[section]);
+                for (int value : sections[section]) {
+                    writer.putInt(value);
+                }
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Helper method for checking the number of values of a record
+     */
+    private static void checkRecord(ScenarioReader reader, int count, int width) throws Exception {
+        if (count < width) {
+            throw new Exception("Line " + reader.getRecordLineNumber() + ": expected " + width + " values but found " + count + ".");
+        }
+    }
+
+    private void putInt(int value) throws IOException {
+        ensureSpace(4);
+        buffer.putInt(value);
+    }
+
+    private void ensureSpace(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,136 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class which reads a checkpoint file written by {@link CheckpointWriter CheckpointWriter}.
+ * <p>
+ * The file is memory mapped a window at a time and the values are bulk copied out of the mapping, so restoring costs
+ * about as much as reading the file however big it is.
+ */
+public class CheckpointReader implements Closeable {
+
+    /**
+     * Largest part of the file which is mapped at once, in bytes
+     */
+    private static final long WINDOW_SIZE = 1L << 26;
+
+    /**
+     * The file
+     */
+    private final FileChannel channel;
+
+    /**
+     * Size of the file in bytes
+     */
+    private final long size;
+
+    /**
+     * Position of the start of the mapped window in the file, in bytes
+     */
+    private long windowStart;
+
+    /**
+     * The mapped window
+     */
+    private IntBuffer window;
+
+    /**
+     * Constructor
+     *
+     * @param channel {@link #channel}
+     * @throws IOException if the file cannot be read
+     */
+    public CheckpointReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.window = IntBuffer.allocate(0);
+    }
+
+    /**
+     * Opens a checkpoint file and checks its magic number and version
+     *
+     * @param fileName the file name
+     * @return reader of the file
+     * @throws IOException if the file cannot be read or is not a checkpoint
+     */
+    public static CheckpointReader open(String fileName) throws IOException {
+        CheckpointReader reader = new CheckpointReader(FileChannel.open(Paths.get(fileName), StandardOpenOption.READ));
+        try {
+            if (reader.size < 8 || reader.getInt() != CheckpointWriter.MAGIC) {
+                throw new IOException(fileName + " is not a checkpoint file.");
+            }
+            int version = reader.getInt();
+            if (version != CheckpointWriter.VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ".");
+            }
+        } catch (IOException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    /**
+     * Reads one value
+     *
+     * @return the value
+     * @throws IOException if the file cannot be read or ends
+     */
+    public int getInt() throws IOException {
+        if (!window.hasRemaining()) {
+            mapNextWindow();
+        }
+        return window.get();
+    }
+
+    /**
+     * Reads values into a range of an array
+     *
+     * @param values the array
+     * @param from   index of the first value
+     * @param to     index after the last value
+     * @throws IOException if the file cannot be read or ends
+     */
+    public void getInts(int[] values, int from, int to) throws IOException {
+        while (from < to) {
+            if (!window.hasRemaining()) {
+                mapNextWindow();
+            }
+            int count = Math.min(to - from, window.remaining());
+            window.get(values, from, count);
+            from += count;
+        }
+    }
+
+    /**
+     * Reads a value written by {@link CheckpointWriter#putLong(long)}
+     *
+     * @return the value
+     * @throws IOException if the file cannot be read or ends
+     */
+    public long getLong() throws IOException {
+        long low = getInt() & 0xFFFFFFFFL;
+        return low | ((long) getInt() << 32);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Helper method for mapping the part of the file after the current window
+     */
+    private void mapNextWindow() throws IOException {
+        windowStart += 4L * window.position();
+        long bytes = Math.min(WINDOW_SIZE, size - windowStart) & ~3L;
+        if (bytes <= 0) {
+            throw new IOException("Checkpoint file is truncated.");
+        }
+        window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, bytes).order(CheckpointWriter.BYTE_ORDER).asIntBuffer();
+    }
+}
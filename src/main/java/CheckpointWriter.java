@@ -0,0 +1,128 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Class which writes a simulation checkpoint file as a sequence of little endian ints.
+ * <p>
+ * The layout is decided by the writers of the state, see {@link Simulator#saveCheckpoint(String)}. The file is read
+ * back by {@link CheckpointReader CheckpointReader}.
+ */
+public class CheckpointWriter implements Closeable {
+
+    /**
+     * First int of every checkpoint file, "RIPC" in little endian
+     */
+    public static final int MAGIC = 0x43504952;
+
+    /**
+     * Version of the format
+     */
+    public static final int VERSION = 3;
+
+    /**
+     * Byte order of the values
+     */
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * Size of the write buffer
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * The file
+     */
+    private final FileChannel channel;
+
+    /**
+     * Buffer holding the values which have not been written yet
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor
+     *
+     * @param channel {@link #channel}
+     */
+    public CheckpointWriter(FileChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(BYTE_ORDER);
+    }
+
+    /**
+     * Creates a checkpoint file and writes its magic number and version
+     *
+     * @param fileName the file name
+     * @return writer of the file
+     * @throws IOException if the file cannot be created
+     */
+    public static CheckpointWriter create(String fileName) throws IOException {
+        CheckpointWriter writer = new CheckpointWriter(FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING));
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        return writer;
+    }
+
+    /**
+     * Writes one value
+     *
+     * @param value the value
+     * @throws IOException if the file cannot be written
+     */
+    public void putInt(int value) throws IOException {
+        if (buffer.remaining() < 4) {
+            flush();
+        }
+        buffer.putInt(value);
+    }
+
+    /**
+     * Writes a range of an array
+     *
+     * @param values the array
+     * @param from   index of the first value
+     * @param to     index after the last value
+     * @throws IOException if the file cannot be written
+     */
+    public void putInts(int[] values, int from, int to) throws IOException {
+        for (int i = from; i < to; i++) {
+            putInt(values[i]);
+        }
+    }
+
+    /**
+     * Writes a value which does not fit an int as two ints, the low one first
+     *
+     * @param value the value
+     * @throws IOException if the file cannot be written
+     */
+    public void putLong(long value) throws IOException {
+        putInt((int) value);
+        putInt((int) (value >>> 32));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Helper method for writing the buffered values to the file
+     */
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
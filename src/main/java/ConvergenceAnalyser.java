@@ -0,0 +1,368 @@
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Analyser of the convergence of the routes towards every destination.
+ * <p>
+ * Every node logs the routes its advertisement handling changes into its own log, so the nodes can log from any thread
+ * without locking. When a round has finished {@link #roundFinished(int, BitSet)} reads the logs of the changed nodes
+ * only, so the analysis costs O(changes) per round. A route whose cost grew because its next hop advertised a higher
+ * cost is followed hop by hop; if the next hops lead back to the node the destination is counting to infinity through
+ * a routing loop and an episode is reported. The episode ends in the first round in which no route towards the
+ * destination grew. The round in which the routes towards a destination last changed is its convergence round.
+ */
+public class ConvergenceAnalyser {
+
+    /**
+     * Longest routing loop which is looked for
+     */
+    private static final int MAX_LOOP_LENGTH = 64;
+
+    /**
+     * Number of slowest destinations in the summary
+     */
+    private static final int SLOWEST_DESTINATIONS = 5;
+
+    /**
+     * Kinds of logged changes
+     */
+    private static final int CHANGED = 0;
+    private static final int INCREASED = 1;
+    private static final int DROPPED = 2;
+
+    /**
+     * Number of ints in a logged change: the destination, the new cost and the kind
+     */
+    private static final int ENTRY_SIZE = 3;
+
+    /**
+     * All the nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * Sink the episodes and the summary are reported to
+     */
+    private final SimulationEventSink sink;
+
+    /**
+     * The cost at which routes are dropped
+     */
+    private final int infinityCost;
+
+    /**
+     * The changes every node has logged since the last round, indexed by node id
+     */
+    private final int[][] logs;
+
+    /**
+     * Number of ints in every log
+     */
+    private final int[] logSizes;
+
+    /**
+     * Round in which the routes towards every destination last changed or -1 if they never changed
+     */
+    private final int[] lastChangeRound;
+
+    /**
+     * Round in which a route towards every destination last grew or -1 if none ever grew
+     */
+    private final int[] lastIncreaseRound;
+
+    /**
+     * Round in which the current count-to-infinity episode of every destination started or -1 if there is none
+     */
+    private final int[] episodeStart;
+
+    /**
+     * Destinations whose routes have reached infinity during their current episode
+     */
+    private final BitSet reachedInfinity = new BitSet();
+
+    /**
+     * Destinations with a current episode; the first {@link #activeEpisodeCount} are used
+     */
+    private int[] activeEpisodes = new int[8];
+    private int activeEpisodeCount;
+
+    /**
+     * Nodes of the last loop found
+     */
+    private final int[] loop = new int[MAX_LOOP_LENGTH + 1];
+
+    /**
+     * Number of episodes so far
+     */
+    private int episodes;
+
+    /**
+     * The longest finished episode, in rounds, and its destination
+     */
+    private int longestEpisode;
+    private int longestEpisodeDest = -1;
+
+    /**
+     * Constructor
+     *
+     * @param nodes        {@link #nodes}
+     * @param sink         {@link #sink}
+     * @param infinityCost {@link #infinityCost}
+     */
+    public ConvergenceAnalyser(NetworkNode[] nodes, SimulationEventSink sink, int infinityCost) {
+        this.nodes = nodes;
+        this.sink = sink;
+        this.infinityCost = infinityCost;
+        this.logs = new int[nodes.length][];
+        this.logSizes = new int[nodes.length];
+        this.lastChangeRound = new int[nodes.length];
+        this.lastIncreaseRound = new int[nodes.length];
+        this.episodeStart = new int[nodes.length];
+        Arrays.fill(lastChangeRound, -1);
+        Arrays.fill(lastIncreaseRound, -1);
+        Arrays.fill(episodeStart, -1);
+    }
+
+    /**
+     * Logs a route which has become cheaper or has been learned. Only called by the node itself.
+     *
+     * @param nodeId        the id of the node
+     * @param destinationId the destination of the route
+     * @param cost          the new cost
+     */
+    public void routeChanged(int nodeId, int destinationId, int cost) {
+        log(nodeId, destinationId, cost, CHANGED);
+    }
+
+    /**
+     * Logs a route which has become more expensive because its next hop advertised a higher cost. Only called by the
+     * node itself.
+     *
+     * @param nodeId        the id of the node
+     * @param destinationId the destination of the route
+     * @param cost          the new cost
+     */
+    public void routeIncreased(int nodeId, int destinationId, int cost) {
+        log(nodeId, destinationId, cost, INCREASED);
+    }
+
+    /**
+     * Logs a route which has been dropped because its cost reached infinity. Only called by the node itself.
+     *
+     * @param nodeId        the id of the node
+     * @param destinationId the destination of the route
+     */
+    public void routeDropped(int nodeId, int destinationId) {
+        log(nodeId, destinationId, infinityCost, DROPPED);
+    }
+
+    /**
+     * Helper method for appending a change to the log of a node
+     */
+    private void log(int nodeId, int destinationId, int cost, int kind) {
+        int[] log = logs[nodeId];
+        int size = logSizes[nodeId];
+        if (log == null) {
+            log = logs[nodeId] = new int[4 * ENTRY_SIZE];
+        } else if (size == log.length) {
+            log = logs[nodeId] = Arrays.copyOf(log, 2 * size);
+        }
+        log[size] = destinationId;
+        log[size + 1] = cost;
+        log[size + 2] = kind;
+        logSizes[nodeId] = size + ENTRY_SIZE;
+    }
+
+    /**
+     * Analyses the changes logged during a round and reports the count-to-infinity episodes which have started or
+     * ended. Must not be called while the nodes are exchanging their routes.
+     *
+     * @param round        the index of the round
+     * @param changedNodes ids of the nodes whose routing tables have changed in the round
+     */
+    public void roundFinished(int round, BitSet changedNodes) {
+        for (int nodeId = changedNodes.nextSetBit(0); nodeId >= 0; nodeId = changedNodes.nextSetBit(nodeId + 1)) {
+            int[] log = logs[nodeId];
+            for (int i = 0; i < logSizes[nodeId]; i += ENTRY_SIZE) {
+                int destinationId = log[i];
+                lastChangeRound[destinationId] = round;
+                if (log[i + 2] == INCREASED) {
+                    lastIncreaseRound[destinationId] = round;
+                    if (episodeStart[destinationId] == -1) {
+                        int loopLength = findLoop(nodeId, destinationId);
+                        if (loopLength > 0) {
+                            startEpisode(round, destinationId, loopLength, log[i + 1]);
+                        }
+                    }
+                } else if (log[i + 2] == DROPPED && episodeStart[destinationId] != -1) {
+                    reachedInfinity.set(destinationId);
+                }
+            }
+            logSizes[nodeId] = 0;
+        }
+
+        // an episode is over when the routes stop growing
+        for (int i = activeEpisodeCount - 1; i >= 0; i--) {
+            int destinationId = activeEpisodes[i];
+            if (lastIncreaseRound[destinationId] != round) {
+                endEpisode(round, destinationId);
+                activeEpisodes[i] = activeEpisodes[--activeEpisodeCount];
+            }
+        }
+    }
+
+    /**
+     * Helper method for following the next hops of a node towards a destination back to the node
+     *
+     * @param nodeId        the id of the node
+     * @param destinationId the id of the destination
+     * @return the number of nodes in the loop, stored in {@link #loop}, or 0 if the next hops do not lead back
+     */
+    private int findLoop(int nodeId, int destinationId) {
+        NetworkNode destination = nodes[destinationId];
+        int hop = nodeId;
+        for (int length = 0; length < MAX_LOOP_LENGTH; length++) {
+            loop[length] = hop;
+            hop = nodes[hop].getNextHopToDest(destination);
+            if (hop == nodeId) {
+                loop[length + 1] = hop;
+                return length + 1;
+            }
+            if (hop == RouteTable.NO_NEXT_HOP || hop == destinationId) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Helper method for reporting the start of an episode
+     */
+    private void startEpisode(int round, int destinationId, int loopLength, int cost) {
+        episodeStart[destinationId] = round;
+        reachedInfinity.clear(destinationId);
+        episodes++;
+        if (activeEpisodeCount == activeEpisodes.length) {
+            activeEpisodes = Arrays.copyOf(activeEpisodes, 2 * activeEpisodeCount);
+        }
+        activeEpisodes[activeEpisodeCount++] = destinationId;
+
+        StringBuilder b = new StringBuilder("Count-to-infinity towards node ").append(destinationId).append(": routing loop ");
+        for (int i = 0; i <= loopLength; i++) {
+            b.append(i > 0 ? " -> " : "").append(loop[i]);
+        }
+        b.append(", cost ").append(cost).append(" of infinity ").append(infinityCost).append(" in round ").append(round).append("\n");
+        sink.message(b.toString());
+    }
+
+    /**
+     * Helper method for reporting the end of an episode
+     */
+    private void endEpisode(int round, int destinationId) {
+        int length = round - episodeStart[destinationId];
+        if (length > longestEpisode) {
+            longestEpisode = length;
+            longestEpisodeDest = destinationId;
+        }
+        episodeStart[destinationId] = -1;
+        sink.message("Count-to-infinity towards node " + destinationId + " over after " + length + " rounds, "
+                + (reachedInfinity.get(destinationId) ? "the routes reached infinity" : "a route out of the loop was found") + "\n");
+    }
+
+    /**
+     * Getter for the convergence round of a destination
+     *
+     * @param destinationId the id of the destination
+     * @return the round in which the routes towards the destination last changed or -1 if they never changed
+     */
+    public int getConvergenceRound(int destinationId) {
+        return lastChangeRound[destinationId];
+    }
+
+    /**
+     * Getter for the number of episodes
+     *
+     * @return the number of count-to-infinity episodes so far
+     */
+    public int getEpisodes() {
+        return episodes;
+    }
+
+    /**
+     * Reports the convergence rounds of the destinations and the episodes of the whole run
+     */
+    public void printSummary() {
+        int lastRound = -1;
+        int changedDestinations = 0;
+        for (int round : lastChangeRound) {
+            if (round >= 0) {
+                changedDestinations++;
+                lastRound = Math.max(lastRound, round);
+            }
+        }
+        StringBuilder b = new StringBuilder("Convergence analysis:\n");
+        b.append("\t").append(changedDestinations).append(" of ").append(nodes.length).append(" destinations changed");
+        if (changedDestinations > 0) {
+            // count the destinations per convergence round to find the percentiles
+            int[] destinationsPerRound = new int[lastRound + 1];
+            for (int round : lastChangeRound) {
+                if (round >= 0) {
+                    destinationsPerRound[round]++;
+                }
+            }
+            b.append(", 50% converged by round ").append(percentileRound(destinationsPerRound, changedDestinations, 0.5));
+            b.append(", 90% by round ").append(percentileRound(destinationsPerRound, changedDestinations, 0.9));
+            b.append(", all by round ").append(lastRound).append("\n");
+            b.append("\tslowest destinations:");
+            appendSlowestDestinations(b);
+        }
+        b.append("\n\t").append(episodes).append(" count-to-infinity episodes");
+        if (longestEpisodeDest != -1) {
+            b.append(", longest ").append(longestEpisode).append(" rounds towards node ").append(longestEpisodeDest);
+        }
+        if (activeEpisodeCount > 0) {
+            b.append(", ").append(activeEpisodeCount).append(" not over");
+        }
+        b.append("\n\n");
+        sink.message(b.toString());
+    }
+
+    /**
+     * Helper method for finding the round by which a share of the changed destinations had converged
+     */
+    private static int percentileRound(int[] destinationsPerRound, int changedDestinations, double quantile) {
+        int rank = Math.max(1, (int) Math.ceil(quantile * changedDestinations));
+        int seen = 0;
+        for (int round = 0; round < destinationsPerRound.length; round++) {
+            seen += destinationsPerRound[round];
+            if (seen >= rank) {
+                return round;
+            }
+        }
+        return destinationsPerRound.length - 1;
+    }
+
+    /**
+     * Helper method for appending the destinations which converged last, latest first
+     */
+    private void appendSlowestDestinations(StringBuilder b) {
+        int[] slowest = new int[Math.min(SLOWEST_DESTINATIONS, nodes.length)];
+        int count = 0;
+        for (int destinationId = 0; destinationId < lastChangeRound.length; destinationId++) {
+            int round = lastChangeRound[destinationId];
+            if (round < 0 || (count == slowest.length && round <= lastChangeRound[slowest[count - 1]])) {
+                continue;
+            }
+            // insert in order of decreasing convergence round, earlier ids first among equal rounds
+            int i = count < slowest.length ? count++ : count - 1;
+            while (i > 0 && lastChangeRound[slowest[i - 1]] < round) {
+                slowest[i] = slowest[i - 1];
+                i--;
+            }
+            slowest[i] = destinationId;
+        }
+        for (int i = 0; i < count; i++) {
+            b.append(" ").append(slowest[i]).append(" (round ").append(lastChangeRound[slowest[i]]).append(")");
+        }
+    }
+}
@@ -0,0 +1,162 @@
+import java.util.Arrays;
+
+/**
+ * Sink which records the simulation output so it can be passed on to another sink later.
+ * <p>
+ * The typed events are stored as rows of a primitive array, so recording a route change allocates nothing once the
+ * buffer has grown to its working size.
+ */
+public class EventBuffer implements SimulationEventSink {
+
+    private static final int ROUTE_LOGGED = 0;
+    private static final int ROUTE_DROPPED = 1;
+    private static final int NEIGHBOUR_REMOVED = 2;
+    private static final int ROUND_FINISHED = 3;
+    private static final int MESSAGE = 4;
+
+    /**
+     * Number of values stored per event: the kind followed by up to five arguments
+     */
+    private static final int EVENT_WIDTH = 6;
+
+    private static final SimulationEventSink.DropReason[] DROP_REASONS = SimulationEventSink.DropReason.values();
+
+    /**
+     * The verbosity the buffer reports. Events are recorded regardless of it.
+     */
+    private final Verbosity verbosity;
+
+    /**
+     * The recorded events, {@link #EVENT_WIDTH} values per event
+     */
+    private int[] events;
+
+    /**
+     * The text of the recorded messages, at the index of their event
+     */
+    private String[] texts;
+
+    /**
+     * Number of recorded events
+     */
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param verbosity {@link #verbosity}
+     * @param capacity  number of events the buffer holds before it grows
+     */
+    public EventBuffer(Verbosity verbosity, int capacity) {
+        this.verbosity = verbosity;
+        this.events = new int[Math.max(capacity, 1) * EVENT_WIDTH];
+        this.texts = new String[Math.max(capacity, 1)];
+    }
+
+    /**
+     * @return the number of recorded events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if no event has been recorded
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Passes the recorded events on to another sink in the order they were recorded
+     *
+     * @param sink the sink
+     */
+    public void replayTo(SimulationEventSink sink) {
+        for (int i = 0; i < size; i++) {
+            int at = i * EVENT_WIDTH;
+            switch (events[at]) {
+                case ROUTE_LOGGED:
+                    sink.routeLogged(events[at + 1], events[at + 2], events[at + 3], events[at + 4]);
+                    break;
+                case ROUTE_DROPPED:
+                    sink.routeDropped(events[at + 1], events[at + 2], events[at + 3], events[at + 4], DROP_REASONS[events[at + 5]]);
+                    break;
+                case NEIGHBOUR_REMOVED:
+                    sink.neighbourRemoved(events[at + 1], events[at + 2]);
+                    break;
+                case ROUND_FINISHED:
+                    sink.roundFinished(events[at + 1], events[at + 2]);
+                    break;
+                case MESSAGE:
+                    sink.message(texts[i]);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Forgets the recorded events
+     */
+    public void clear() {
+        Arrays.fill(texts, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Verbosity getVerbosity() {
+        return verbosity;
+    }
+
+    @Override
+    public void routeLogged(int nodeId, int destinationId, int cost, int nextHop) {
+        record(ROUTE_LOGGED, nodeId, destinationId, cost, nextHop, 0);
+    }
+
+    @Override
+    public void routeDropped(int nodeId, int destinationId, int cost, int nextHop, DropReason reason) {
+        record(ROUTE_DROPPED, nodeId, destinationId, cost, nextHop, reason.ordinal());
+    }
+
+    @Override
+    public void neighbourRemoved(int nodeId, int neighbourId) {
+        record(NEIGHBOUR_REMOVED, nodeId, neighbourId, 0, 0, 0);
+    }
+
+    @Override
+    public void roundFinished(int round, int changedNodes) {
+        record(ROUND_FINISHED, round, changedNodes, 0, 0, 0);
+    }
+
+    @Override
+    public void message(String text) {
+        texts[size] = text;
+        record(MESSAGE, 0, 0, 0, 0, 0);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * Helper method for storing one event
+     */
+    private void record(int kind, int a, int b, int c, int d, int e) {
+        int at = size * EVENT_WIDTH;
+        events[at] = kind;
+        events[at + 1] = a;
+        events[at + 2] = b;
+        events[at + 3] = c;
+        events[at + 4] = d;
+        events[at + 5] = e;
+        size++;
+        if (size == texts.length) {
+            events = Arrays.copyOf(events, events.length * 2);
+            texts = Arrays.copyOf(texts, texts.length * 2);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * Priority queue of timer events ordered by simulated time.
+ * <p>
+ * An event is a kind and a target node id. The events are kept in a 4-ary heap of two primitive arrays, so scheduling
+ * and removing an event allocates nothing once the arrays have grown to their working size and a step down the heap
+ * touches one cache line. Events due at the same time come out ordered by kind and target, so a simulation is
+ * repeatable.
+ */
+public class EventQueue {
+
+    /**
+     * Number of children of every heap entry
+     */
+    private static final int ARITY = 4;
+
+    /**
+     * Time every event is due at, in heap order
+     */
+    private long[] times;
+
+    /**
+     * Kind of every event in the upper half and its target in the lower half
+     */
+    private long[] events;
+
+    /**
+     * Number of events in the queue
+     */
+    private int size;
+
+    /**
+     * Constructor
+     *
+     * @param capacity number of events the queue holds before it grows
+     */
+    public EventQueue(int capacity) {
+        capacity = Math.max(capacity, 1);
+        times = new long[capacity];
+        events = new long[capacity];
+    }
+
+    /**
+     * Schedules an event
+     *
+     * @param time   the simulated time the event is due at
+     * @param kind   the kind of the event, not negative
+     * @param target the target of the event, not negative
+     */
+    public void schedule(long time, int kind, int target) {
+        if (size == times.length) {
+            times = Arrays.copyOf(times, times.length * 2);
+            events = Arrays.copyOf(events, events.length * 2);
+        }
+
+        // sift the new event up from the end of the heap
+        long event = ((long) kind << 32) | target;
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) / ARITY;
+            if (!before(time, event, times[parent], events[parent])) {
+                break;
+            }
+            times[i] = times[parent];
+            events[i] = events[parent];
+            i = parent;
+        }
+        times[i] = time;
+        events[i] = event;
+    }
+
+    /**
+     * @return true if no event is scheduled
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the number of scheduled events
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the time the next event is due at
+     */
+    public long nextTime() {
+        return times[0];
+    }
+
+    /**
+     * @return the kind of the next event
+     */
+    public int nextKind() {
+        return (int) (events[0] >>> 32);
+    }
+
+    /**
+     * @return the target of the next event
+     */
+    public int nextTarget() {
+        return (int) events[0];
+    }
+
+    /**
+     * Removes the next event
+     */
+    public void removeNext() {
+        size--;
+        if (size == 0) {
+            return;
+        }
+
+        // sift the last event down from the root of the heap
+        long time = times[size];
+        long event = events[size];
+        int i = 0;
+        while (true) {
+            int firstChild = ARITY * i + 1;
+            if (firstChild >= size) {
+                break;
+            }
+            int child = firstChild;
+            int endChild = Math.min(firstChild + ARITY, size);
+            for (int c = firstChild + 1; c < endChild; c++) {
+                if (before(times[c], events[c], times[child], events[child])) {
+                    child = c;
+                }
+            }
+            if (!before(times[child], events[child], time, event)) {
+                break;
+            }
+            times[i] = times[child];
+            events[i] = events[child];
+            i = child;
+        }
+        times[i] = time;
+        events[i] = event;
+    }
+
+    /**
+     * Helper method for comparing two events
+     *
+     * @return true if the first event comes out before the second
+     */
+    private static boolean before(long time1, long event1, long time2, long event2) {
+        return time1 < time2 || (time1 == time2 && event1 < event2);
+    }
+}
@@ -0,0 +1,463 @@
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Runner of Monte-Carlo link failure experiments.
+ * <p>
+ * The network of a scenario is built and converged once and its state before the first failure is saved to a
+ * checkpoint. Every trial restores the checkpoint, fails a random set of links and simulates the network until it is
+ * stable again, so it only simulates the failure phase. The trials are independent {@link Simulator Simulator}
+ * instances running concurrently on a worker pool. They share the links of the network and only copy its costs. The
+ * rounds each trial needs to converge again, and the advertisements and route updates it sends, are summarised as
+ * percentiles.
+ * <p>
+ * Usage: {@code java ExperimentRunner scenario.txt -trials 1000 -failures 3 [-failAfter N] [-failSpread S]
+ * [-threads T] [-seed S] [-results trials.csv]}
+ */
+public class ExperimentRunner {
+
+    /**
+     * Header flags of the scenario which the experiment sets itself. The scheduled events of the scenario are not used
+     * either.
+     */
+    private static final List<String> EXPERIMENT_FLAGS = Arrays.asList("-linkFailures", "-verbosity", "-untilStability", "-manual",
+            "-metrics", "-metricsFormat", "-jmx", "-checkpoint", "-checkpointAfter", "-restore", "-validate", "-reachability",
+            "-analyseConvergence");
+
+    /**
+     * The header flags of the trials, without the flags which generate the links and with the checkpoint they restore
+     */
+    private final List<String> trialHeader;
+
+    /**
+     * The links of the network, shared by all trials
+     */
+    private final LinkTopology topology;
+
+    /**
+     * Number of exchanges after which a trial gives up
+     */
+    private final int maxExchanges;
+
+    /**
+     * Number of links failing in every trial
+     */
+    private final int failures;
+
+    /**
+     * The failures happen after exchanges drawn from [failAfter, failAfter + failSpread)
+     */
+    private final int failAfter;
+    private final int failSpread;
+
+    /**
+     * Constructor
+     *
+     * @param trialHeader        {@link #trialHeader}
+     * @param topology           {@link #topology}
+     * @param maxExchanges       {@link #maxExchanges}
+     * @param failures           {@link #failures}
+     * @param failAfter          {@link #failAfter}
+     * @param failSpread         {@link #failSpread}
+     * @param checkpointFileName the checkpoint of the network before exchange failAfter which every trial starts from
+     */
+    public ExperimentRunner(List<String> trialHeader, LinkTopology topology, int maxExchanges, int failures, int failAfter, int failSpread, String checkpointFileName) {
+        this.trialHeader = new ArrayList<String>(trialHeader);
+        this.trialHeader.addAll(Arrays.asList("-restore", checkpointFileName));
+        this.topology = topology;
+        this.maxExchanges = maxExchanges;
+        this.failures = failures;
+        this.failAfter = failAfter;
+        this.failSpread = failSpread;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            throw new Exception("Usage: ExperimentRunner <scenario> -trials N -failures K [-failAfter N] [-failSpread S] [-threads T] [-seed S] [-results FILE]");
+        }
+        List<String> options = Arrays.asList(args).subList(1, args.length);
+        int trials = intOption(options, "-trials", 100);
+        if (trials <= 0) {
+            throw new Exception("trials must be in the range [1, inf).");
+        }
+        int failures = intOption(options, "-failures", 1);
+        if (failures <= 0) {
+            throw new Exception("failures must be in the range [1, inf).");
+        }
+        int failSpread = intOption(options, "-failSpread", 1);
+        if (failSpread <= 0) {
+            throw new Exception("failSpread must be in the range [1, inf).");
+        }
+        int threads = intOption(options, "-threads", Runtime.getRuntime().availableProcessors());
+        if (threads <= 0) {
+            throw new Exception("threads must be in the range [1, inf).");
+        }
+        long seed = options.contains("-seed") ? Long.valueOf(options.get(options.indexOf("-seed") + 1)) : 0L;
+        String resultsFileName = options.contains("-results") ? options.get(options.indexOf("-results") + 1) : null;
+
+        // build the network and converge it once without failures
+        final ScenarioSource scenario = ScenarioSource.open(args[0]);
+        List<String> header = scenario.readHeader();
+        checkHeader(header);
+        final List<String> baseHeader = experimentHeader(header, false);
+        Simulator base = new Simulator(new ScenarioSource() {
+            /**
+             * Index of the section being read
+             */
+            private int section;
+
+            @Override
+            public List<String> readHeader() {
+                return baseHeader;
+            }
+
+            @Override
+            public LinkTopology readTopology() throws IOException {
+                return scenario.readTopology();
+            }
+
+            @Override
+            public int readRecord(int[] values) throws Exception {
+                if (section == 0) {
+                    int count = scenario.readRecord(values);
+                    if (count == -1) {
+                        section++;
+                    }
+                    return count;
+                }
+                // the scheduled events of the scenario are not part of the experiment
+                while (scenario.readRecord(values) != -1) {
+                }
+                section++;
+                return -1;
+            }
+
+            @Override
+            public int getRecordLineNumber() {
+                return scenario.getRecordLineNumber();
+            }
+
+            @Override
+            public void close() throws IOException {
+                scenario.close();
+            }
+        });
+        int maxExchanges = Integer.valueOf(header.get(header.indexOf("-maxExchanges") + 1));
+
+        // the trials start from the state before the exchange of the first failure. By default that is the stable
+        // exchange, which is only known once it has been simulated, so the state before every exchange is saved.
+        File checkpoint = File.createTempFile("experiment", ".checkpoint");
+        checkpoint.deleteOnExit();
+        int failAfterOption = intOption(options, "-failAfter", -1);
+        int baseStable = -1;
+        for (int exchange = 0; exchange < maxExchanges && baseStable == -1; exchange++) {
+            if (failAfterOption == -1 || exchange == failAfterOption) {
+                base.saveCheckpoint(checkpoint.getPath());
+            }
+            base.simulateRound(exchange);
+            if (base.isStable()) {
+                baseStable = exchange;
+            }
+        }
+        if (baseStable == -1) {
+            throw new Exception("The network is not stable after " + maxExchanges + " exchanges without failures.");
+        }
+        int failAfter = options.contains("-failAfter") ? failAfterOption : baseStable;
+        if (failAfter < 0 || failAfter + failSpread > maxExchanges) {
+            throw new Exception("failAfter must be in the range [0, maxExchanges - failSpread].");
+        }
+        if (failAfter > baseStable) {
+            for (int exchange = baseStable + 1; exchange < failAfter; exchange++) {
+                base.simulateRound(exchange);
+            }
+            base.saveCheckpoint(checkpoint.getPath());
+        }
+        LinkTopology topology = base.getTopology();
+        ExperimentRunner runner = new ExperimentRunner(experimentHeader(header, true), topology, maxExchanges, failures, failAfter, failSpread, checkpoint.getPath());
+
+        // every trial gets its own seed so the results do not depend on the order the trials run in
+        Random random = new Random(seed);
+        long[] trialSeeds = new long[trials];
+        for (int i = 0; i < trials; i++) {
+            trialSeeds[i] = random.nextLong();
+        }
+        long start = System.nanoTime();
+        TrialResult[] results = runner.runTrials(trialSeeds, threads);
+        long wallMillis = (System.nanoTime() - start) / 1000000;
+
+        if (resultsFileName != null) {
+            try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(resultsFileName)), false, "UTF-8")) {
+                out.println(TrialResult.CSV_HEADER);
+                for (TrialResult result : results) {
+                    out.println(result.toCsv());
+                }
+            }
+        }
+        SimulationEventSink sink = new TextEventSink(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)), false), SimulationEventSink.Verbosity.ROUNDS);
+        sink.message("Network of " + topology.getNumOfNodes() + " nodes and " + topology.getNumOfLinks() + " links, stable after exchange " + baseStable + " without failures\n");
+        sink.message(summarise(results, failures, failAfter, failSpread, threads, wallMillis));
+        sink.close();
+    }
+
+    /**
+     * Runs the trials on a pool
+     *
+     * @param trialSeeds the seed of every trial
+     * @param threads    number of threads of the pool
+     * @return the result of every trial, in trial order
+     * @throws Exception if a trial fails
+     */
+    public TrialResult[] runTrials(long[] trialSeeds, int threads) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Callable<TrialResult>> trials = new ArrayList<Callable<TrialResult>>();
+            for (int i = 0; i < trialSeeds.length; i++) {
+                final int trial = i;
+                final long trialSeed = trialSeeds[i];
+                trials.add(new Callable<TrialResult>() {
+                    @Override
+                    public TrialResult call() throws Exception {
+                        return runTrial(trial, trialSeed);
+                    }
+                });
+            }
+            List<Future<TrialResult>> futures = pool.invokeAll(trials);
+            TrialResult[] results = new TrialResult[futures.size()];
+            for (int i = 0; i < results.length; i++) {
+                results[i] = futures.get(i).get();
+            }
+            return results;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Simulates one trial until the network is stable after its last failure
+     *
+     * @param trial     the index of the trial
+     * @param trialSeed the seed the failures are drawn with
+     * @return the result of the trial
+     * @throws Exception if the trial cannot be simulated
+     */
+    public TrialResult runTrial(int trial, long trialSeed) throws Exception {
+        long start = System.nanoTime();
+
+        // draw the failing links
+        final int[] linkChanges = new int[4 * failures];
+        final int[] lastFailure = {-1};
+        final int[] count = {0};
+        TopologyGenerator.linkFailures(topology, failures, failAfter, failSpread, new Random(trialSeed), new TopologyGenerator.LinkChangeListener() {
+            @Override
+            public void onLinkChange(int node1Id, int node2Id, int afterExchange, int newCost) {
+                int i = 4 * count[0]++;
+                linkChanges[i] = node1Id;
+                linkChanges[i + 1] = node2Id;
+                linkChanges[i + 2] = afterExchange;
+                linkChanges[i + 3] = newCost;
+                lastFailure[0] = Math.max(lastFailure[0], afterExchange);
+            }
+        });
+
+        // the trial changes the costs of its own copy of the links and starts from the checkpoint before the failures
+        SimulationMetrics metrics = new SimulationMetrics(null, SimulationMetrics.Format.CSV);
+        Simulator simulator = new Simulator(new ExperimentScenario(trialHeader, topology.withOwnCosts(), Arrays.copyOf(linkChanges, 4 * count[0])), metrics);
+        long advertisementsBefore = 0;
+        long routeUpdatesBefore = 0;
+        int stableExchange = -1;
+        for (int exchange = simulator.getNextExchange(); exchange < maxExchanges; exchange++) {
+            simulator.simulateRound(exchange);
+            if (exchange == lastFailure[0]) {
+                advertisementsBefore = metrics.getAdvertisementsSent();
+                routeUpdatesBefore = metrics.getRouteUpdates();
+            } else if (exchange > lastFailure[0] && simulator.isStable()) {
+                stableExchange = exchange;
+                break;
+            }
+        }
+        metrics.close();
+        int rounds = stableExchange != -1 ? stableExchange - lastFailure[0] - 1 : -1;
+        return new TrialResult(trial, count[0], lastFailure[0], rounds, metrics.getAdvertisementsSent() - advertisementsBefore,
+                metrics.getRouteUpdates() - routeUpdatesBefore, (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Result of one trial.
+     */
+    public static class TrialResult {
+
+        /**
+         * Header line of the results file
+         */
+        static final String CSV_HEADER = "trial,failedLinks,lastFailureExchange,roundsToConvergence,advertisements,routeUpdates,wallMillis";
+
+        private final int trial;
+        private final int failedLinks;
+        private final int lastFailureExchange;
+
+        /**
+         * Number of exchanges after the last failure in which routing tables changed or -1 if the network did not
+         * become stable within the maximum number of exchanges
+         */
+        private final int roundsToConvergence;
+
+        /**
+         * Advertisements handled and routes updated after the last failure
+         */
+        private final long advertisements;
+        private final long routeUpdates;
+        private final long wallMillis;
+
+        TrialResult(int trial, int failedLinks, int lastFailureExchange, int roundsToConvergence, long advertisements, long routeUpdates, long wallMillis) {
+            this.trial = trial;
+            this.failedLinks = failedLinks;
+            this.lastFailureExchange = lastFailureExchange;
+            this.roundsToConvergence = roundsToConvergence;
+            this.advertisements = advertisements;
+            this.routeUpdates = routeUpdates;
+            this.wallMillis = wallMillis;
+        }
+
+        public boolean isConverged() {
+            return roundsToConvergence != -1;
+        }
+
+        public int getRoundsToConvergence() {
+            return roundsToConvergence;
+        }
+
+        public long getAdvertisements() {
+            return advertisements;
+        }
+
+        public long getRouteUpdates() {
+            return routeUpdates;
+        }
+
+        String toCsv() {
+            return trial + "," + failedLinks + "," + lastFailureExchange + "," + roundsToConvergence + "," + advertisements + "," + routeUpdates + "," + wallMillis;
+        }
+    }
+
+    /**
+     * Helper method for summarising the results of the trials
+     */
+    private static String summarise(TrialResult[] results, int failures, int failAfter, int failSpread, int threads, long wallMillis) {
+        int converged = 0;
+        for (TrialResult result : results) {
+            if (result.isConverged()) {
+                converged++;
+            }
+        }
+        long[] rounds = new long[converged];
+        long[] advertisements = new long[converged];
+        long[] routeUpdates = new long[converged];
+        int i = 0;
+        for (TrialResult result : results) {
+            if (result.isConverged()) {
+                rounds[i] = result.getRoundsToConvergence();
+                advertisements[i] = result.getAdvertisements();
+                routeUpdates[i] = result.getRouteUpdates();
+                i++;
+            }
+        }
+        StringBuilder b = new StringBuilder();
+        b.append(results.length).append(" trials of ").append(failures).append(" link failures after exchange ").append(failAfter);
+        if (failSpread > 1) {
+            b.append(" to ").append(failAfter + failSpread - 1);
+        }
+        b.append(", ").append(threads).append(" threads, ").append(wallMillis).append(" ms\n");
+        b.append("Converged again: ").append(converged).append(" of ").append(results.length).append(" trials\n");
+        if (converged > 0) {
+            b.append("Rounds to convergence: ").append(distribution(rounds)).append('\n');
+            b.append("Advertisements:        ").append(distribution(advertisements)).append('\n');
+            b.append("Route updates:         ").append(distribution(routeUpdates)).append('\n');
+        }
+        return b.toString();
+    }
+
+    /**
+     * Helper method for describing a distribution by its mean and percentiles
+     */
+    private static String distribution(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (long value : sorted) {
+            sum += value;
+        }
+        return String.format(Locale.ROOT, "mean %.2f, p50 %d, p90 %d, p99 %d, max %d", sum / sorted.length,
+                percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), sorted[sorted.length - 1]);
+    }
+
+    /**
+     * Helper method for finding a percentile by nearest rank
+     */
+    private static long percentile(long[] sorted, double quantile) {
+        int rank = Math.max(1, (int) Math.ceil(quantile * sorted.length));
+        return sorted[rank - 1];
+    }
+
+    /**
+     * Helper method for checking that the scenario can be run as an experiment
+     */
+    private static void checkHeader(List<String> header) throws Exception {
+        if (header.indexOf("-maxExchanges") == -1) {
+            throw new Exception("The scenario must specify maxExchanges.");
+        }
+        int exchangeIndex = header.indexOf("-exchange");
+        int partitionsIndex = header.indexOf("-partitions");
+        if ((exchangeIndex != -1 && !header.get(exchangeIndex + 1).equals("sequential"))
+                || (partitionsIndex != -1 && !header.get(partitionsIndex + 1).equals("1"))) {
+            // the trials already run in parallel
+            throw new Exception("Experiments run every trial with exchange sequential and without partitions.");
+        }
+        int timingIndex = header.indexOf("-timing");
+        if (timingIndex != -1 && header.get(timingIndex + 1).equals("events")) {
+            // the trials start from a checkpoint
+            throw new Exception("Experiments cannot run with timing events.");
+        }
+    }
+
+    /**
+     * Helper method for making the header of the experiment out of the header of the scenario
+     *
+     * @param header       the header of the scenario
+     * @param storedLinks  true if the links are handed over ready built, so the flags which generate them are dropped
+     * @return the header of the experiment
+     */
+    private static List<String> experimentHeader(List<String> header, boolean storedLinks) {
+        List<String> experimentHeader = new ArrayList<String>();
+        for (int i = 0; i < header.size(); i++) {
+            String value = header.get(i);
+            if (EXPERIMENT_FLAGS.contains(value) || (storedLinks && value.equals("-topology"))) {
+                // skip the flag and its value
+                i++;
+            } else {
+                experimentHeader.add(value);
+            }
+        }
+        experimentHeader.addAll(Arrays.asList("-verbosity", "quiet", "-untilStability", "false", "-manual", "false"));
+        return experimentHeader;
+    }
+
+    /**
+     * Helper method for reading an int option of the command line
+     */
+    private static int intOption(List<String> options, String name, int defaultValue) {
+        int index = options.indexOf(name);
+        return index != -1 ? Integer.valueOf(options.get(index + 1)) : defaultValue;
+    }
+}
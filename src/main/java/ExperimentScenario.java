@@ -0,0 +1,86 @@
+import java.util.List;
+
+/**
+ * Scenario of one trial of an experiment, held in memory.
+ * <p>
+ * The links are handed over ready built, so all the trials of an experiment can share the links of one topology and
+ * only copy its costs. The only scheduled events are the link changes of the trial.
+ */
+public class ExperimentScenario implements ScenarioSource {
+
+    /**
+     * Number of values of a link change: node1, node2, afterExchange, newCost
+     */
+    private static final int LINK_CHANGE_WIDTH = 4;
+
+    /**
+     * The flags of the header
+     */
+    private final List<String> header;
+
+    /**
+     * The links of the trial
+     */
+    private final LinkTopology topology;
+
+    /**
+     * The link changes, {@link #LINK_CHANGE_WIDTH} values per change
+     */
+    private final int[] linkChanges;
+
+    /**
+     * Index of the section being read: the links, the link changes, the show best routes and the trace routing tables
+     */
+    private int section;
+
+    /**
+     * Number of records read from the current section
+     */
+    private int record;
+
+    /**
+     * Constructor
+     *
+     * @param header      {@link #header}
+     * @param topology    {@link #topology}
+     * @param linkChanges {@link #linkChanges}
+     */
+    public ExperimentScenario(List<String> header, LinkTopology topology, int[] linkChanges) {
+        this.header = header;
+        this.topology = topology;
+        this.linkChanges = linkChanges;
+    }
+
+    @Override
+    public List<String> readHeader() {
+        return header;
+    }
+
+    @Override
+    public LinkTopology readTopology() {
+        return topology;
+    }
+
+    @Override
+    public int readRecord(int[] values) {
+        if (section == 1 && record * LINK_CHANGE_WIDTH < linkChanges.length) {
+            System.arraycopy(linkChanges, record * LINK_CHANGE_WIDTH, values, 0, Math.min(LINK_CHANGE_WIDTH, values.length));
+            record++;
+            return LINK_CHANGE_WIDTH;
+        }
+        // end of the section
+        section++;
+        record = 0;
+        return -1;
+    }
+
+    @Override
+    public int getRecordLineNumber() {
+        return record;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
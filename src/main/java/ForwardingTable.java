@@ -0,0 +1,275 @@
+import java.util.Arrays;
+
+/**
+ * Forwarding table of a node: the next hops of its routes compiled into a multibit trie over the 32-bit addresses of
+ * the destinations, for longest prefix match lookups.
+ * <p>
+ * Every trie node covers {@link #STRIDE} bits of the addresses and has one slot per value of those bits, so a lookup
+ * reads at most one slot per byte of the address. A route whose prefix ends inside a trie node is expanded into all
+ * the slots it covers unless a longer prefix of the same trie node covers them (controlled prefix expansion). The
+ * routes are also kept unexpanded per trie node, so a removed route is replaced in its slots by the next shorter one.
+ * The trie nodes live in flat int arrays and are reused once empty, so lookups never allocate and updates only
+ * allocate when the arrays grow. Routes are put and removed one at a time as the routing table changes, without
+ * rebuilding the trie.
+ */
+public class ForwardingTable {
+
+    /**
+     * Next hop value of an empty slot and of a lookup without a matching route
+     */
+    public static final int NO_NEXT_HOP = RouteTable.NO_NEXT_HOP;
+
+    /**
+     * Number of address bits covered by a trie node
+     */
+    private static final int STRIDE = 8;
+
+    /**
+     * Number of slots of a trie node
+     */
+    private static final int SLOTS = 1 << STRIDE;
+
+    /**
+     * Number of unexpanded prefixes of a trie node. A prefix with r bits in the trie node has the index (1 << r) | bits.
+     */
+    private static final int PREFIXES = 2 * SLOTS;
+
+    /**
+     * Number of levels of the trie
+     */
+    private static final int LEVELS = 32 / STRIDE;
+
+    /**
+     * Child value of a slot without a child
+     */
+    private static final int NO_CHILD = -1;
+
+    /**
+     * Index of the root trie node
+     */
+    private static final int ROOT = 0;
+
+    /**
+     * Number of trie nodes the arrays are allocated for at first
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Child trie node of every slot, indexed by trie node * {@link #SLOTS} + slot
+     */
+    private int[] child;
+
+    /**
+     * Expanded next hop of every slot, indexed by trie node * {@link #SLOTS} + slot
+     */
+    private int[] nextHop;
+
+    /**
+     * Next hops of the unexpanded prefixes, indexed by trie node * {@link #PREFIXES} + prefix index
+     */
+    private int[] prefixNextHop;
+
+    /**
+     * Number of routes and children of every trie node
+     */
+    private int[] population;
+
+    /**
+     * Next hop of the route to the empty prefix
+     */
+    private int defaultNextHop = NO_NEXT_HOP;
+
+    /**
+     * Number of trie nodes in use, including the free ones
+     */
+    private int used;
+
+    /**
+     * Head of the list of free trie nodes, linked through their first child slot, or {@link #NO_CHILD}
+     */
+    private int free = NO_CHILD;
+
+    /**
+     * Number of routes
+     */
+    private int size;
+
+    /**
+     * The slots followed down to the trie node of a removed route
+     */
+    private final int[] path = new int[LEVELS];
+
+    /**
+     * Constructor
+     */
+    public ForwardingTable() {
+        child = new int[INITIAL_CAPACITY * SLOTS];
+        nextHop = new int[INITIAL_CAPACITY * SLOTS];
+        prefixNextHop = new int[INITIAL_CAPACITY * PREFIXES];
+        population = new int[INITIAL_CAPACITY];
+        newNode();
+    }
+
+    /**
+     * Finds the next hop of the longest prefix matching an address
+     *
+     * @param address the address
+     * @return the next hop or {@link #NO_NEXT_HOP} if no prefix matches
+     */
+    public int lookup(int address) {
+        int best = defaultNextHop;
+        int node = ROOT;
+        for (int shift = 32 - STRIDE; ; shift -= STRIDE) {
+            int slot = node << STRIDE | (address >>> shift) & (SLOTS - 1);
+            if (nextHop[slot] != NO_NEXT_HOP) {
+                best = nextHop[slot];
+            }
+            node = child[slot];
+            if (node == NO_CHILD) {
+                return best;
+            }
+        }
+    }
+
+    /**
+     * Puts the route to a prefix, replacing the next hop if there is a route to the prefix already
+     *
+     * @param address      an address within the prefix
+     * @param length       the prefix length in [0, 32]
+     * @param routeNextHop the next hop of the route
+     */
+    public void put(int address, int length, int routeNextHop) {
+        if (length == 0) {
+            if (defaultNextHop == NO_NEXT_HOP) {
+                size++;
+            }
+            defaultNextHop = routeNextHop;
+            return;
+        }
+        int depth = (length - 1) / STRIDE;
+        int node = ROOT;
+        for (int level = 0; level < depth; level++) {
+            int slot = node << STRIDE | (address >>> (32 - STRIDE * (level + 1))) & (SLOTS - 1);
+            int next = child[slot];
+            if (next == NO_CHILD) {
+                // newNode may grow the arrays
+                next = newNode();
+                child[slot] = next;
+                population[node]++;
+            }
+            node = next;
+        }
+        int bits = length - STRIDE * depth;
+        int prefix = (address >>> (32 - length)) & ((1 << bits) - 1);
+        int index = node * PREFIXES + ((1 << bits) | prefix);
+        if (prefixNextHop[index] == NO_NEXT_HOP) {
+            size++;
+            population[node]++;
+        }
+        prefixNextHop[index] = routeNextHop;
+        expand(node, bits, prefix);
+    }
+
+    /**
+     * Removes the route to a prefix if there is one
+     *
+     * @param address an address within the prefix
+     * @param length  the prefix length in [0, 32]
+     */
+    public void remove(int address, int length) {
+        if (length == 0) {
+            if (defaultNextHop != NO_NEXT_HOP) {
+                size--;
+            }
+            defaultNextHop = NO_NEXT_HOP;
+            return;
+        }
+        int depth = (length - 1) / STRIDE;
+        int node = ROOT;
+        for (int level = 0; level < depth; level++) {
+            path[level] = node << STRIDE | (address >>> (32 - STRIDE * (level + 1))) & (SLOTS - 1);
+            node = child[path[level]];
+            if (node == NO_CHILD) {
+                // no route to the prefix
+                return;
+            }
+        }
+        int bits = length - STRIDE * depth;
+        int prefix = (address >>> (32 - length)) & ((1 << bits) - 1);
+        int index = node * PREFIXES + ((1 << bits) | prefix);
+        if (prefixNextHop[index] == NO_NEXT_HOP) {
+            return;
+        }
+        prefixNextHop[index] = NO_NEXT_HOP;
+        size--;
+        population[node]--;
+        expand(node, bits, prefix);
+
+        // free the trie nodes left without routes and children
+        for (int level = depth - 1; level >= 0 && population[node] == 0; level--) {
+            child[node << STRIDE] = free;
+            free = node;
+            child[path[level]] = NO_CHILD;
+            node = path[level] >>> STRIDE;
+            population[node]--;
+        }
+    }
+
+    /**
+     * Getter for the number of routes
+     *
+     * @return the number of prefixes with a route
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Helper method for setting the slots covered by a prefix of a trie node to the next hop of the longest prefix of
+     * the trie node covering them
+     *
+     * @param node   the trie node
+     * @param bits   number of bits of the prefix in the trie node
+     * @param prefix the bits of the prefix in the trie node
+     */
+    private void expand(int node, int bits, int prefix) {
+        int first = prefix << (STRIDE - bits);
+        int end = first + (1 << (STRIDE - bits));
+        int prefixes = node * PREFIXES;
+        for (int slot = first; slot < end; slot++) {
+            int best = NO_NEXT_HOP;
+            for (int length = STRIDE; length > 0 && best == NO_NEXT_HOP; length--) {
+                best = prefixNextHop[prefixes + ((1 << length) | slot >>> (STRIDE - length))];
+            }
+            nextHop[node << STRIDE | slot] = best;
+        }
+    }
+
+    /**
+     * Helper method for taking an empty trie node from the free list or the end of the arrays
+     *
+     * @return the trie node
+     */
+    private int newNode() {
+        int node;
+        if (free != NO_CHILD) {
+            // a freed trie node has no routes and no children left, only the link
+            node = free;
+            free = child[node << STRIDE];
+            child[node << STRIDE] = NO_CHILD;
+            return node;
+        }
+        if (used == population.length) {
+            int capacity = 2 * used;
+            child = Arrays.copyOf(child, capacity * SLOTS);
+            nextHop = Arrays.copyOf(nextHop, capacity * SLOTS);
+            prefixNextHop = Arrays.copyOf(prefixNextHop, capacity * PREFIXES);
+            population = Arrays.copyOf(population, capacity);
+        }
+        node = used++;
+        Arrays.fill(child, node * SLOTS, (node + 1) * SLOTS, NO_CHILD);
+        Arrays.fill(nextHop, node * SLOTS, (node + 1) * SLOTS, NO_NEXT_HOP);
+        Arrays.fill(prefixNextHop, node * PREFIXES, (node + 1) * PREFIXES, NO_NEXT_HOP);
+        return node;
+    }
+}
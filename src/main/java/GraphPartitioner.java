@@ -0,0 +1,152 @@
+import java.util.Arrays;
+
+/**
+ * Class which splits the nodes of a network into partitions of about equal size with few links between them.
+ * <p>
+ * The partitions are first grown one after the other by breadth first search, so every partition is a connected
+ * region of the network where possible. Then the nodes on the borders are moved to the partition most of their
+ * neighbours are in, as long as that cuts fewer links and keeps the partitions balanced. Both steps run in time linear
+ * in the number of links and give the same partitions for the same network.
+ */
+public final class GraphPartitioner {
+
+    /**
+     * Number of passes over the nodes moving border nodes
+     */
+    private static final int REFINEMENT_PASSES = 8;
+
+    /**
+     * How much larger than the average a partition may grow while border nodes are moved
+     */
+    private static final double MAX_IMBALANCE = 1.03;
+
+    private GraphPartitioner() {
+    }
+
+    /**
+     * Splits the nodes of a network
+     *
+     * @param topology   the links of the network
+     * @param partitions number of partitions
+     * @return the partition of every node, indexed by node id
+     */
+    public static int[] partition(LinkTopology topology, int partitions) {
+        int numOfNodes = topology.getNumOfNodes();
+        int[] partitionOf = new int[numOfNodes];
+        int[] sizes = new int[partitions];
+        growPartitions(topology, partitions, partitionOf, sizes);
+        if (partitions > 1) {
+            refinePartitions(topology, partitions, partitionOf, sizes);
+        }
+        return partitionOf;
+    }
+
+    /**
+     * Counts the links between nodes of different partitions
+     *
+     * @param topology    the links of the network
+     * @param partitionOf the partition of every node
+     * @return the number of links cut by the partitions
+     */
+    public static int edgeCut(LinkTopology topology, int[] partitionOf) {
+        int cut = 0;
+        for (int node = 0; node < topology.getNumOfNodes(); node++) {
+            for (int slot = topology.firstSlot(node); slot < topology.endSlot(node); slot++) {
+                int neighbour = topology.getNeighbour(slot);
+                if (node < neighbour && partitionOf[node] != partitionOf[neighbour]) {
+                    cut++;
+                }
+            }
+        }
+        return cut;
+    }
+
+    /**
+     * Helper method for growing the partitions one after the other by breadth first search. A partition which runs out
+     * of reachable nodes continues from the lowest node id without a partition.
+     */
+    private static void growPartitions(LinkTopology topology, int partitions, int[] partitionOf, int[] sizes) {
+        int numOfNodes = topology.getNumOfNodes();
+        Arrays.fill(partitionOf, -1);
+        int[] queue = new int[numOfNodes];
+        int head = 0;
+        int tail = 0;
+        int nextSeed = 0;
+        int assigned = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            // the remaining nodes are shared evenly by the remaining partitions
+            int target = (numOfNodes - assigned + partitions - partition - 1) / (partitions - partition);
+            head = tail = 0;
+            while (sizes[partition] < target) {
+                if (head == tail) {
+                    while (partitionOf[nextSeed] != -1) {
+                        nextSeed++;
+                    }
+                    partitionOf[nextSeed] = partition;
+                    sizes[partition]++;
+                    queue[tail++] = nextSeed;
+                    continue;
+                }
+                int node = queue[head++];
+                for (int slot = topology.firstSlot(node); slot < topology.endSlot(node) && sizes[partition] < target; slot++) {
+                    int neighbour = topology.getNeighbour(slot);
+                    if (partitionOf[neighbour] == -1) {
+                        partitionOf[neighbour] = partition;
+                        sizes[partition]++;
+                        queue[tail++] = neighbour;
+                    }
+                }
+            }
+            assigned += sizes[partition];
+        }
+    }
+
+    /**
+     * Helper method for moving border nodes to the partition most of their neighbours are in
+     */
+    private static void refinePartitions(LinkTopology topology, int partitions, int[] partitionOf, int[] sizes) {
+        int numOfNodes = topology.getNumOfNodes();
+        int maxSize = (int) Math.ceil(MAX_IMBALANCE * numOfNodes / partitions);
+        int minSize = Math.max(1, 2 * numOfNodes / partitions - maxSize);
+        int[] links = new int[partitions];
+        for (int pass = 0; pass < REFINEMENT_PASSES; pass++) {
+            int moves = 0;
+            for (int node = 0; node < numOfNodes; node++) {
+                int own = partitionOf[node];
+                if (sizes[own] <= minSize) {
+                    continue;
+                }
+
+                // count the links of the node into every partition
+                boolean border = false;
+                for (int slot = topology.firstSlot(node); slot < topology.endSlot(node); slot++) {
+                    int partition = partitionOf[topology.getNeighbour(slot)];
+                    links[partition]++;
+                    border |= partition != own;
+                }
+                if (border) {
+                    int best = own;
+                    for (int slot = topology.firstSlot(node); slot < topology.endSlot(node); slot++) {
+                        int partition = partitionOf[topology.getNeighbour(slot)];
+                        if (links[partition] > links[best] && sizes[partition] < maxSize) {
+                            best = partition;
+                        }
+                    }
+                    if (best != own) {
+                        partitionOf[node] = best;
+                        sizes[own]--;
+                        sizes[best]++;
+                        moves++;
+                    }
+                }
+                for (int slot = topology.firstSlot(node); slot < topology.endSlot(node); slot++) {
+                    links[partitionOf[topology.getNeighbour(slot)]] = 0;
+                }
+                links[own] = 0;
+            }
+            if (moves == 0) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,562 @@
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Routing table backed by a {@link HashMap} of {@link RouteTableEntry RouteTableEntry} objects.
+ */
+public class HashRouteTable implements RouteTable {
+
+    /**
+     * Listener for route table changes
+     */
+    private final NetworkNodeRouteTableListener listener;
+
+    /**
+     * Sink the routing table changes are reported to
+     */
+    private SimulationEventSink sink = NoOpEventSink.INSTANCE;
+
+    /**
+     * route table map. It is indexed by the destination's node ID and holds a {@link RouteTableEntry RouteTableEntry} object
+     */
+    private final HashMap<Integer, RouteTableEntry> routeTable;
+
+    /**
+     * The id of the node this routing table belongs to.
+     */
+    private final int nodeId;
+
+    /**
+     * Infinity cost
+     */
+    private final int infinityCost;
+
+    /**
+     * Version of the routing table. Incremented on every change.
+     */
+    private int version;
+
+    /**
+     * Destinations changed since the last snapshot
+     */
+    private final TreeSet<Integer> changedDestinations = new TreeSet<Integer>();
+
+    /**
+     * Destinations whose next hop has changed since they were last polled, or null if the changes are not tracked
+     */
+    private TreeSet<Integer> nextHopChanges;
+
+    /**
+     * Number of exchanges a destination is held down for after its route has been lost
+     */
+    private int holdDownExchanges = HOLD_DOWN_DEFAULT;
+
+    /**
+     * Hold-downs of the destinations whose routes have been lost. It is indexed by the destination's node ID and holds
+     * the cost of the lost route and the remaining exchanges of the hold-down.
+     */
+    private final TreeMap<Integer, int[]> heldDown = new TreeMap<Integer, int[]>();
+
+    /**
+     * Constructor
+     *
+     * @param nodeId       {@link #nodeId}
+     * @param listener     {@link #listener}
+     * @param infinityCost {@link #infinityCost}
+     */
+    public HashRouteTable(int nodeId, NetworkNodeRouteTableListener listener, int infinityCost) {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        this.infinityCost = infinityCost;
+        this.routeTable = new HashMap<Integer, RouteTableEntry>();
+
+        // creates the default entryo to self
+        RouteTableEntry routeToSelf = new RouteTableEntry(this.nodeId, 0, null);
+        routeTable.put(nodeId, routeToSelf);
+        changedDestinations.add(nodeId);
+    }
+
+    /**
+     * Helper method to get currently logged cost for a destination node
+     *
+     * @param destinationId the id of the destination node
+     * @return the currently logged cost for the route to the destination node or {@link #infinityCost} if it does not know
+     */
+    @Override
+    public int getCost(int destinationId) {
+        RouteTableEntry routeTableEntry = routeTable.get(destinationId);
+        if (routeTableEntry != null) {
+            routeTableEntry.resetForgetCounter();
+            return routeTableEntry.getCost();
+        }
+        return infinityCost;
+    }
+
+    @Override
+    public int peekCost(int destinationId) {
+        RouteTableEntry routeTableEntry = routeTable.get(destinationId);
+        return routeTableEntry != null ? routeTableEntry.getCost() : infinityCost;
+    }
+
+    @Override
+    public void trackNextHopChanges() {
+        nextHopChanges = new TreeSet<Integer>(routeTable.keySet());
+    }
+
+    @Override
+    public int pollNextHopChange(int fromDestinationId) {
+        Integer dest = nextHopChanges.ceiling(fromDestinationId);
+        if (dest == null) {
+            return -1;
+        }
+        nextHopChanges.remove(dest);
+        return dest;
+    }
+
+    @Override
+    public int size() {
+        return routeTable.size();
+    }
+
+    @Override
+    public RouteAdvertisement getCosts() {
+        Object[] routesDest = routeTable.keySet().toArray();
+        Arrays.sort(routesDest);
+
+        int[] destinations = new int[routesDest.length];
+        int[] costs = new int[routesDest.length];
+        int[] nextHops = new int[routesDest.length];
+        for (int i = 0; i < routesDest.length; i++) {
+            RouteTableEntry entry = routeTable.get(routesDest[i]);
+            Integer nextHop = entry.getNextHop();
+            destinations[i] = entry.getDest();
+            costs[i] = entry.getCost();
+            nextHops[i] = nextHop != null ? nextHop : NO_NEXT_HOP;
+        }
+        int[] withdrawn = getWithdrawnDestinations();
+        changedDestinations.clear();
+        return new RouteAdvertisement(version, true, destinations, costs, nextHops, routesDest.length, withdrawn);
+    }
+
+    @Override
+    public RouteAdvertisement getChangedCosts() {
+        int changed = changedDestinations.size();
+        int[] destinations = new int[changed];
+        int[] costs = new int[changed];
+        int[] nextHops = new int[changed];
+        int i = 0;
+        for (int dest : changedDestinations) {
+            RouteTableEntry entry = routeTable.get(dest);
+            if (entry != null) {
+                Integer nextHop = entry.getNextHop();
+                destinations[i] = dest;
+                costs[i] = entry.getCost();
+                nextHops[i] = nextHop != null ? nextHop : NO_NEXT_HOP;
+                i++;
+            }
+        }
+        int[] withdrawn = getWithdrawnDestinations();
+        changedDestinations.clear();
+        return new RouteAdvertisement(version, false, destinations, costs, nextHops, i, withdrawn);
+    }
+
+    /**
+     * Helper method for finding the changed destinations which no longer have a route
+     *
+     * @return the withdrawn destinations in ascending order
+     */
+    private int[] getWithdrawnDestinations() {
+        int[] withdrawn = new int[changedDestinations.size()];
+        int i = 0;
+        for (int dest : changedDestinations) {
+            if (!routeTable.containsKey(dest)) {
+                withdrawn[i++] = dest;
+            }
+        }
+        return i == withdrawn.length ? withdrawn : Arrays.copyOf(withdrawn, i);
+    }
+
+    @Override
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Helper method for removing a neighbour.
+     * It removes the neighbour from the routing table as well as any routes that have been learned from the neighbour
+     *
+     * @param neighbourId
+     */
+    @Override
+    public void removeNeighbour(int neighbourId) {
+        // remove the neighbouring node
+        if (removeEntryForDest(neighbourId)) {
+            // for clarity
+            sink.neighbourRemoved(nodeId, neighbourId);
+        }
+
+        // find and remove all entries learned from the neighbour
+        HashSet<RouteTableEntry> toBeRemoved = new HashSet<RouteTableEntry>(); // holds all the entries which are to be removed
+        for (RouteTableEntry entry : getEntriesWithoutSelf()) {
+            if (entry.getNextHop() == neighbourId) {
+                // entry learned from the neighbour => remove entry
+                toBeRemoved.add(entry);
+
+                // for clarity
+                sink.routeDropped(nodeId, entry.getDest(), entry.getCost(), neighbourId, SimulationEventSink.DropReason.NEIGHBOUR_REMOVED);
+            }
+        }
+        removeEntries(toBeRemoved);
+    }
+
+    /**
+     * Helper method for getting all entries without the default entry.
+     *
+     * @return set of all entries
+     */
+    private HashSet<RouteTableEntry> getEntriesWithoutSelf() {
+        HashSet<RouteTableEntry> entries = new HashSet<RouteTableEntry>();
+        for (RouteTableEntry entry : routeTable.values()) {
+            if (!entry.getDest().equals(nodeId)) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Helper method for removing entries from the routing table
+     *
+     * @param toBeRemoved set of nodes to be removed
+     */
+    private void removeEntries(HashSet<RouteTableEntry> toBeRemoved) {
+        if (toBeRemoved.size() > 0) {
+            for (RouteTableEntry entry : toBeRemoved) {
+                removeEntryForDest(entry.getDest());
+            }
+        }
+    }
+
+    /**
+     * Helper method for removing an entry for a particular destination
+     *
+     * @param nodeId the destination node id
+     * @return true if an entry was really removed
+     */
+    private boolean removeEntryForDest(Integer nodeId) {
+        RouteTableEntry removedEntry = routeTable.remove(nodeId);
+        if (removedEntry != null) {
+            if (holdDownExchanges > 0) {
+                heldDown.put(nodeId, new int[]{removedEntry.getCost(), holdDownExchanges});
+            }
+            if (nextHopChanges != null) {
+                nextHopChanges.add(nodeId);
+            }
+            version++;
+            changedDestinations.add(nodeId);
+
+            // notify the listener if an entry was really removed
+            listener.onRouteTableUpdate(this.nodeId);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Helper method for reducing the forget counters for the route table entries
+     *
+     * @return the number of routes removed because their forget counters ran out
+     */
+    @Override
+    public int reduceAllForgetCounters() {
+        HashSet<RouteTableEntry> toBeRemoved = new HashSet<RouteTableEntry>();
+        for (RouteTableEntry entry : routeTable.values()) {
+            entry.reduceForgetCounter();
+            if (entry.shouldForget()) {
+                sink.routeDropped(nodeId, entry.getDest(), entry.getCost(), nextHopOf(entry), SimulationEventSink.DropReason.TIMEOUT);
+                toBeRemoved.add(entry);
+            }
+        }
+        removeEntries(toBeRemoved);
+        return toBeRemoved.size();
+    }
+
+    /**
+     * Helper method for logging route towards a particular destination
+     *
+     * @param destinationId the id of the route destination
+     * @param newCost       the cost of the route
+     * @param senderId      the id of the node which advertised the route
+     */
+    @Override
+    public void logDestCost(int destinationId, int newCost, int senderId) {
+        // create route table entry
+        RouteTableEntry entry = new RouteTableEntry(destinationId, newCost, senderId);
+
+        // record the new entry ( override old value if exists )
+        RouteTableEntry oldEntry = routeTable.put(destinationId, entry);
+        if (nextHopChanges != null && (oldEntry == null || nextHopOf(oldEntry) != senderId)) {
+            nextHopChanges.add(destinationId);
+        }
+        heldDown.remove(destinationId);
+        version++;
+        changedDestinations.add(destinationId);
+
+        // notify listener for change in routing table
+        listener.onRouteTableUpdate(nodeId);
+
+        // for clarity
+        sink.routeLogged(nodeId, destinationId, newCost, senderId);
+    }
+
+    /**
+     * Helper method for getting the next node on a route for a destination
+     *
+     * @param destinationId the destination node id
+     * @return the id of the next-on-the-route node or {@link #NO_NEXT_HOP} if it does not know
+     */
+    @Override
+    public int getNextHopTowardsDest(int destinationId) {
+        RouteTableEntry entry = routeTable.get(destinationId);
+        if (entry != null && entry.nextNodeId != null) {
+            return entry.nextNodeId;
+        }
+        return NO_NEXT_HOP;
+    }
+
+    @Override
+    public void setEventSink(SimulationEventSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * Getter for infinity cost
+     *
+     * @return the infinity cost of the routing table
+     */
+    @Override
+    public int getInfinityCost() {
+        return infinityCost;
+    }
+
+    /**
+     * Helper method for dropping a route
+     *
+     * @param destinationId destination node id
+     */
+    @Override
+    public void dropRoute(int destinationId) {
+        RouteTableEntry entry = routeTable.get(destinationId);
+        if (entry != null) {
+            // remove
+            removeEntryForDest(entry.getDest());
+
+            // for clarity
+            sink.routeDropped(nodeId, destinationId, infinityCost, nextHopOf(entry), SimulationEventSink.DropReason.INFINITY);
+        }
+    }
+
+    /**
+     * Helper method for removing a route because its next hop has withdrawn it
+     *
+     * @param destinationId destination node id
+     */
+    @Override
+    public void withdrawRoute(int destinationId) {
+        RouteTableEntry entry = routeTable.get(destinationId);
+        if (entry != null) {
+            // remove
+            removeEntryForDest(entry.getDest());
+
+            // for clarity
+            sink.routeDropped(nodeId, destinationId, entry.getCost(), nextHopOf(entry), SimulationEventSink.DropReason.WITHDRAWN);
+        }
+    }
+
+    @Override
+    public void setHoldDown(int holdDownExchanges) {
+        this.holdDownExchanges = holdDownExchanges;
+    }
+
+    @Override
+    public boolean isHeldDown(int destinationId, int newCost) {
+        int[] holdDown = heldDown.get(destinationId);
+        return holdDown != null && newCost >= holdDown[0];
+    }
+
+    @Override
+    public int reduceHoldDownTimers() {
+        int heldDownDestinations = heldDown.size();
+        Iterator<int[]> holdDowns = heldDown.values().iterator();
+        while (holdDowns.hasNext()) {
+            int[] holdDown = holdDowns.next();
+            holdDown[1]--;
+            if (holdDown[1] <= 0) {
+                holdDowns.remove();
+            }
+        }
+        return heldDownDestinations;
+    }
+
+    /**
+     * Helper method for unboxing the next hop of an entry
+     *
+     * @param entry the entry
+     * @return the next hop or {@link #NO_NEXT_HOP} for the route to self
+     */
+    private static int nextHopOf(RouteTableEntry entry) {
+        return entry.getNextHop() != null ? entry.getNextHop() : NO_NEXT_HOP;
+    }
+
+    @Override
+    public void writeCheckpoint(CheckpointWriter out) throws IOException {
+        Object[] routesDest = routeTable.keySet().toArray();
+        Arrays.sort(routesDest);
+        out.putInt(version);
+        out.putInt(routesDest.length);
+        for (Object dest : routesDest) {
+            RouteTableEntry entry = routeTable.get(dest);
+            out.putInt(entry.getDest());
+            out.putInt(entry.getCost());
+            out.putInt(nextHopOf(entry));
+            out.putInt(entry.forgetCounter);
+        }
+        out.putInt(changedDestinations.size());
+        for (int dest : changedDestinations) {
+            out.putInt(dest);
+        }
+        out.putInt(heldDown.size());
+        for (Map.Entry<Integer, int[]> holdDown : heldDown.entrySet()) {
+            out.putInt(holdDown.getKey());
+            out.putInt(holdDown.getValue()[0]);
+            out.putInt(holdDown.getValue()[1]);
+        }
+    }
+
+    @Override
+    public void readCheckpoint(CheckpointReader in) throws IOException {
+        version = in.getInt();
+        int[] routes = new int[4 * in.getInt()];
+        in.getInts(routes, 0, routes.length);
+        if (nextHopChanges != null) {
+            // the routes of the checkpoint replace all routes
+            nextHopChanges.addAll(routeTable.keySet());
+            for (int i = 0; i < routes.length; i += 4) {
+                nextHopChanges.add(routes[i]);
+            }
+        }
+        routeTable.clear();
+        for (int i = 0; i < routes.length; i += 4) {
+            RouteTableEntry entry = new RouteTableEntry(routes[i], routes[i + 1], routes[i + 2] != NO_NEXT_HOP ? routes[i + 2] : null);
+            entry.forgetCounter = routes[i + 3];
+            routeTable.put(routes[i], entry);
+        }
+        int[] changed = new int[in.getInt()];
+        in.getInts(changed, 0, changed.length);
+        changedDestinations.clear();
+        for (int dest : changed) {
+            changedDestinations.add(dest);
+        }
+        int[] held = new int[3 * in.getInt()];
+        in.getInts(held, 0, held.length);
+        heldDown.clear();
+        if (holdDownExchanges > 0) {
+            // the hold-downs only matter if this simulation holds routes down too
+            for (int i = 0; i < held.length; i += 3) {
+                heldDown.put(held[i], new int[]{held[i + 1], held[i + 2]});
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("RouteTable for node : " + nodeId + "\n");
+        b.append("\tdest cost next\n");
+        Object[] routesDest = routeTable.keySet().toArray();
+        Arrays.sort(routesDest);
+        for (int i = 0; i < routesDest.length; i++) {
+            Integer routesDestNodeId = (Integer) routesDest[i];
+            RouteTableEntry routeTableEntry = routeTable.get(routesDestNodeId);
+            String format = String.format("\t%4d%5d%5d\n", routeTableEntry.getDest(), routeTableEntry.getCost(), routeTableEntry.getNextHop());
+            b.append(format);
+        }
+
+        return b.toString();
+    }
+
+    /**
+     * Class which represents a route table entry
+     */
+    public class RouteTableEntry {
+
+        /**
+         * The destination of the entry.
+         */
+        private final Integer destNodeId;
+
+        /**
+         * The current cost of the route for the destination.
+         */
+        private Integer cost;
+
+        /**
+         * The next hop on the route for the destination.
+         */
+        private Integer nextNodeId;
+
+        /**
+         * Forget counter
+         */
+        private Integer forgetCounter = FORGET_AFTER_DEFAULT;
+
+        /**
+         * Constructor
+         *
+         * @param destNodeId the destination id {@link #destNodeId}
+         * @param cost       the cost of the route {@link #cost}
+         * @param nextNodeId the next hop node id {@link #nextNodeId}
+         */
+        public RouteTableEntry(Integer destNodeId, Integer cost, Integer nextNodeId) {
+            this.destNodeId = destNodeId;
+            this.cost = cost;
+            this.nextNodeId = nextNodeId;
+        }
+
+        /**
+         * Helper method for reducing the forget counter for the entry.
+         */
+        public void reduceForgetCounter() {
+            if (!destNodeId.equals(nodeId))
+                forgetCounter--;
+        }
+
+        /**
+         * Helper method for resetting the forget counter.
+         */
+        public void resetForgetCounter() {
+            forgetCounter = FORGET_AFTER_DEFAULT;
+        }
+
+        public Integer getDest() {
+            return destNodeId;
+        }
+
+        public Integer getCost() {
+            return cost;
+        }
+
+        public Integer getNextHop() {
+            return nextNodeId;
+        }
+
+        public boolean shouldForget() {
+            return forgetCounter <= 0;
+        }
+
+        @Override
+        public String toString() {
+            return "RouteEntry{ dest: " + destNodeId + ", cost: " + cost + ", next:" + nextNodeId + "}";
+        }
+    }
+
+}
@@ -0,0 +1,147 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram of durations with one bucket per power of two nanoseconds.
+ * <p>
+ * Durations can be recorded from any number of threads without locking. The buckets are read and reset once per round
+ * by {@link #takeRound()}, which also adds them to the totals of the whole run. Percentiles are reported as the upper
+ * bound of the bucket they fall into, so they are at most twice the exact value.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets, bucket i holds the durations in [2^i, 2^(i+1)) ns
+     */
+    private static final int BUCKETS = 64;
+
+    /**
+     * Number of durations in every bucket since the last round
+     */
+    private final LongAdder[] roundBuckets = new LongAdder[BUCKETS];
+
+    /**
+     * Sum of the durations since the last round, in nanoseconds
+     */
+    private final LongAdder roundNanos = new LongAdder();
+
+    /**
+     * Number of durations in every bucket during the previous rounds
+     */
+    private final long[] totalBuckets = new long[BUCKETS];
+
+    /**
+     * Number of durations in every bucket during the last round
+     */
+    private final long[] lastRoundBuckets = new long[BUCKETS];
+
+    /**
+     * Sum of the durations during the previous rounds, in nanoseconds
+     */
+    private long totalNanos;
+
+    /**
+     * Sum of the durations during the last round, in nanoseconds
+     */
+    private long lastRoundNanos;
+
+    /**
+     * Constructor
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            roundBuckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        roundBuckets[63 - Long.numberOfLeadingZeros(Math.max(1, nanos))].increment();
+        roundNanos.add(nanos);
+    }
+
+    /**
+     * Ends a round: the durations recorded since the last call become the last round and are added to the totals.
+     * Must not be called while durations are being recorded.
+     */
+    public void takeRound() {
+        for (int i = 0; i < BUCKETS; i++) {
+            lastRoundBuckets[i] = roundBuckets[i].sumThenReset();
+            totalBuckets[i] += lastRoundBuckets[i];
+        }
+        lastRoundNanos = roundNanos.sumThenReset();
+        totalNanos += lastRoundNanos;
+    }
+
+    /**
+     * @return the number of durations recorded during the last round
+     */
+    public long getLastRoundCount() {
+        return count(lastRoundBuckets);
+    }
+
+    /**
+     * @return the sum of the durations recorded during the last round, in nanoseconds
+     */
+    public long getLastRoundNanos() {
+        return lastRoundNanos;
+    }
+
+    /**
+     * @param quantile the quantile, in [0, 1]
+     * @return the quantile of the durations recorded during the last round, in nanoseconds
+     */
+    public long getLastRoundPercentile(double quantile) {
+        return percentile(lastRoundBuckets, quantile);
+    }
+
+    /**
+     * @return the sum of all the durations recorded, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @param quantile the quantile, in [0, 1]
+     * @return the quantile of all the durations recorded, in nanoseconds
+     */
+    public long getTotalPercentile(double quantile) {
+        return percentile(totalBuckets, quantile);
+    }
+
+    /**
+     * Helper method for counting the durations in buckets
+     */
+    private static long count(long[] buckets) {
+        long count = 0;
+        for (long bucket : buckets) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * Helper method for finding the bucket of a quantile
+     *
+     * @return the upper bound of the bucket or 0 if no duration has been recorded
+     */
+    private static long percentile(long[] buckets, double quantile) {
+        long count = count(buckets);
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
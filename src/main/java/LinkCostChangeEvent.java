@@ -3,39 +3,86 @@
  */
 public class LinkCostChangeEvent extends ScheduledEvent {
 
+    /**
+     * Interface for the link cost change listeners.
+     */
+    public interface LinkCostChangeListener {
+        void onLinkCostChange(int node1Id, int node2Id);
+    }
+
     /**
      * the new cost of the link
      */
-    protected final Integer newCost;
+    protected final int newCost;
 
     /**
-     * the link itself
+     * the links of the network
      */
-    protected final NetworkLink link;
+    protected final LinkTopology topology;
+
+    /**
+     * one end of the link
+     */
+    protected final int node1Id;
+
+    /**
+     * the other end of the link
+     */
+    protected final int node2Id;
+
+    /**
+     * listener for the change
+     */
+    private final LinkCostChangeListener listener;
 
     /**
      * Constructor
      * @param afterExchange specifies after which exchange should this event fire
-     * @param networkLink specifies which network link should get its cost changed
+     * @param topology the links of the network
+     * @param node1Id one end of the link which should get its cost changed
+     * @param node2Id the other end of the link which should get its cost changed
      * @param newCost specifies the new cost of the network link
+     * @param listener listener for the change
+     * @param sink sink the event reports to
      */
-    public LinkCostChangeEvent(Integer afterExchange, NetworkLink networkLink, Integer newCost) {
-        super(afterExchange);
+    public LinkCostChangeEvent(Integer afterExchange, LinkTopology topology, int node1Id, int node2Id, int newCost, LinkCostChangeListener listener, SimulationEventSink sink) {
+        super(afterExchange, sink);
         this.newCost = newCost;
-        this.link = networkLink;
+        this.topology = topology;
+        this.node1Id = node1Id;
+        this.node2Id = node2Id;
+        this.listener = listener;
+    }
+
+    public int getNode1Id() {
+        return node1Id;
+    }
+
+    public int getNode2Id() {
+        return node2Id;
+    }
+
+    public int getNewCost() {
+        return newCost;
     }
 
     @Override
     public void executeEvent(Integer currentExchange) {
+        // find the link among the neighbours of node1
+        int slot = topology.findSlot(node1Id, node2Id);
+
         // print for clarity
-        System.out.println("LinkCostChangeEvent\n\tlink between " + link.getNode1().getNodeId() + " and " + link.getNode2().getNodeId() + " from " + link.cost + " to " + newCost);
+        sink.message("LinkCostChangeEvent\n\tlink between " + node1Id + " and " + node2Id + " from " + topology.getCost(slot) + " to " + newCost + "\n");
 
         // change cost
-        link.cost = newCost;
+        topology.setCost(slot, newCost);
+
+        // notify listener
+        listener.onLinkCostChange(node1Id, node2Id);
     }
 
     @Override
     public String toString() {
-        return "LinkCostChangeEvent: " + link + ", newCost: " + newCost;
+        return "LinkCostChangeEvent: " + topology.getCost(topology.findSlot(node1Id, node2Id)) + ", newCost: " + newCost;
     }
 }
@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * Class representing the links of the network in compressed sparse row form.
+ * <p>
+ * The neighbours of node {@code i} occupy the slots {@code [offsets[i], offsets[i + 1])}, sorted by neighbour id.
+ * Every link is stored once per endpoint and the two slots of a link point at each other so a cost change can be
+ * applied to both directions.
+ */
+public class LinkTopology {
+
+    /**
+     * Number of nodes in the network
+     */
+    private final int numOfNodes;
+
+    /**
+     * Start of the neighbour slots of every node. Holds numOfNodes + 1 values.
+     */
+    private final int[] offsets;
+
+    /**
+     * Neighbour node id of every slot
+     */
+    private final int[] neighbours;
+
+    /**
+     * Link cost of every slot
+     */
+    private final int[] costs;
+
+    /**
+     * The slot describing the same link from the neighbour's side
+     */
+    private final int[] reverseSlots;
+
+    /**
+     * Constructor
+     *
+     * @param numOfNodes   {@link #numOfNodes}
+     * @param offsets      {@link #offsets}
+     * @param neighbours   {@link #neighbours}
+     * @param costs        {@link #costs}
+     * @param reverseSlots {@link #reverseSlots}
+     */
+    LinkTopology(int numOfNodes, int[] offsets, int[] neighbours, int[] costs, int[] reverseSlots) {
+        this.numOfNodes = numOfNodes;
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.costs = costs;
+        this.reverseSlots = reverseSlots;
+    }
+
+    public int getNumOfNodes() {
+        return numOfNodes;
+    }
+
+    /**
+     * @return the number of links in the network
+     */
+    public int getNumOfLinks() {
+        return neighbours.length / 2;
+    }
+
+    /**
+     * @param nodeId node id
+     * @return the first neighbour slot of the node
+     */
+    public int firstSlot(int nodeId) {
+        return offsets[nodeId];
+    }
+
+    /**
+     * @param nodeId node id
+     * @return the slot after the last neighbour slot of the node
+     */
+    public int endSlot(int nodeId) {
+        return offsets[nodeId + 1];
+    }
+
+    /**
+     * @param slot neighbour slot
+     * @return the id of the neighbour in the slot
+     */
+    public int getNeighbour(int slot) {
+        return neighbours[slot];
+    }
+
+    /**
+     * @param slot neighbour slot
+     * @return the cost of the link in the slot
+     */
+    public int getCost(int slot) {
+        return costs[slot];
+    }
+
+    /**
+     * @param slot neighbour slot
+     * @return the slot of the same link seen from the neighbour
+     */
+    public int getReverseSlot(int slot) {
+        return reverseSlots[slot];
+    }
+
+    /**
+     * Changes the cost of a link in both directions
+     *
+     * @param slot    one of the slots of the link
+     * @param newCost the new cost of the link
+     */
+    public void setCost(int slot, int newCost) {
+        costs[slot] = newCost;
+        costs[reverseSlots[slot]] = newCost;
+    }
+
+    /**
+     * Copy which shares the links with this topology but has its own costs, so cost changes in either do not show in
+     * the other. The links themselves never change after they are built.
+     *
+     * @return the copy
+     */
+    public LinkTopology withOwnCosts() {
+        return new LinkTopology(numOfNodes, offsets, neighbours, costs.clone(), reverseSlots);
+    }
+
+    /**
+     * Finds the link between two nodes
+     *
+     * @param fromNodeId one end of the link
+     * @param toNodeId   other end of the link
+     * @return the slot of the link in the adjacency of fromNodeId or -1 if the nodes are not linked
+     */
+    public int findSlot(int fromNodeId, int toNodeId) {
+        int slot = Arrays.binarySearch(neighbours, offsets[fromNodeId], offsets[fromNodeId + 1], toNodeId);
+        return slot >= 0 ? slot : -1;
+    }
+
+    /**
+     * Print link costs matrix. The matrix is dense so this is meant for small networks only.
+     *
+     * @return the link costs matrix
+     */
+    public String toDenseString() {
+        StringBuilder b = new StringBuilder("links costs:\n");
+        int[] row = new int[numOfNodes];
+        for (int i = 0; i < numOfNodes; i++) {
+            Arrays.fill(row, RouteTable.FAILED_LINK_COST);
+            row[i] = 0;
+            for (int slot = offsets[i]; slot < offsets[i + 1]; slot++) {
+                row[neighbours[slot]] = costs[slot];
+            }
+            for (int y = 0; y < numOfNodes; y++) {
+                b.append("\t" + row[y]);
+            }
+            b.append("\n");
+        }
+        return b.toString();
+    }
+
+    /**
+     * Hash of the links without their costs, for telling if state saved for a network belongs to this one
+     *
+     * @return the hash
+     */
+    public long fingerprint() {
+        long hash = numOfNodes;
+        for (int offset : offsets) {
+            hash = hash * 31 + offset;
+        }
+        for (int neighbour : neighbours) {
+            hash = hash * 31 + neighbour;
+        }
+        return hash;
+    }
+
+    /**
+     * Adds every link to a builder once, with its current cost
+     *
+     * @param builder the builder
+     */
+    public void copyLinksTo(Builder builder) {
+        for (int node = 0; node < numOfNodes; node++) {
+            for (int slot = firstSlot(node); slot < endSlot(node); slot++) {
+                if (node < neighbours[slot]) {
+                    builder.addLink(node, neighbours[slot], costs[slot]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Class which collects the links of a network and builds a {@link LinkTopology LinkTopology} out of them.
+     */
+    public static class Builder {
+
+        /**
+         * Number of nodes in the network
+         */
+        private final int numOfNodes;
+
+        /**
+         * One end of every added link
+         */
+        private int[] fromNodes = new int[16];
+
+        /**
+         * Other end of every added link
+         */
+        private int[] toNodes = new int[16];
+
+        /**
+         * Cost of every added link
+         */
+        private int[] linkCosts = new int[16];
+
+        /**
+         * Number of added links
+         */
+        private int numOfLinks = 0;
+
+        /**
+         * Constructor
+         *
+         * @param numOfNodes number of nodes in the network
+         */
+        public Builder(int numOfNodes) {
+            this.numOfNodes = numOfNodes;
+        }
+
+        /**
+         * Adds a link. If the same two nodes are linked more than once the last link wins.
+         *
+         * @param fromNodeId one end of the link
+         * @param toNodeId   other end of the link
+         * @param cost       cost of the link
+         * @return this builder
+         */
+        public Builder addLink(int fromNodeId, int toNodeId, int cost) {
+            if (numOfLinks == fromNodes.length) {
+                int newLength = fromNodes.length * 2;
+                fromNodes = Arrays.copyOf(fromNodes, newLength);
+                toNodes = Arrays.copyOf(toNodes, newLength);
+                linkCosts = Arrays.copyOf(linkCosts, newLength);
+            }
+            fromNodes[numOfLinks] = fromNodeId;
+            toNodes[numOfLinks] = toNodeId;
+            linkCosts[numOfLinks] = cost;
+            numOfLinks++;
+            return this;
+        }
+
+        /**
+         * Builds the topology
+         *
+         * @return the topology holding all the added links
+         */
+        public LinkTopology build() {
+            // count the slots of every node
+            int[] offsets = new int[numOfNodes + 1];
+            for (int i = 0; i < numOfLinks; i++) {
+                offsets[fromNodes[i] + 1]++;
+                offsets[toNodes[i] + 1]++;
+            }
+            for (int i = 0; i < numOfNodes; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+
+            // fill the slots with (neighbour, link index) pairs so that sorting keeps duplicates in input order
+            long[] slots = new long[offsets[numOfNodes]];
+            int[] fill = Arrays.copyOf(offsets, numOfNodes);
+            for (int i = 0; i < numOfLinks; i++) {
+                slots[fill[fromNodes[i]]++] = ((long) toNodes[i] << 32) | i;
+                slots[fill[toNodes[i]]++] = ((long) fromNodes[i] << 32) | i;
+            }
+
+            // sort every node's slots by neighbour and keep only the last link to each neighbour
+            int[] compactOffsets = new int[numOfNodes + 1];
+            int[] neighbours = new int[slots.length];
+            int[] costs = new int[slots.length];
+            int size = 0;
+            for (int node = 0; node < numOfNodes; node++) {
+                compactOffsets[node] = size;
+                Arrays.sort(slots, offsets[node], offsets[node + 1]);
+                for (int slot = offsets[node]; slot < offsets[node + 1]; slot++) {
+                    int neighbour = (int) (slots[slot] >>> 32);
+                    if (slot + 1 < offsets[node + 1] && (int) (slots[slot + 1] >>> 32) == neighbour) {
+                        // a later link to the same neighbour overrides this one
+                        continue;
+                    }
+                    neighbours[size] = neighbour;
+                    costs[size] = linkCosts[(int) slots[slot]];
+                    size++;
+                }
+            }
+            compactOffsets[numOfNodes] = size;
+            neighbours = Arrays.copyOf(neighbours, size);
+            costs = Arrays.copyOf(costs, size);
+
+            // pair up the two slots of every link
+            int[] reverseSlots = new int[size];
+            for (int node = 0; node < numOfNodes; node++) {
+                for (int slot = compactOffsets[node]; slot < compactOffsets[node + 1]; slot++) {
+                    int neighbour = neighbours[slot];
+                    reverseSlots[slot] = Arrays.binarySearch(neighbours, compactOffsets[neighbour], compactOffsets[neighbour + 1], node);
+                }
+            }
+
+            return new LinkTopology(numOfNodes, compactOffsets, neighbours, costs, reverseSlots);
+        }
+    }
+}
@@ -1,6 +1,6 @@
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * Class representing a network node.
@@ -12,10 +12,17 @@ public class NetworkNode {
      */
     private boolean splitHorizon;
 
+    /**
+     * Poison reverse flag. When set with split horizon the routes learned from the reader are advertised at infinity
+     * instead of being left out, so a neighbour which routes back through this node drops its route at once. The
+     * routes this node has lost since its previous advertisement are advertised at infinity as well.
+     */
+    private boolean poisonReverse;
+
     /**
      * Node Id
      */
-    protected final Integer nodeId;
+    protected final int nodeId;
 
     /**
      * Node routing table
@@ -23,49 +30,272 @@ public class NetworkNode {
     private final RouteTable routeTable;
 
     /**
-     * Node neighbours
+     * All the nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * Links of the network. The neighbours of this node are its slots in the topology.
+     */
+    private final LinkTopology topology;
+
+    /**
+     * The routes this node currently advertises. Shared by all the neighbours.
+     */
+    private RouteAdvertisement advertisement;
+
+    /**
+     * Number of exchanges after which a full advertisement is published. 1 means every advertisement is full,
+     * otherwise the advertisements in between only hold the changed routes.
+     */
+    private final int fullRefreshEvery;
+
+    /**
+     * Number of advertisements published since the last full advertisement
+     */
+    private int advertisementsSinceFullRefresh;
+
+    /**
+     * The link costs at the time of the last advertisement, indexed by neighbour slot (relative to the first slot of
+     * this node). A changed link cost forces a full advertisement.
+     */
+    private final int[] advertisedLinkCosts;
+
+    /**
+     * Explicit withdrawals flag. When set the routes are not aged by forget counters; a route is removed as soon as
+     * its next hop advertises that it has withdrawn it.
+     */
+    private boolean explicitWithdrawals;
+
+    /**
+     * Timed aging flag. When set the routes are aged by {@link #ageRoutes()} on a timer instead of on every exchange.
+     */
+    private boolean timedAging;
+
+    /**
+     * Set when a neighbour has asked for all the routes of this node. The next advertisement of this node is full.
+     */
+    private boolean fullAdvertisementRequested;
+
+    /**
+     * Set when this node has lost a route or a route has become more expensive. The neighbours may have better routes
+     * which they do not advertise again on their own when only the nodes on the worklist send.
+     */
+    private boolean routesLost;
+
+    /**
+     * Neighbour slots (relative to the first slot of this node) of the neighbours which are no longer neighbours
+     */
+    private final BitSet removedNeighbours;
+
+    /**
+     * The metrics this node reports to or null if no metrics are collected
+     */
+    private SimulationMetrics metrics;
+
+    /**
+     * The analyser this node logs its route changes to or null if the convergence is not analysed
+     */
+    private ConvergenceAnalyser analyser;
+
+    /**
+     * The hierarchical addresses of the nodes or null if the nodes are only addressed by their ids
+     */
+    private AddressPlan addressPlan;
+
+    /**
+     * The destination id of the prefix of this node's subnet or -1 if the nodes are only addressed by their ids
      */
-    private HashMap<NetworkNode, NetworkLink> neighbours;
+    private int ownPrefixId = -1;
+
+    /**
+     * True if any node of the network summarises its subnet, so only the next hop of a route can make it infinite
+     */
+    private boolean infiniteOnlyFromNextHop;
+
+    /**
+     * Neighbour slots (relative to the first slot of this node) of the neighbours in other subnets, or null if this
+     * node does not summarise its subnet
+     */
+    private BitSet summarizedSlots;
+
+    /**
+     * The routes this node advertises to the neighbours in other subnets: {@link #advertisement} with the routes to
+     * the nodes of this node's subnet replaced by a route to its prefix
+     */
+    private RouteAdvertisement summarizedAdvertisement;
+
+    /**
+     * The advertisement {@link #summarizedAdvertisement} was made from
+     */
+    private RouteAdvertisement summarizedFrom;
+
+    /**
+     * The next hops of the routing table compiled for longest prefix match lookups, or null if the next hops are
+     * looked up in the routing table
+     */
+    private ForwardingTable forwardingTable;
 
     /**
      * Constructor
      *
      * @param nodeId       integer node id
-     * @param listener     listener for routing table changes
+     * @param routeTable   the routing table of the node
      * @param splitHorizon boolean if split-horizon is engaged or not
-     * @param infinityCost cost of infinity
+     * @param nodes        all the nodes of the network indexed by node id
+     * @param topology     the links of the network
+     * @param fullRefreshEvery {@link #fullRefreshEvery}
      */
-    public NetworkNode(int nodeId, RouteTable.NetworkNodeRouteTableListener listener, boolean splitHorizon, Integer infinityCost) {
+    public NetworkNode(int nodeId, RouteTable routeTable, boolean splitHorizon, NetworkNode[] nodes, LinkTopology topology, int fullRefreshEvery) {
         this.nodeId = nodeId;
-        this.routeTable = new RouteTable(nodeId, listener, infinityCost);
-        this.neighbours = new HashMap<NetworkNode, NetworkLink>();
+        this.routeTable = routeTable;
         this.splitHorizon = splitHorizon;
+        this.nodes = nodes;
+        this.topology = topology;
+        this.removedNeighbours = new BitSet(topology.endSlot(nodeId) - topology.firstSlot(nodeId));
+        this.fullRefreshEvery = fullRefreshEvery;
+        this.advertisedLinkCosts = new int[topology.endSlot(nodeId) - topology.firstSlot(nodeId)];
     }
 
     /**
-     * Method for extracting routes from the routing table
-     *
-     * @param requester the requester of the routes
-     * @return tuples (destId, routeTableEntry)
+     * Method for publishing the routes of the routing table to the neighbours.
+     * A full advertisement is published every {@link #fullRefreshEvery} exchanges and whenever the cost of one of the
+     * links of this node has changed, otherwise only the changed routes are published.
+     * A new full snapshot is taken only if the routing table has changed since the last one.
      */
-    public HashMap<Integer, RouteTable.RouteTableEntry> getRoutesForAdvertising(NetworkNode requester) {
-        HashMap<Integer, RouteTable.RouteTableEntry> costs = routeTable.getCosts();
-        if (splitHorizon) {
-            // remove entries learned from the requester
-            Iterator<Integer> routesIterator = costs.keySet().iterator();
-            while (routesIterator.hasNext()) {
-                Integer destId = routesIterator.next();
-                RouteTable.RouteTableEntry entry = costs.get(destId);
-                Integer nextHop = entry.getNextHop();
-                if (nextHop != null && nextHop.equals(requester.getNodeId())) {
-                    routesIterator.remove();
-                }
+    private void publishAdvertisement() {
+        boolean linkCostsChanged = updateAdvertisedLinkCosts();
+        advertisementsSinceFullRefresh++;
+        if (advertisement == null || linkCostsChanged || fullAdvertisementRequested || advertisementsSinceFullRefresh >= fullRefreshEvery) {
+            if (advertisement == null || !advertisement.isFull() || advertisement.getVersion() != routeTable.getVersion()) {
+                advertisement = routeTable.getCosts();
             }
-            return costs;
+            advertisementsSinceFullRefresh = 0;
+            fullAdvertisementRequested = false;
         } else {
-            return costs;
+            advertisement = routeTable.getChangedCosts();
         }
+        if (summarizedSlots != null && summarizedFrom != advertisement) {
+            summarizedAdvertisement = summarize(advertisement);
+            summarizedFrom = advertisement;
+        }
+    }
+
+    /**
+     * Helper method for replacing the routes to the nodes of this node's subnet by one route to its prefix. Like the
+     * summaries of RIP the route to the prefix carries the lowest cost of the routes it replaces, the cost 0 of the
+     * route to this node itself, so it never changes while the routes inside the subnet converge.
+     *
+     * @param routes the routes of the advertisement
+     * @return the summarised advertisement
+     */
+    private RouteAdvertisement summarize(RouteAdvertisement routes) {
+        int subnet = addressPlan.getSubnet(nodeId);
 
+        // the prefix ids follow the node ids, so the summary is inserted before the prefixes of the later subnets
+        int[] destinations = new int[routes.size() + 1];
+        int[] costs = new int[routes.size() + 1];
+        int[] nextHops = new int[routes.size() + 1];
+        int size = 0;
+        boolean summaryAdded = false;
+        for (int i = 0; i < routes.size(); i++) {
+            int destinationId = routes.getDest(i);
+            if (!addressPlan.isPrefix(destinationId) && addressPlan.getSubnet(destinationId) == subnet) {
+                // covered by the summary
+                continue;
+            }
+            if (!summaryAdded && destinationId > ownPrefixId) {
+                destinations[size] = ownPrefixId;
+                costs[size] = 0;
+                nextHops[size] = RouteTable.NO_NEXT_HOP;
+                size++;
+                summaryAdded = true;
+            }
+            destinations[size] = destinationId;
+            costs[size] = routes.getCost(i);
+            nextHops[size] = routes.getNextHop(i);
+            size++;
+        }
+        if (!summaryAdded) {
+            destinations[size] = ownPrefixId;
+            costs[size] = 0;
+            nextHops[size] = RouteTable.NO_NEXT_HOP;
+            size++;
+        }
+
+        int[] withdrawn = new int[routes.withdrawnSize()];
+        int withdrawnSize = 0;
+        for (int i = 0; i < routes.withdrawnSize(); i++) {
+            int destinationId = routes.getWithdrawn(i);
+            if (addressPlan.isPrefix(destinationId) || addressPlan.getSubnet(destinationId) != subnet) {
+                withdrawn[withdrawnSize++] = destinationId;
+            }
+        }
+        return new RouteAdvertisement(routes.getVersion(), routes.isFull(), destinations, costs, nextHops, size, Arrays.copyOf(withdrawn, withdrawnSize));
+    }
+
+    /**
+     * Helper method for recording the current costs of the links of this node
+     *
+     * @return true if any link cost has changed since the last advertisement
+     */
+    private boolean updateAdvertisedLinkCosts() {
+        if (fullRefreshEvery == 1) {
+            // every advertisement is full anyway
+            return false;
+        }
+        boolean changed = false;
+        int firstSlot = topology.firstSlot(nodeId);
+        for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+            int linkCost = topology.getCost(slot);
+            if (advertisedLinkCosts[slot - firstSlot] != linkCost) {
+                advertisedLinkCosts[slot - firstSlot] = linkCost;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Getter for the published routes. Routes learned from the reader are still in the advertisement;
+     * the reader has to skip them if {@link #isSplitHorizon()}.
+     *
+     * @return the routes this node advertises
+     */
+    public RouteAdvertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    /**
+     * Getter for the published routes a neighbour reads. The neighbours in other subnets read the summarised routes
+     * if this node summarises its subnet.
+     *
+     * @param slot the neighbour slot of the reader in this node
+     * @return the routes this node advertises to the neighbour
+     */
+    public RouteAdvertisement getAdvertisementFor(int slot) {
+        if (summarizedSlots != null && summarizedSlots.get(slot - topology.firstSlot(nodeId))) {
+            return summarizedAdvertisement;
+        }
+        return getAdvertisement();
+    }
+
+    /**
+     * Asks this node to advertise all its routes in its next advertisement
+     */
+    public void requestFullAdvertisement() {
+        fullAdvertisementRequested = true;
+    }
+
+    /**
+     * Getter for the lost routes flag. Clears the flag.
+     *
+     * @return true if this node has lost or worsened a route since the last call
+     */
+    public boolean takeRoutesLost() {
+        boolean lost = routesLost;
+        routesLost = false;
+        return lost;
     }
 
     /**
@@ -73,7 +303,7 @@ public class NetworkNode {
      *
      * @return this node id
      */
-    public Integer getNodeId() {
+    public int getNodeId() {
         return nodeId;
     }
 
@@ -81,126 +311,372 @@ public class NetworkNode {
      * Method to be called by the simulator to tell the node to send routing table to neighbours
      */
     public void sendCostsToNeighbours() {
+        prepareExchange();
+
+        // "call-out" to all neighbours
+        int firstSlot = topology.firstSlot(nodeId);
+        for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+            if (!removedNeighbours.get(slot - firstSlot)) {
+                nodes[topology.getNeighbour(slot)].handleCostsMsg(this, getAdvertisementFor(slot), topology.getReverseSlot(slot));
+            }
+        }
+    }
+
+    /**
+     * Method to be called by the simulator before this node's routes are read by its neighbours.
+     * It only changes the state of this node.
+     */
+    public void prepareExchange() {
+        long start = metrics != null ? System.nanoTime() : 0;
+
         // check for broken links and update table/neighbours
         checkLinksAndRemoveDisconnectedNeighbours();
+        if (metrics != null) {
+            start = metrics.record(SimulationMetrics.Phase.LINK_CHECK, start);
+        }
 
         // remove old entries from table
-        routeTable.reduceAllForgetCounters();
+        if (!explicitWithdrawals && !timedAging) {
+            ageRoutes(start);
+        }
 
-        // "call-out" to all neighbours
-        for (NetworkNode neighbourNode : neighbours.keySet()) {
-            neighbourNode.handleCostsMsg(this);
+        // take the snapshot all neighbours will read
+        publishAdvertisement();
+    }
+
+    /**
+     * Method to be called by the aging timer of the node to remove old entries from the routing table
+     */
+    public void ageRoutes() {
+        ageRoutes(metrics != null ? System.nanoTime() : 0);
+    }
+
+    /**
+     * Helper method for reducing the forget counters of the routes
+     *
+     * @param start the {@link System#nanoTime()} at the start of the aging if metrics are collected
+     */
+    private void ageRoutes(long start) {
+        int removedRoutes = routeTable.reduceAllForgetCounters();
+        if (metrics != null) {
+            metrics.add(SimulationMetrics.Counter.FORGET_TIMEOUTS, removedRoutes);
+            metrics.record(SimulationMetrics.Phase.FORGET_COUNTERS, start);
         }
     }
 
     /**
-     * Checks all the links this node is part of in order to detect link failures
+     * Method to be called by the simulator once per exchange to count down the hold-downs of the lost routes
+     *
+     * @return {@link RouteTable#reduceHoldDownTimers()}
      */
-    private void checkLinksAndRemoveDisconnectedNeighbours() {
-        HashSet<NetworkNode> noLongerNeighbours = new HashSet<NetworkNode>();
-        for (NetworkNode neighbourNode : neighbours.keySet()) {
-            NetworkLink networkLink = neighbours.get(neighbourNode);
-            if (networkLink == null || networkLink.cost < 0) {
-                noLongerNeighbours.add(neighbourNode);
+    public int reduceHoldDownTimers() {
+        return routeTable.reduceHoldDownTimers();
+    }
+
+    /**
+     * Method to be called by the simulator to tell the node to read the routes its neighbours have published
+     * with {@link #prepareExchange()}. It only changes the state of this node so all nodes can receive in parallel.
+     *
+     * @param senders ids of the neighbours which have published new routes or null if all of them have
+     */
+    public void receiveCostsFromNeighbours(BitSet senders) {
+        int firstSlot = topology.firstSlot(nodeId);
+        for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+            if (!removedNeighbours.get(slot - firstSlot) && (senders == null || senders.get(topology.getNeighbour(slot)))) {
+                NetworkNode neighbourNode = nodes[topology.getNeighbour(slot)];
+                if (neighbourNode.isNeighbour(topology.getReverseSlot(slot))) {
+                    handleCostsMsg(neighbourNode, neighbourNode.getAdvertisementFor(topology.getReverseSlot(slot)), slot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method to be called when an advertisement of a neighbour is delivered as a message. The advertisement may be
+     * older than the one the neighbour currently publishes.
+     *
+     * @param sender        the neighbour which sent the advertisement
+     * @param advertisement the advertised routes
+     * @param slot          the neighbour slot of the sender in this node
+     */
+    public void receiveAdvertisement(NetworkNode sender, RouteAdvertisement advertisement, int slot) {
+        handleCostsMsg(sender, advertisement, slot);
+    }
+
+    /**
+     * Method to be called by the simulator to publish the routes again after they have changed between exchanges,
+     * without aging them. A triggered update.
+     */
+    public void publishTriggeredUpdate() {
+        checkLinksAndRemoveDisconnectedNeighbours();
+        publishAdvertisement();
+    }
+
+    /**
+     * Method to be called by the simulator to send the routes which have changed since the last advertisement to the
+     * neighbours straight away, within the same exchange. A triggered update.
+     */
+    public void sendTriggeredUpdate() {
+        checkLinksAndRemoveDisconnectedNeighbours();
+        advertisement = routeTable.getChangedCosts();
+        if (summarizedSlots != null) {
+            summarizedAdvertisement = summarize(advertisement);
+            summarizedFrom = advertisement;
+        }
+
+        // "call-out" to all neighbours
+        int firstSlot = topology.firstSlot(nodeId);
+        for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+            if (!removedNeighbours.get(slot - firstSlot)) {
+                nodes[topology.getNeighbour(slot)].handleCostsMsg(this, getAdvertisementFor(slot), topology.getReverseSlot(slot));
             }
         }
-        removeNodesFromNeighbours(noLongerNeighbours);
     }
 
     /**
-     * Helper method for removing nodes from neighbours list
+     * Helper method for checking if the routing table has changed since the last advertisement
      *
-     * @param nodes the nodes to be removed
+     * @return true if the published advertisement does not show the current routes
      */
-    private void removeNodesFromNeighbours(HashSet<NetworkNode> nodes) {
-        for (NetworkNode node : nodes) {
-            removeNodeFromNeighbours(node);
+    public boolean hasUnpublishedChanges() {
+        return advertisement == null || advertisement.getVersion() != routeTable.getVersion();
+    }
+
+    /**
+     * Helper method for checking if a neighbour slot still holds a neighbour
+     *
+     * @param slot the neighbour slot
+     * @return false if the neighbour in the slot has been removed
+     */
+    public boolean isNeighbour(int slot) {
+        return !removedNeighbours.get(slot - topology.firstSlot(nodeId));
+    }
+
+    /**
+     * Checks all the links this node is part of in order to detect link failures
+     */
+    private void checkLinksAndRemoveDisconnectedNeighbours() {
+        int firstSlot = topology.firstSlot(nodeId);
+        for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+            if (!removedNeighbours.get(slot - firstSlot) && topology.getCost(slot) < 0) {
+                removeNodeFromNeighbours(slot);
+            }
         }
     }
 
     /**
      * Helper method for removing node from neighbour list
      *
-     * @param node the node to be removed
+     * @param slot the neighbour slot of the node to be removed
      */
-    private void removeNodeFromNeighbours(NetworkNode node) {
+    private void removeNodeFromNeighbours(int slot) {
         // remove from neighbours
-        neighbours.remove(node);
+        removedNeighbours.set(slot - topology.firstSlot(nodeId));
 
         // remove route table entry for the destination since you now do not know how to get to there
-        routeTable.removeNeighbour(node.getNodeId());
+        routeTable.removeNeighbour(topology.getNeighbour(slot));
+        routesLost = true;
+        if (metrics != null) {
+            metrics.add(SimulationMetrics.Counter.NEIGHBOURS_REMOVED, 1);
+        }
     }
 
     /**
      * Method to be called by a neighbour node which is sending you it's routing table
      *
-     * @param sender the node that initiated the
+     * @param sender        the node that initiated the
+     * @param sendersRoutes the routes advertised by the sender
+     * @param slot          the neighbour slot of the sender in this node
      */
-    private synchronized void handleCostsMsg(NetworkNode sender) {
+    private void handleCostsMsg(NetworkNode sender, RouteAdvertisement sendersRoutes, int slot) {
+        if (removedNeighbours.get(slot - topology.firstSlot(nodeId))) {
+            // the sender is no longer a neighbour
+            return;
+        }
+
+        long start = metrics != null ? System.nanoTime() : 0;
+        int routeUpdates = 0;
+        int infinityDrops = 0;
+
         // get link cost
-        Integer linkCost = neighbours.get(sender).cost;
+        int linkCost = topology.getCost(slot);
 
-        if (linkCost.equals(RouteTable.FAILED_LINK_COST)) {// link is down
+        if (linkCost == RouteTable.FAILED_LINK_COST) {// link is down
             // remove from neighbours
-            removeNodeFromNeighbours(sender);
+            removeNodeFromNeighbours(slot);
         } else {// link is up and running
-            // get routes
-            HashMap<Integer, RouteTable.RouteTableEntry> sendersRoutes = sender.getRoutesForAdvertising(this);
+            // check routes
+            boolean skipOwnRoutes = sender.isSplitHorizon();
 
             // iterate over msg and check new routes
-            for (Integer destinationId : sendersRoutes.keySet()) {
-                // get node id
-                if (!destinationId.equals(this.nodeId)) {
-                    // extract route table entry from senders routes table for node with id = destinationId
-                    RouteTable.RouteTableEntry sendersRouteForDest = sendersRoutes.get(destinationId);
+            for (int i = 0; i < sendersRoutes.size(); i++) {
+                if (skipOwnRoutes && sendersRoutes.getNextHop(i) == this.nodeId) {
+                    // poison reverse: the sender tells us about routes it learned from us at infinity. Plain split
+                    // horizon hides them, but when all nodes read the routes of the previous round two neighbours
+                    // can take each other's routes in the same round, a loop nothing else would remove.
+                    int destinationId = sendersRoutes.getDest(i);
+                    if (destinationId != this.nodeId && routeTable.getNextHopTowardsDest(destinationId) == sender.getNodeId()) {
+                        // we route through the sender and the sender routes through us => drop route
+                        routesLost = true;
+                        infinityDrops++;
+                        if (analyser != null) {
+                            analyser.routeDropped(nodeId, destinationId);
+                        }
+                        routeTable.dropRoute(destinationId);
+                    }
+                    // split horizon: the sender does not tell us about routes it learned from us
+                    continue;
+                }
 
+                // get node id
+                int destinationId = sendersRoutes.getDest(i);
+                if (destinationId != this.nodeId && destinationId != ownPrefixId) {
                     // get cost advertised by the sender
-                    Integer advertisedCostToNode = sendersRouteForDest.getCost();
+                    int advertisedCostToNode = sendersRoutes.getCost(i);
 
                     // calculate actual cost
-                    Integer newCost = advertisedCostToNode + linkCost;
+                    int newCost = advertisedCostToNode + linkCost;
 
                     // get current cost to said node
-                    Integer currCostToNode = routeTable.getCost(destinationId);
+                    int currCostToNode = routeTable.getCost(destinationId);
 
                     if (newCost >= routeTable.getInfinityCost()) {
+                        if (infiniteOnlyFromNextHop && currCostToNode < routeTable.getInfinityCost() && routeTable.getNextHopTowardsDest(destinationId) != sender.getNodeId()) {
+                            // the routes to the nodes of a summarised subnet only run over its own links, so their
+                            // costs come close to infinity. Like RIP only the next hop can make the route infinite,
+                            // otherwise a neighbour at the edge of infinity drops the route again and again.
+                            continue;
+                        }
                         // infinity reached => drop route
+                        if (currCostToNode < routeTable.getInfinityCost()) {
+                            routesLost = true;
+                            infinityDrops++;
+                            if (analyser != null) {
+                                analyser.routeDropped(nodeId, destinationId);
+                            }
+                        }
                         routeTable.dropRoute(destinationId);
-                    } else if (newCost < currCostToNode) {
+                    } else if (newCost < currCostToNode && !routeTable.isHeldDown(destinationId, newCost)) {
                         // log new cost and sender
-                        routeTable.logDestCost(destinationId, newCost, sender);
+                        routeTable.logDestCost(destinationId, newCost, sender.getNodeId());
+                        routeUpdates++;
+                        if (analyser != null) {
+                            analyser.routeChanged(nodeId, destinationId, newCost);
+                        }
                     } else if (newCost > currCostToNode) {
                         // check for link cost change
-                        Integer routeNextHopForDest = routeTable.getNextHopTowardsDest(destinationId);
-                        if (routeNextHopForDest != null && routeNextHopForDest.equals(sender.getNodeId())) {
+                        if (routeTable.getNextHopTowardsDest(destinationId) == sender.getNodeId()) {
                             // save new cost even though it is bigger than the current cost because it was
                             // advertised by the same node which is advertising the current cost
-                            routeTable.logDestCost(destinationId, newCost, sender);
+                            routeTable.logDestCost(destinationId, newCost, sender.getNodeId());
+                            routesLost = true;
+                            routeUpdates++;
+                            if (analyser != null) {
+                                analyser.routeIncreased(nodeId, destinationId, newCost);
+                            }
                         }
                     }
                 }
             }
+
+            if (explicitWithdrawals || sender.isPoisonReverse()) {
+                // remove the routes the sender no longer has; a poisoning sender advertises them at infinity
+                for (int i = 0; i < sendersRoutes.withdrawnSize(); i++) {
+                    int destinationId = sendersRoutes.getWithdrawn(i);
+                    if (routeTable.getNextHopTowardsDest(destinationId) == sender.getNodeId()) {
+                        routeTable.withdrawRoute(destinationId);
+                        routesLost = true;
+                    }
+                }
+            }
+        }
+
+        if (metrics != null) {
+            metrics.add(SimulationMetrics.Counter.ADVERTISEMENTS_SENT, 1);
+            metrics.add(SimulationMetrics.Counter.ENTRIES_PROCESSED, linkCost == RouteTable.FAILED_LINK_COST ? 0 : sendersRoutes.size());
+            metrics.add(SimulationMetrics.Counter.ROUTE_UPDATES, routeUpdates);
+            metrics.add(SimulationMetrics.Counter.INFINITY_DROPS, infinityDrops);
+            metrics.record(SimulationMetrics.Phase.MESSAGE_HANDLING, start);
         }
     }
 
     /**
-     * Helper method for adding nodes as neighbours to this node
+     * Helper method for find out the next hop towards a destination. Without a route to the destination itself the
+     * route to the prefix of its subnet is used, the longest matching prefix.
      *
-     * @param connectedNode the neighbour node
-     * @param networkLink   the link they share
+     * @param toNode destination node
+     * @return {@link RouteTable#getNextHopTowardsDest(int)}
      */
-    public void addNeighbour(NetworkNode connectedNode, NetworkLink networkLink) {
-        neighbours.put(connectedNode, networkLink);
+    public int getNextHopToDest(NetworkNode toNode) {
+        int destinationId = toNode.getNodeId();
+        if (forwardingTable != null) {
+            return destinationId != nodeId ? forwardingTable.lookup(addressPlan.getNumericAddress(destinationId)) : RouteTable.NO_NEXT_HOP;
+        }
+        int nextHop = routeTable.getNextHopTowardsDest(destinationId);
+        if (nextHop == RouteTable.NO_NEXT_HOP && addressPlan != null && destinationId != nodeId) {
+            nextHop = routeTable.getNextHopTowardsDest(addressPlan.getPrefixId(addressPlan.getSubnet(destinationId)));
+        }
+        return nextHop;
     }
 
     /**
-     * Helper method for find out the next hop towards a destination
+     * Helper method for reading the cost of the route towards a destination without refreshing the route. The route
+     * to the prefix of the destination's subnet is not used, as its cost only reaches the nearest border node of the
+     * subnet.
      *
-     * @param toNode destination node
-     * @return {@link RouteTable#getNextHopTowardsDest(NetworkNode)}
+     * @param destinationId the id of the destination
+     * @return {@link RouteTable#peekCost(int)}
+     */
+    public int getCostToDest(int destinationId) {
+        return routeTable.peekCost(destinationId);
+    }
+
+    /**
+     * Compiles the next hops of the routing table into a {@link ForwardingTable} for longest prefix match lookups by
+     * {@link #getNextHopToDest(NetworkNode)}. It is kept up to date by {@link #refreshForwardingTable()}.
      */
-    public Integer getNextHopToDest(NetworkNode toNode) {
-        return routeTable.getNextHopTowardsDest(toNode);
+    public void enableForwardingTable() {
+        forwardingTable = new ForwardingTable();
+        routeTable.trackNextHopChanges();
+        refreshForwardingTable();
+    }
+
+    /**
+     * Method to be called by the simulator after the routing table has changed to put the changed next hops into the
+     * forwarding table. Only the routes whose next hop has changed are touched.
+     *
+     * @return the number of routes put or removed
+     */
+    public int refreshForwardingTable() {
+        int changes = 0;
+        for (int dest = routeTable.pollNextHopChange(0); dest >= 0; dest = routeTable.pollNextHopChange(dest + 1)) {
+            int address;
+            int length;
+            if (addressPlan.isPrefix(dest)) {
+                address = addressPlan.getNumericPrefix(addressPlan.getPrefixSubnet(dest));
+                length = addressPlan.getPrefixLength();
+            } else {
+                address = addressPlan.getNumericAddress(dest);
+                length = 32;
+            }
+            int nextHop = routeTable.getNextHopTowardsDest(dest);
+            if (nextHop != RouteTable.NO_NEXT_HOP) {
+                forwardingTable.put(address, length, nextHop);
+            } else {
+                forwardingTable.remove(address, length);
+            }
+            changes++;
+        }
+        return changes;
+    }
+
+    /**
+     * Getter for the number of routes of the routing table
+     *
+     * @return {@link RouteTable#size()}
+     */
+    public int getNumOfRoutes() {
+        return routeTable.size();
     }
 
     /**
@@ -212,19 +688,178 @@ public class NetworkNode {
         this.splitHorizon = splitHorizon;
     }
 
+    /**
+     * Split-horizon flag getter
+     *
+     * @return true if split-horizon is engaged
+     */
+    public boolean isSplitHorizon() {
+        return splitHorizon;
+    }
+
+    /**
+     * Poison reverse flag setter
+     *
+     * @param poisonReverse {@link #poisonReverse}
+     */
+    public void setPoisonReverse(boolean poisonReverse) {
+        this.poisonReverse = poisonReverse;
+    }
+
+    /**
+     * Poison reverse flag getter
+     *
+     * @return true if the routes learned from the reader are advertised at infinity when split horizon is engaged
+     */
+    public boolean isPoisonReverse() {
+        return poisonReverse;
+    }
+
+    /**
+     * Setter for the number of exchanges a destination is held down for after its route has been lost
+     *
+     * @param holdDownExchanges {@link RouteTable#setHoldDown(int)}
+     */
+    public void setHoldDown(int holdDownExchanges) {
+        routeTable.setHoldDown(holdDownExchanges);
+    }
+
+    /**
+     * Explicit withdrawals flag setter
+     *
+     * @param explicitWithdrawals {@link #explicitWithdrawals}
+     */
+    public void setExplicitWithdrawals(boolean explicitWithdrawals) {
+        this.explicitWithdrawals = explicitWithdrawals;
+    }
+
+    /**
+     * Timed aging flag setter
+     *
+     * @param timedAging {@link #timedAging}
+     */
+    public void setTimedAging(boolean timedAging) {
+        this.timedAging = timedAging;
+    }
+
+    /**
+     * Setter for the metrics this node reports to
+     *
+     * @param metrics the metrics or null to collect none
+     */
+    public void setMetrics(SimulationMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Setter for the analyser this node logs its route changes to
+     *
+     * @param analyser the analyser or null to analyse nothing
+     */
+    public void setConvergenceAnalyser(ConvergenceAnalyser analyser) {
+        this.analyser = analyser;
+    }
+
+    /**
+     * Setter for the hierarchical addresses of the nodes. The node summarises its subnet towards the neighbours in
+     * other subnets if the plan says so.
+     *
+     * @param addressPlan the addresses or null to address the nodes by their ids only
+     */
+    public void setAddressPlan(AddressPlan addressPlan) {
+        this.addressPlan = addressPlan;
+        this.ownPrefixId = addressPlan != null ? addressPlan.getPrefixId(addressPlan.getSubnet(nodeId)) : -1;
+        this.infiniteOnlyFromNextHop = addressPlan != null && addressPlan.getNumOfSummarizingNodes() > 0;
+        this.summarizedSlots = null;
+        this.summarizedAdvertisement = null;
+        this.summarizedFrom = null;
+        if (addressPlan != null && addressPlan.isSummarizing(nodeId)) {
+            int firstSlot = topology.firstSlot(nodeId);
+            summarizedSlots = new BitSet(topology.endSlot(nodeId) - firstSlot);
+            for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+                if (addressPlan.getSubnet(topology.getNeighbour(slot)) != addressPlan.getSubnet(nodeId)) {
+                    summarizedSlots.set(slot - firstSlot);
+                }
+            }
+        }
+    }
+
+    /**
+     * Setter for the sink this node's routing table changes are reported to
+     *
+     * @param sink the sink
+     */
+    public void setEventSink(SimulationEventSink sink) {
+        routeTable.setEventSink(sink);
+    }
+
     /**
      * Helper method for printing this node's routing table
+     *
+     * @param sink the sink the table is printed to
+     */
+    public void printTable(SimulationEventSink sink) {
+        sink.message(tableToString());
+    }
+
+    /**
+     * Helper method for getting this node's routing table as text
+     *
+     * @return the routing table
      */
-    public void printTable() {
-        System.out.print(routeTable.toString());
+    public String tableToString() {
+        return routeTable.toString();
+    }
+
+    /**
+     * Helper method for saving the state of this node and its routing table into a checkpoint
+     *
+     * @param out the checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void writeCheckpoint(CheckpointWriter out) throws IOException {
+        out.putInt((advertisement != null ? 1 : 0) | (fullAdvertisementRequested ? 2 : 0) | (routesLost ? 4 : 0));
+        out.putInt(advertisementsSinceFullRefresh);
+        for (int i = 0; i < advertisedLinkCosts.length; i++) {
+            out.putInt(removedNeighbours.get(i) ? 1 : 0);
+            out.putInt(advertisedLinkCosts[i]);
+        }
+        routeTable.writeCheckpoint(out);
+    }
+
+    /**
+     * Helper method for replacing the state of this node and its routing table with the state saved by
+     * {@link #writeCheckpoint(CheckpointWriter)}
+     *
+     * @param in the checkpoint
+     * @throws IOException if the checkpoint cannot be read
+     */
+    public void readCheckpoint(CheckpointReader in) throws IOException {
+        int flags = in.getInt();
+        // the advertisement is published again before any neighbour reads it, only its existence matters
+        advertisement = (flags & 1) != 0 ? new RouteAdvertisement(-1, false, new int[0], new int[0], new int[0], 0, new int[0]) : null;
+        fullAdvertisementRequested = (flags & 2) != 0;
+        routesLost = (flags & 4) != 0;
+        advertisementsSinceFullRefresh = in.getInt();
+        for (int i = 0; i < advertisedLinkCosts.length; i++) {
+            removedNeighbours.set(i, in.getInt() != 0);
+            advertisedLinkCosts[i] = in.getInt();
+        }
+        routeTable.readCheckpoint(in);
+        if (forwardingTable != null) {
+            refreshForwardingTable();
+        }
     }
 
     @Override
     public String toString() {
-        StringBuilder b = new StringBuilder("NetworkNode " + nodeId + ":\n");
+        StringBuilder b = new StringBuilder("NetworkNode " + nodeId + (addressPlan != null ? " (" + addressPlan.getAddress(nodeId) + ")" : "") + ":\n");
         b.append("neighbours: [");
-        for (NetworkNode networkNode : neighbours.keySet()) {
-            b.append("node" + networkNode.getNodeId() + " : cost " + neighbours.get(networkNode) + ";");
+        int firstSlot = topology.firstSlot(nodeId);
+        for (int slot = firstSlot; slot < topology.endSlot(nodeId); slot++) {
+            if (!removedNeighbours.get(slot - firstSlot)) {
+                b.append("node" + topology.getNeighbour(slot) + " : cost " + topology.getCost(slot) + ";");
+            }
         }
         b.append("]\n");
         b.append(routeTable.toString());
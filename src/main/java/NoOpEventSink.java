@@ -0,0 +1,48 @@
+/**
+ * Sink which ignores all simulation output.
+ * <p>
+ * Every method is empty so the calls on the hot path of the exchange are inlined away.
+ */
+public final class NoOpEventSink implements SimulationEventSink {
+
+    /**
+     * The only instance
+     */
+    public static final NoOpEventSink INSTANCE = new NoOpEventSink();
+
+    private NoOpEventSink() {
+    }
+
+    @Override
+    public Verbosity getVerbosity() {
+        return Verbosity.QUIET;
+    }
+
+    @Override
+    public void routeLogged(int nodeId, int destinationId, int cost, int nextHop) {
+    }
+
+    @Override
+    public void routeDropped(int nodeId, int destinationId, int cost, int nextHop, DropReason reason) {
+    }
+
+    @Override
+    public void neighbourRemoved(int nodeId, int neighbourId) {
+    }
+
+    @Override
+    public void roundFinished(int round, int changedNodes) {
+    }
+
+    @Override
+    public void message(String text) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Synchronous (Jacobi) network exchange running on a {@link ForkJoinPool}.
+ * <p>
+ * The exchange has two phases. First every node checks its links, ages its routes and publishes a snapshot of its
+ * routing table. Then every node reads the snapshots of its neighbours and updates its own table. In both phases a node
+ * only changes its own state, so the nodes run in parallel and the result does not depend on the number of threads.
+ * The output of every node is buffered and passed on in node id order after each phase.
+ * When only some nodes are active the phases run for the active senders and for the nodes around them.
+ */
+public class ParallelExchange {
+
+    /**
+     * Number of nodes below which a task is not split any further
+     */
+    private static final int NODES_PER_TASK = 64;
+
+    /**
+     * The nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * The pool the exchange runs on
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * The sink the output of the nodes is passed on to
+     */
+    private final SimulationEventSink sink;
+
+    /**
+     * Output buffer of every node or null if the sink does not show routing table changes
+     */
+    private final EventBuffer[] buffers;
+
+    /**
+     * Constructor
+     *
+     * @param nodes   {@link #nodes}
+     * @param threads number of threads of the pool
+     * @param sink    {@link #sink}
+     */
+    public ParallelExchange(NetworkNode[] nodes, int threads, SimulationEventSink sink) {
+        this.nodes = nodes;
+        this.pool = new ForkJoinPool(threads);
+        this.sink = sink;
+        if (sink.getVerbosity() == SimulationEventSink.Verbosity.ROUTES) {
+            this.buffers = new EventBuffer[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                buffers[i] = new EventBuffer(sink.getVerbosity(), 4);
+                nodes[i].setEventSink(buffers[i]);
+            }
+        } else {
+            // nothing to keep in order
+            this.buffers = null;
+            for (NetworkNode node : nodes) {
+                node.setEventSink(NoOpEventSink.INSTANCE);
+            }
+        }
+    }
+
+    /**
+     * Simulates one network exchange
+     *
+     * @param senders   ids of the nodes which publish their routes in ascending order
+     * @param receivers ids of the nodes which read the routes of their neighbours in ascending order
+     * @param senderSet the senders as a set or null if every node is a sender
+     */
+    public void simulateExchange(int[] senders, int[] receivers, BitSet senderSet) {
+        // every sender checks its links and publishes its routes
+        pool.invoke(new ExchangeTask(senders, null, true, 0, senders.length));
+        flushLogs(senders);
+
+        // every receiver reads the routes of its neighbours
+        pool.invoke(new ExchangeTask(receivers, senderSet, false, 0, receivers.length));
+        flushLogs(receivers);
+    }
+
+    /**
+     * Passes the buffered output of the nodes on in node id order
+     *
+     * @param nodeIds ids of the nodes which may have output in ascending order
+     */
+    private void flushLogs(int[] nodeIds) {
+        if (buffers == null) {
+            return;
+        }
+        for (int i : nodeIds) {
+            if (!buffers[i].isEmpty()) {
+                buffers[i].replayTo(sink);
+                buffers[i].clear();
+            }
+        }
+    }
+
+    /**
+     * Stops the threads of the pool
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Task running one phase of the exchange for a range of nodes
+     */
+    private class ExchangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+
+        /**
+         * ids of the nodes of the phase
+         */
+        private final int[] nodeIds;
+
+        /**
+         * null for the prepare phase, the senders for the receive phase
+         */
+        private final BitSet senderSet;
+
+        /**
+         * true for the prepare phase, false for the receive phase
+         */
+        private final boolean prepare;
+
+        /**
+         * First index of the range in nodeIds
+         */
+        private final int from;
+
+        /**
+         * Index after the last index of the range in nodeIds
+         */
+        private final int to;
+
+        ExchangeTask(int[] nodeIds, BitSet senderSet, boolean prepare, int from, int to) {
+            this.nodeIds = nodeIds;
+            this.senderSet = senderSet;
+            this.prepare = prepare;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= NODES_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    if (prepare) {
+                        nodes[nodeIds[i]].prepareExchange();
+                    } else {
+                        nodes[nodeIds[i]].receiveCostsFromNeighbours(senderSet);
+                    }
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExchangeTask(nodeIds, senderSet, prepare, from, middle),
+                        new ExchangeTask(nodeIds, senderSet, prepare, middle, to));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class representing the socket connection between the processes simulating two partitions of the network.
+ * <p>
+ * Everything is written as big endian ints through buffered streams, so the writer has to {@link #flush()} once a
+ * message is complete.
+ */
+public class PartitionConnection implements Closeable {
+
+    /**
+     * Size of the buffers of the streams
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The socket
+     */
+    private final Socket socket;
+
+    /**
+     * Stream reading from the socket
+     */
+    private final DataInputStream in;
+
+    /**
+     * Stream writing to the socket
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Constructor
+     *
+     * @param socket {@link #socket}
+     * @throws IOException if the streams of the socket cannot be opened
+     */
+    public PartitionConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+        this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+    }
+
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+
+    public void writeInt(int value) throws IOException {
+        out.writeInt(value);
+    }
+
+    /**
+     * Writes an advertisement
+     *
+     * @param advertisement the advertisement
+     * @throws IOException if the socket cannot be written
+     */
+    public void writeAdvertisement(RouteAdvertisement advertisement) throws IOException {
+        out.writeInt(advertisement.getVersion());
+        out.writeBoolean(advertisement.isFull());
+        out.writeInt(advertisement.size());
+        for (int i = 0; i < advertisement.size(); i++) {
+            out.writeInt(advertisement.getDest(i));
+            out.writeInt(advertisement.getCost(i));
+            out.writeInt(advertisement.getNextHop(i));
+        }
+        out.writeInt(advertisement.withdrawnSize());
+        for (int i = 0; i < advertisement.withdrawnSize(); i++) {
+            out.writeInt(advertisement.getWithdrawn(i));
+        }
+    }
+
+    /**
+     * Reads an advertisement written by {@link #writeAdvertisement(RouteAdvertisement)}
+     *
+     * @return the advertisement
+     * @throws IOException if the socket cannot be read
+     */
+    public RouteAdvertisement readAdvertisement() throws IOException {
+        int version = in.readInt();
+        boolean full = in.readBoolean();
+        int size = in.readInt();
+        int[] destinations = new int[size];
+        int[] costs = new int[size];
+        int[] nextHops = new int[size];
+        for (int i = 0; i < size; i++) {
+            destinations[i] = in.readInt();
+            costs[i] = in.readInt();
+            nextHops[i] = in.readInt();
+        }
+        int[] withdrawn = new int[in.readInt()];
+        for (int i = 0; i < withdrawn.length; i++) {
+            withdrawn[i] = in.readInt();
+        }
+        return new RouteAdvertisement(version, full, destinations, costs, nextHops, size, withdrawn);
+    }
+
+    /**
+     * Writes a text of any length
+     *
+     * @param text the text
+     * @throws IOException if the socket cannot be written
+     */
+    public void writeString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a text written by {@link #writeString(String)}
+     *
+     * @return the text
+     * @throws IOException if the socket cannot be read
+     */
+    public String readString() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends everything written so far
+     *
+     * @throws IOException if the socket cannot be written
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
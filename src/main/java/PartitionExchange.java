@@ -0,0 +1,545 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Synchronous (Jacobi) network exchange between several processes which each simulate one partition of the network.
+ * <p>
+ * Every process holds the links of the whole network but only the routing tables of its own nodes; the other nodes are
+ * {@link RemoteNetworkNode RemoteNetworkNodes}. In an exchange every process first publishes the routes of its nodes.
+ * Then the processes send each other the advertisements of their border nodes which have changed since they were last
+ * sent, and finally every node reads the routes of its neighbours, local or remote. The result is the same as the one
+ * of the parallel exchange of a single process.
+ * <p>
+ * The processes are connected to each other by localhost sockets. Partition 0 is the coordinator: it starts the other
+ * processes, decides with them whether the network is stable and runs the scheduled events which print routes,
+ * asking the owners of remote nodes for their routes. Link cost changes are run by every process on its own copy of
+ * the links.
+ */
+public class PartitionExchange {
+
+    /**
+     * Time the processes wait for each other to connect, in milliseconds
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * Message from the coordinator telling a worker that the scheduled events of an exchange are done
+     */
+    private static final int END_OF_EVENTS = 0;
+
+    /**
+     * Message from the coordinator asking for the next hop of a node towards a destination
+     */
+    private static final int QUERY_NEXT_HOP = 1;
+
+    /**
+     * Message from the coordinator asking for the routing table of a node
+     */
+    private static final int QUERY_TABLE = 2;
+
+    /**
+     * Message from the coordinator asking for the neighbours and routing table of a node
+     */
+    private static final int QUERY_NODE = 3;
+
+    /**
+     * The nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * The partition of every node indexed by node id
+     */
+    private final int[] partitionOf;
+
+    /**
+     * The partition simulated by this process
+     */
+    private final int partition;
+
+    /**
+     * The connections to the other partitions indexed by partition, null for this partition
+     */
+    private final PartitionConnection[] peers;
+
+    /**
+     * The worker processes started by the coordinator indexed by partition or null in a worker
+     */
+    private final Process[] workers;
+
+    /**
+     * Ids of the nodes of this partition in ascending order
+     */
+    private final int[] localNodeIds;
+
+    /**
+     * Ids of the nodes of this partition with a neighbour in another partition, indexed by the other partition
+     */
+    private final int[][] boundaryNodes;
+
+    /**
+     * The advertisements last sent of the nodes in {@link #boundaryNodes}
+     */
+    private final RouteAdvertisement[][] sentAdvertisements;
+
+    /**
+     * Threads sending the advertisements, one per other partition
+     */
+    private final ExecutorService senders;
+
+    /**
+     * Constructor
+     *
+     * @param nodes       {@link #nodes}
+     * @param topology    the links of the network
+     * @param partitionOf {@link #partitionOf}
+     * @param partition   {@link #partition}
+     * @param peers       {@link #peers}
+     * @param workers     {@link #workers}
+     */
+    private PartitionExchange(NetworkNode[] nodes, LinkTopology topology, int[] partitionOf, int partition, PartitionConnection[] peers, Process[] workers) {
+        this.nodes = nodes;
+        this.partitionOf = partitionOf;
+        this.partition = partition;
+        this.peers = peers;
+        this.workers = workers;
+
+        // find the nodes of this partition and the ones which have to be sent to every other partition
+        int partitions = peers.length;
+        BitSet local = new BitSet();
+        BitSet[] boundary = new BitSet[partitions];
+        for (int i = 0; i < partitions; i++) {
+            boundary[i] = new BitSet();
+        }
+        for (int nodeId = 0; nodeId < partitionOf.length; nodeId++) {
+            if (partitionOf[nodeId] == partition) {
+                local.set(nodeId);
+                for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                    boundary[partitionOf[topology.getNeighbour(slot)]].set(nodeId);
+                }
+            }
+        }
+        this.localNodeIds = toNodeIds(local);
+        this.boundaryNodes = new int[partitions][];
+        this.sentAdvertisements = new RouteAdvertisement[partitions][];
+        for (int i = 0; i < partitions; i++) {
+            if (i != partition) {
+                boundaryNodes[i] = toNodeIds(boundary[i]);
+                sentAdvertisements[i] = new RouteAdvertisement[boundaryNodes[i].length];
+            }
+        }
+        this.senders = Executors.newFixedThreadPool(Math.max(1, partitions - 1), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "partition-sender");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts a worker process for every partition but the first and connects all the processes with each other.
+     * Called by the coordinator.
+     *
+     * @param nodes            all the nodes of the network indexed by node id, may still be empty
+     * @param topology         the links of the network
+     * @param partitionOf      the partition of every node
+     * @param partitions       the number of partitions
+     * @param scenarioFileName the scenario file the workers read
+     * @return the exchange of the coordinator
+     * @throws IOException if a worker cannot be started or does not connect
+     */
+    public static PartitionExchange coordinate(NetworkNode[] nodes, LinkTopology topology, int[] partitionOf, int partitions, String scenarioFileName) throws IOException {
+        Process[] workers = new Process[partitions];
+        PartitionConnection[] peers = new PartitionConnection[partitions];
+        try (ServerSocket server = new ServerSocket(0, partitions, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            for (int i = 1; i < partitions; i++) {
+                workers[i] = startWorker(server.getLocalPort(), i, scenarioFileName);
+            }
+
+            // every worker tells its partition and the port it listens on
+            int[] ports = new int[partitions];
+            for (int i = 1; i < partitions; i++) {
+                PartitionConnection peer = new PartitionConnection(accept(server));
+                int peerPartition = peer.readInt();
+                ports[peerPartition] = peer.readInt();
+                peers[peerPartition] = peer;
+            }
+
+            // so the workers can connect to each other
+            for (int i = 1; i < partitions; i++) {
+                for (int port : ports) {
+                    peers[i].writeInt(port);
+                }
+                peers[i].flush();
+            }
+        }
+        return new PartitionExchange(nodes, topology, partitionOf, 0, peers, workers);
+    }
+
+    /**
+     * Connects a worker process to the coordinator and to the other workers. Called by a worker.
+     *
+     * @param nodes           all the nodes of the network indexed by node id, may still be empty
+     * @param topology        the links of the network
+     * @param partitionOf     the partition of every node
+     * @param partitions      the number of partitions
+     * @param partition       the partition of the worker
+     * @param coordinatorPort the port the coordinator listens on
+     * @return the exchange of the worker
+     * @throws IOException if the other processes cannot be connected to
+     */
+    public static PartitionExchange join(NetworkNode[] nodes, LinkTopology topology, int[] partitionOf, int partitions, int partition, int coordinatorPort) throws IOException {
+        PartitionConnection[] peers = new PartitionConnection[partitions];
+        try (ServerSocket server = new ServerSocket(0, partitions, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+            peers[0] = new PartitionConnection(new Socket(InetAddress.getLoopbackAddress(), coordinatorPort));
+            peers[0].writeInt(partition);
+            peers[0].writeInt(server.getLocalPort());
+            peers[0].flush();
+            int[] ports = new int[partitions];
+            for (int i = 0; i < partitions; i++) {
+                ports[i] = peers[0].readInt();
+            }
+
+            // connect to the workers with lower partitions, the ones with higher partitions connect to this one
+            for (int i = 1; i < partition; i++) {
+                peers[i] = new PartitionConnection(new Socket(InetAddress.getLoopbackAddress(), ports[i]));
+                peers[i].writeInt(partition);
+                peers[i].flush();
+            }
+            for (int i = partition + 1; i < partitions; i++) {
+                PartitionConnection peer = new PartitionConnection(accept(server));
+                peers[peer.readInt()] = peer;
+            }
+        }
+        return new PartitionExchange(nodes, topology, partitionOf, partition, peers, null);
+    }
+
+    /**
+     * @return true if this process is the coordinator
+     */
+    public boolean isCoordinator() {
+        return workers != null;
+    }
+
+    /**
+     * Simulates one network exchange of the nodes of this partition together with the other processes
+     */
+    public void simulateExchange() {
+        // every node checks its links and publishes its routes
+        for (int nodeId : localNodeIds) {
+            nodes[nodeId].prepareExchange();
+        }
+
+        // send while reading so that no process waits for another one to empty its socket
+        List<Future<Void>> sent = new ArrayList<Future<Void>>();
+        for (int i = 0; i < peers.length; i++) {
+            if (i != partition) {
+                final int peerPartition = i;
+                sent.add(senders.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        sendAdvertisements(peerPartition);
+                        return null;
+                    }
+                }));
+            }
+        }
+        for (int i = 0; i < peers.length; i++) {
+            if (i != partition) {
+                receiveAdvertisements(i);
+            }
+        }
+        for (Future<Void> future : sent) {
+            waitFor(future);
+        }
+
+        // every node reads the routes its neighbours had at the end of the previous exchange
+        for (int nodeId : localNodeIds) {
+            nodes[nodeId].receiveCostsFromNeighbours(null);
+        }
+    }
+
+    /**
+     * Decides with the other processes whether the network is stable. The coordinator collects the nodes with
+     * changed routing tables of all partitions.
+     *
+     * @param changedNodes the nodes of this partition with changed routing tables. The coordinator adds the ones of the
+     *                     other partitions.
+     * @return true if no routing table of any partition has changed
+     */
+    public boolean agreeOnStability(BitSet changedNodes) {
+        int i = 0;
+        try {
+            if (isCoordinator()) {
+                for (i = 1; i < peers.length; i++) {
+                    for (int count = peers[i].readInt(); count > 0; count--) {
+                        changedNodes.set(peers[i].readInt());
+                    }
+                }
+                boolean stable = changedNodes.isEmpty();
+                for (i = 1; i < peers.length; i++) {
+                    peers[i].writeInt(stable ? 1 : 0);
+                    peers[i].flush();
+                }
+                return stable;
+            } else {
+                peers[0].writeInt(changedNodes.cardinality());
+                for (int nodeId = changedNodes.nextSetBit(0); nodeId >= 0; nodeId = changedNodes.nextSetBit(nodeId + 1)) {
+                    peers[0].writeInt(nodeId);
+                }
+                peers[0].flush();
+                return peers[0].readInt() != 0;
+            }
+        } catch (IOException e) {
+            throw lostConnection(i, e);
+        }
+    }
+
+    /**
+     * Marks the end of the scheduled events of an exchange. The coordinator tells the workers that it has run its
+     * events, a worker answers the questions of the coordinator about its nodes until then.
+     */
+    public void finishEvents() {
+        if (isCoordinator()) {
+            for (int i = 1; i < peers.length; i++) {
+                try {
+                    peers[i].writeInt(END_OF_EVENTS);
+                    peers[i].flush();
+                } catch (IOException e) {
+                    throw lostConnection(i, e);
+                }
+            }
+            return;
+        }
+        PartitionConnection coordinator = peers[0];
+        try {
+            while (true) {
+                int query = coordinator.readInt();
+                if (query == END_OF_EVENTS) {
+                    return;
+                }
+                NetworkNode node = nodes[coordinator.readInt()];
+                if (query == QUERY_NEXT_HOP) {
+                    coordinator.writeInt(node.getNextHopToDest(nodes[coordinator.readInt()]));
+                } else if (query == QUERY_TABLE) {
+                    coordinator.writeString(node.tableToString());
+                } else {
+                    coordinator.writeString(node.toString());
+                }
+                coordinator.flush();
+            }
+        } catch (IOException e) {
+            throw lostConnection(0, e);
+        }
+    }
+
+    /**
+     * Asks the owner of a node for its next hop towards a destination. Only the coordinator asks.
+     *
+     * @param nodeId        the node
+     * @param destinationId the destination
+     * @return {@link NetworkNode#getNextHopToDest(NetworkNode)}
+     */
+    public int queryNextHop(int nodeId, int destinationId) {
+        PartitionConnection owner = peers[partitionOf[nodeId]];
+        try {
+            owner.writeInt(QUERY_NEXT_HOP);
+            owner.writeInt(nodeId);
+            owner.writeInt(destinationId);
+            owner.flush();
+            return owner.readInt();
+        } catch (IOException e) {
+            throw lostConnection(partitionOf[nodeId], e);
+        }
+    }
+
+    /**
+     * Asks the owner of a node for its routing table. Only the coordinator asks.
+     *
+     * @param nodeId the node
+     * @return {@link NetworkNode#tableToString()}
+     */
+    public String queryTable(int nodeId) {
+        return queryText(QUERY_TABLE, nodeId);
+    }
+
+    /**
+     * Asks the owner of a node for its neighbours and routing table. Only the coordinator asks.
+     *
+     * @param nodeId the node
+     * @return {@link NetworkNode#toString()}
+     */
+    public String queryNode(int nodeId) {
+        return queryText(QUERY_NODE, nodeId);
+    }
+
+    /**
+     * Closes the connections. The coordinator waits for the workers to end.
+     *
+     * @throws InterruptedException if the coordinator is interrupted while waiting
+     */
+    public void close() throws InterruptedException {
+        senders.shutdown();
+        for (int i = 0; i < peers.length; i++) {
+            if (peers[i] != null) {
+                try {
+                    peers[i].close();
+                } catch (IOException e) {
+                    // the partition is done anyway
+                }
+            }
+        }
+        if (workers != null) {
+            for (Process worker : workers) {
+                if (worker != null && !worker.waitFor(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    worker.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Helper method for sending the changed advertisements of the border nodes to another partition
+     *
+     * @param peerPartition the other partition
+     * @throws IOException if the socket cannot be written
+     */
+    private void sendAdvertisements(int peerPartition) throws IOException {
+        int[] boundary = boundaryNodes[peerPartition];
+        RouteAdvertisement[] sent = sentAdvertisements[peerPartition];
+        int changed = 0;
+        for (int i = 0; i < boundary.length; i++) {
+            if (nodes[boundary[i]].getAdvertisement() != sent[i]) {
+                changed++;
+            }
+        }
+        PartitionConnection peer = peers[peerPartition];
+        peer.writeInt(changed);
+        for (int i = 0; i < boundary.length; i++) {
+            RouteAdvertisement advertisement = nodes[boundary[i]].getAdvertisement();
+            if (advertisement != sent[i]) {
+                peer.writeInt(boundary[i]);
+                peer.writeAdvertisement(advertisement);
+                sent[i] = advertisement;
+            }
+        }
+        peer.flush();
+    }
+
+    /**
+     * Helper method for reading the changed advertisements of the border nodes of another partition
+     *
+     * @param peerPartition the other partition
+     */
+    private void receiveAdvertisements(int peerPartition) {
+        PartitionConnection peer = peers[peerPartition];
+        try {
+            for (int count = peer.readInt(); count > 0; count--) {
+                int nodeId = peer.readInt();
+                ((RemoteNetworkNode) nodes[nodeId]).setAdvertisement(peer.readAdvertisement());
+            }
+        } catch (IOException e) {
+            throw lostConnection(peerPartition, e);
+        }
+    }
+
+    /**
+     * Helper method for asking the owner of a node for a text
+     */
+    private String queryText(int query, int nodeId) {
+        PartitionConnection owner = peers[partitionOf[nodeId]];
+        try {
+            owner.writeInt(query);
+            owner.writeInt(nodeId);
+            owner.flush();
+            return owner.readString();
+        } catch (IOException e) {
+            throw lostConnection(partitionOf[nodeId], e);
+        }
+    }
+
+    /**
+     * Helper method for waiting for an advertisement sender
+     */
+    private void waitFor(Future<Void> future) {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw new UncheckedIOException("Could not send the advertisements to another partition.", (IOException) e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while sending the advertisements to another partition.", e);
+        }
+    }
+
+    /**
+     * Helper method for the error of a failed connection
+     */
+    private static UncheckedIOException lostConnection(int peerPartition, IOException e) {
+        return new UncheckedIOException("Lost the connection to partition " + peerPartition + ".", e);
+    }
+
+    /**
+     * Helper method for accepting a connection within {@link #CONNECT_TIMEOUT_MILLIS}
+     */
+    private static Socket accept(ServerSocket server) throws IOException {
+        try {
+            return server.accept();
+        } catch (SocketTimeoutException e) {
+            throw new IOException("A partition did not connect within " + CONNECT_TIMEOUT_MILLIS / 1000 + " s.", e);
+        }
+    }
+
+    /**
+     * Helper method for starting a worker process with the class path and the memory settings of this one
+     */
+    private static Process startWorker(int coordinatorPort, int partition, String scenarioFileName) throws IOException {
+        List<String> command = new ArrayList<String>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        for (String argument : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (argument.startsWith("-X")) {
+                // heap size and the like, but no agents or debug ports
+                command.add(argument);
+            }
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PartitionWorker.class.getName());
+        command.add(Integer.toString(coordinatorPort));
+        command.add(Integer.toString(partition));
+        command.add(scenarioFileName);
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    /**
+     * Helper method for listing the ids of a set of nodes
+     */
+    private static int[] toNodeIds(BitSet nodeIds) {
+        int[] ids = new int[nodeIds.cardinality()];
+        int i = 0;
+        for (int nodeId = nodeIds.nextSetBit(0); nodeId >= 0; nodeId = nodeIds.nextSetBit(nodeId + 1)) {
+            ids[i++] = nodeId;
+        }
+        return ids;
+    }
+}
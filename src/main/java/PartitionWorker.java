@@ -0,0 +1,11 @@
+/**
+ * Entry point of the processes started for the partitions of a partitioned simulation. Takes the port of the
+ * coordinator, the partition of the process and the scenario file.
+ */
+public class PartitionWorker {
+    public static void main(String[] args) throws Exception {
+        // the scenario is read again so every process builds the same links and partitions
+        Simulator simulator = new Simulator(ScenarioSource.open(args[2]), args[2], Integer.valueOf(args[1]), Integer.valueOf(args[0]));
+        simulator.startSimulation();
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Class representing a node which is simulated by the process of another partition of the network.
+ * <p>
+ * It has no routing table. It holds the last advertisement its owner has sent across the partitions, which is what the
+ * local neighbours of the node read, and it asks the owner for anything else.
+ */
+public class RemoteNetworkNode extends NetworkNode {
+
+    /**
+     * The connections to the other partitions
+     */
+    private final PartitionExchange partitionExchange;
+
+    /**
+     * The last advertisement received from the owner
+     */
+    private RouteAdvertisement advertisement;
+
+    /**
+     * Constructor
+     *
+     * @param nodeId            integer node id
+     * @param splitHorizon      boolean if split-horizon is engaged or not
+     * @param nodes             all the nodes of the network indexed by node id
+     * @param topology          the links of the network
+     * @param partitionExchange {@link #partitionExchange}
+     */
+    public RemoteNetworkNode(int nodeId, boolean splitHorizon, NetworkNode[] nodes, LinkTopology topology, PartitionExchange partitionExchange) {
+        super(nodeId, null, splitHorizon, nodes, topology, 1);
+        this.partitionExchange = partitionExchange;
+    }
+
+    /**
+     * Setter for the advertisement received from the owner
+     *
+     * @param advertisement the advertisement
+     */
+    public void setAdvertisement(RouteAdvertisement advertisement) {
+        this.advertisement = advertisement;
+    }
+
+    @Override
+    public RouteAdvertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    /**
+     * Both ends of a link see the same link costs and remove each other in the same exchange, and the local end checks
+     * its own side first.
+     *
+     * @param slot the neighbour slot
+     * @return true
+     */
+    @Override
+    public boolean isNeighbour(int slot) {
+        return true;
+    }
+
+    @Override
+    public int getNextHopToDest(NetworkNode toNode) {
+        return partitionExchange.queryNextHop(nodeId, toNode.getNodeId());
+    }
+
+    @Override
+    public String tableToString() {
+        return partitionExchange.queryTable(nodeId);
+    }
+
+    @Override
+    public String toString() {
+        return partitionExchange.queryNode(nodeId);
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * Class representing the routes a node advertises to its neighbours.
+ * <p>
+ * An advertisement is an immutable snapshot of a routing table. A node publishes one advertisement and all of its
+ * neighbours read the same object, so the routes are held in parallel primitive arrays in ascending destination order
+ * and are never copied per neighbour.
+ * <p>
+ * A full advertisement holds every route of the table. A delta advertisement holds only the routes to the destinations
+ * which have changed since the previous advertisement of the same table.
+ * Both kinds also list the destinations the table has lost a route to since the previous advertisement.
+ */
+public class RouteAdvertisement {
+
+    /**
+     * The version of the routing table the snapshot was taken from.
+     */
+    private final int version;
+
+    /**
+     * true if the snapshot holds every route of the table, false if it holds only the changed routes.
+     */
+    private final boolean full;
+
+    /**
+     * The destinations of the advertised routes.
+     */
+    private final int[] destinations;
+
+    /**
+     * The costs of the advertised routes.
+     */
+    private final int[] costs;
+
+    /**
+     * The next hops of the advertised routes.
+     */
+    private final int[] nextHops;
+
+    /**
+     * Number of advertised routes.
+     */
+    private final int size;
+
+    /**
+     * The destinations which had a route in the previous advertisement and have none now.
+     */
+    private final int[] withdrawn;
+
+    /**
+     * Constructor. The arrays are owned by the advertisement afterwards and must not be changed.
+     *
+     * @param version      {@link #version}
+     * @param full         {@link #full}
+     * @param destinations {@link #destinations}
+     * @param costs        {@link #costs}
+     * @param nextHops     {@link #nextHops}
+     * @param size         {@link #size}
+     * @param withdrawn    {@link #withdrawn}
+     */
+    public RouteAdvertisement(int version, boolean full, int[] destinations, int[] costs, int[] nextHops, int size, int[] withdrawn) {
+        this.version = version;
+        this.full = full;
+        this.destinations = destinations;
+        this.costs = costs;
+        this.nextHops = nextHops;
+        this.size = size;
+        this.withdrawn = withdrawn;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getDest(int index) {
+        return destinations[index];
+    }
+
+    public int getCost(int index) {
+        return costs[index];
+    }
+
+    public int getNextHop(int index) {
+        return nextHops[index];
+    }
+
+    public int withdrawnSize() {
+        return withdrawn.length;
+    }
+
+    public int getWithdrawn(int index) {
+        return withdrawn[index];
+    }
+}
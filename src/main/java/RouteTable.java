@@ -1,358 +1,209 @@
-import java.util.*;
+import java.io.IOException;
 
 /**
- * Class representing a routing table.
+ * Interface representing a routing table.
+ * <p>
+ * Destinations and next hops are plain node ids so that the hot path of the exchange can work without boxing.
  */
-public class RouteTable {
+public interface RouteTable {
 
     /**
      * Interface for the routing table listeners.
      */
-    public interface NetworkNodeRouteTableListener {
-        void onRouteTableUpdate(Integer nodeId);
+    interface NetworkNodeRouteTableListener {
+        void onRouteTableUpdate(int nodeId);
     }
 
     /**
      * Default infinity cost
      */
-    public static final Integer INFINITY_COST_DEFAULT = 16;
+    Integer INFINITY_COST_DEFAULT = 16;
 
     /**
      * Default number of exchanges that need to pass without any update for a node for the routing table to forget it.
      */
-    public static final Integer FORGET_AFTER_DEFAULT = 4;
+    Integer FORGET_AFTER_DEFAULT = 4;
 
     /**
-     * Failed link cost
+     * Default number of exchanges a lost route is held down for. 0 means routes are not held down.
      */
-    public static final Integer FAILED_LINK_COST = -1;
+    Integer HOLD_DOWN_DEFAULT = 0;
 
     /**
-     * Listener for route table changes
+     * Failed link cost
      */
-    private final NetworkNodeRouteTableListener listener;
+    Integer FAILED_LINK_COST = -1;
 
     /**
-     * route table map. It is indexed by the destination's node ID and holds a {@link RouteTableEntry RouteTableEntry} object
+     * Next hop value used when there is no next hop (the route to self or an unknown route)
      */
-    private final HashMap<Integer, RouteTableEntry> routeTable;
+    int NO_NEXT_HOP = -1;
 
     /**
-     * The id of the node this routing table belongs to.
+     * Helper method to get currently logged cost for a destination node.
+     * Asking for the cost of a known destination resets its forget counter.
+     *
+     * @param destinationId the id of the destination node
+     * @return the currently logged cost for the route to the destination node or {@link #getInfinityCost()} if it does not know
      */
-    private final int nodeId;
+    int getCost(int destinationId);
 
     /**
-     * Infinity cost
+     * Helper method to get currently logged cost for a destination node without resetting its forget counter.
+     * Only reads the routing table so it can be called from any thread while the table does not change.
+     *
+     * @param destinationId the id of the destination node
+     * @return the currently logged cost for the route to the destination node or {@link #getInfinityCost()} if it does not know
      */
-    private final int infinityCost;
+    int peekCost(int destinationId);
 
     /**
-     * Constructor
-     *
-     * @param nodeId       {@link #nodeId}
-     * @param listener     {@link #listener}
-     * @param infinityCost {@link #infinityCost}
+     * Starts recording the destinations whose next hop changes, for {@link #pollNextHopChange(int)}. All the known
+     * destinations count as changed.
      */
-    public RouteTable(int nodeId, NetworkNodeRouteTableListener listener, int infinityCost) {
-        this.nodeId = nodeId;
-        this.listener = listener;
-        this.infinityCost = infinityCost;
-        this.routeTable = new HashMap<Integer, RouteTableEntry>();
-
-        // creates the default entryo to self
-        RouteTableEntry routeToSelf = new RouteTableEntry(this.nodeId, 0, null);
-        routeTable.put(nodeId, routeToSelf);
-    }
+    void trackNextHopChanges();
 
     /**
-     * Helper method to get currently logged cost for a destination node
+     * Helper method for taking a recorded next hop change
      *
-     * @param destinationId the id of the destination node
-     * @return the currently logged cost for the route to the destination node or {@link #infinityCost} if it does not know
+     * @param fromDestinationId the lowest destination id to look at
+     * @return the lowest destination id from fromDestinationId on whose next hop has changed since it was last taken,
+     * or -1 if there is none
      */
-    public Integer getCost(Integer destinationId) {
-        RouteTableEntry routeTableEntry = routeTable.get(destinationId);
-        if (routeTableEntry != null) {
-            routeTableEntry.resetForgetCounter();
-            return routeTableEntry.getCost();
-        }
-        return infinityCost;
-    }
+    int pollNextHopChange(int fromDestinationId);
 
     /**
-     * Helper method for getting the all costs to all destinations registered in the routing table
+     * Getter for the number of routes
      *
-     * @return map indexed by the destination node id holding route table entries
+     * @return the number of known destinations, including the route to self
      */
-    public HashMap<Integer, RouteTableEntry> getCosts() {
-        HashMap<Integer, RouteTableEntry> costs = new HashMap<Integer, RouteTableEntry>(routeTable.size());
-
-        Iterator<Integer> routeIterator = routeTable.keySet().iterator();
-        while (routeIterator.hasNext()) {
-            RouteTableEntry routeTableEntryCopy = routeTable.get(routeIterator.next()).copy();
-            costs.put(routeTableEntryCopy.getDest(), routeTableEntryCopy);
-        }
-        return costs;
-    }
+    int size();
 
     /**
-     * Helper method for removing a neighbour.
-     * It removes the neighbour from the routing table as well as any routes that have been learned from the neighbour
+     * Helper method for getting the all costs to all destinations registered in the routing table.
+     * Changed destinations without a route are listed as withdrawn. Clears the set of changed destinations.
      *
-     * @param neighbourId
+     * @return snapshot of the routes in ascending destination order, versioned with {@link #getVersion()}
      */
-    public void removeNeighbour(Integer neighbourId) {
-        // for clarity
-        String msg = "Node " + this.nodeId + " remove neighbour " + neighbourId;
-
-        // remove the neighbouring node
-        removeEntryForDest(neighbourId, msg);
-
-        // find and remove all entries learned from the neighbour
-        HashSet<RouteTableEntry> toBeRemoved = new HashSet<RouteTableEntry>(); // holds all the entries which are to be removed
-        for (RouteTableEntry entry : getEntriesWithoutSelf()) {
-            if (entry.getNextHop().equals(neighbourId)) {
-                // entry learned from the neighbour => remove entry
-                toBeRemoved.add(entry);
-
-                // for clarity
-                System.out.println("Node " + this.nodeId + " will remove entry because it came from neightbor " + neighbourId + " : " + entry);
-            }
-        }
-        removeEntries(toBeRemoved);
-    }
+    RouteAdvertisement getCosts();
 
     /**
-     * Helper method for getting all entries without the default entry.
+     * Helper method for getting the costs to the destinations which have been logged, dropped or removed since the
+     * previous call to {@link #getCosts()} or {@link #getChangedCosts()}. Removed destinations have no route so they
+     * are listed as withdrawn. Clears the set of changed destinations.
      *
-     * @return set of all entries
+     * @return delta snapshot of the routes in ascending destination order, versioned with {@link #getVersion()}
      */
-    private HashSet<RouteTableEntry> getEntriesWithoutSelf() {
-        HashSet<RouteTableEntry> entries = new HashSet<RouteTableEntry>();
-        for (RouteTableEntry entry : routeTable.values()) {
-            if (!entry.getDest().equals(nodeId)) {
-                entries.add(entry);
-            }
-        }
-        return entries;
-    }
+    RouteAdvertisement getChangedCosts();
 
     /**
-     * Helper method for removing entries from the routing table
+     * Getter for the version of the routing table. The version changes every time a route is logged or removed.
      *
-     * @param toBeRemoved set of nodes to be removed
+     * @return the current version of the routing table
      */
-    private void removeEntries(HashSet<RouteTableEntry> toBeRemoved) {
-        if (toBeRemoved.size() > 0) {
-            for (RouteTableEntry entry : toBeRemoved) {
-                removeEntryForDest(entry.getDest(), null);
-            }
-        }
-    }
+    int getVersion();
 
     /**
-     * Helper method for removing an entry for a particular destination
+     * Helper method for removing a neighbour.
+     * It removes the neighbour from the routing table as well as any routes that have been learned from the neighbour
      *
-     * @param nodeId the destination node id
-     * @param reason the reason for the removal
+     * @param neighbourId the id of the neighbour
      */
-    private void removeEntryForDest(Integer nodeId, String reason) {
-        RouteTableEntry removedEntry = routeTable.remove(nodeId);
-        if (removedEntry != null) {
-            // notify the listener if an entry was really removed
-            listener.onRouteTableUpdate(this.nodeId);
-
-            // print reason
-            if (reason != null && !reason.equals("")) {
-                System.out.println(reason);
-            }
-        }
-    }
+    void removeNeighbour(int neighbourId);
 
     /**
      * Helper method for reducing the forget counters for the route table entries
+     *
+     * @return the number of routes removed because their forget counters ran out
      */
-    public void reduceAllForgetCounters() {
-        HashSet<RouteTableEntry> toBeRemoved = new HashSet<RouteTableEntry>();
-        for (RouteTableEntry entry : routeTable.values()) {
-            entry.reduceForgetCounter();
-            if (entry.shouldForget()) {
-                System.out.println("Node " + nodeId + " removing timeout entry: " + entry);
-                toBeRemoved.add(entry);
-            }
-        }
-        removeEntries(toBeRemoved);
-    }
+    int reduceAllForgetCounters();
 
     /**
      * Helper method for logging route towards a particular destination
      *
      * @param destinationId the id of the route destination
      * @param newCost       the cost of the route
-     * @param sender        the node which advertised the route
+     * @param senderId      the id of the node which advertised the route
      */
-    public void logDestCost(Integer destinationId, Integer newCost, NetworkNode sender) {
-        // create route table entry
-        RouteTableEntry entry = new RouteTableEntry(destinationId, newCost, sender.getNodeId());
-
-        // record the new entry ( override old value if exists )
-        routeTable.put(destinationId, entry);
-
-        // notify listener for change in routing table
-        listener.onRouteTableUpdate(nodeId);
-
-        // for clarity
-        System.out.println("Node " + nodeId + " logging " + entry);
-    }
+    void logDestCost(int destinationId, int newCost, int senderId);
 
     /**
      * Helper method for getting the next node on a route for a destination
      *
      * @param destinationId the destination node id
-     * @return the id of the next-on-the-route node or null if it does not know
+     * @return the id of the next-on-the-route node or {@link #NO_NEXT_HOP} if it does not know
      */
-    public Integer getNextHopTowardsDest(Integer destinationId) {
-        RouteTableEntry entry = routeTable.get(destinationId);
-        if (entry != null) {
-            return entry.nextNodeId;
-        }
-        return null;
-    }
+    int getNextHopTowardsDest(int destinationId);
 
     /**
-     * Helper method for getting the next node on a route for a destination
+     * Setter for the sink the routing table changes are reported to
      *
-     * @param toNode destination node
-     * @return the id of the next-on-the-route node or null if it does not know
+     * @param sink the sink, {@link NoOpEventSink#INSTANCE} by default
      */
-    public Integer getNextHopTowardsDest(NetworkNode toNode) {
-        return getNextHopTowardsDest(toNode.getNodeId());
-    }
+    void setEventSink(SimulationEventSink sink);
 
     /**
      * Getter for infinity cost
      *
      * @return the infinity cost of the routing table
      */
-    public int getInfinityCost() {
-        return infinityCost;
-    }
+    int getInfinityCost();
 
     /**
      * Helper method for dropping a route
      *
      * @param destinationId destination node id
      */
-    public void dropRoute(Integer destinationId) {
-        RouteTableEntry entry = routeTable.get(destinationId);
-        if (entry != null) {
-            // for clarity
-            String msg = "Node " + nodeId + " dropping route for dest (" + destinationId + ") because infinity (" + infinityCost + ") was reached.";
-
-            // remove
-            removeEntryForDest(entry.getDest(), msg);
-        }
-    }
-
-    @Override
-    public String toString() {
-        StringBuilder b = new StringBuilder("RouteTable for node : " + nodeId + "\n");
-        b.append("\tdest cost next\n");
-        Object[] routesDest = routeTable.keySet().toArray();
-        Arrays.sort(routesDest);
-        for (int i = 0; i < routesDest.length; i++) {
-            Integer routesDestNodeId = (Integer) routesDest[i];
-            RouteTableEntry routeTableEntry = routeTable.get(routesDestNodeId);
-            String format = String.format("\t%4d%5d%5d\n", routeTableEntry.getDest(), routeTableEntry.getCost(), routeTableEntry.getNextHop());
-            b.append(format);
-        }
-
-        return b.toString();
-    }
+    void dropRoute(int destinationId);
 
     /**
-     * Class which represents a route table entry
+     * Helper method for removing a route because its next hop has withdrawn it
+     *
+     * @param destinationId destination node id
      */
-    public class RouteTableEntry {
-
-        /**
-         * The destination of the entry.
-         */
-        private final Integer destNodeId;
-
-        /**
-         * The current cost of the route for the destination.
-         */
-        private Integer cost;
+    void withdrawRoute(int destinationId);
 
-        /**
-         * The next hop on the route for the destination.
-         */
-        private Integer nextNodeId;
-
-        /**
-         * Forget counter
-         */
-        private Integer forgetCounter = FORGET_AFTER_DEFAULT;
-
-        /**
-         * Constructor
-         *
-         * @param destNodeId the destination id {@link #destNodeId}
-         * @param cost       the cost of the route {@link #cost}
-         * @param nextNodeId the next hop node id {@link #nextNodeId}
-         */
-        public RouteTableEntry(Integer destNodeId, Integer cost, Integer nextNodeId) {
-            this.destNodeId = destNodeId;
-            this.cost = cost;
-            this.nextNodeId = nextNodeId;
-        }
-
-        /**
-         * Helper method for reducing the forget counter for the entry.
-         */
-        public void reduceForgetCounter() {
-            if (!destNodeId.equals(nodeId))
-                forgetCounter--;
-        }
-
-        /**
-         * Helper method for resetting the forget counter.
-         */
-        public void resetForgetCounter() {
-            forgetCounter = FORGET_AFTER_DEFAULT;
-        }
-
-        public Integer getDest() {
-            return destNodeId;
-        }
-
-        public Integer getCost() {
-            return cost;
-        }
-
-        public Integer getNextHop() {
-            return nextNodeId;
-        }
+    /**
+     * Setter for the number of exchanges a destination is held down for after its route has been lost. While a
+     * destination is held down only routes cheaper than the lost route are accepted, so the stale routes of the
+     * neighbours cannot bring the lost route back.
+     *
+     * @param holdDownExchanges the number of exchanges, {@link #HOLD_DOWN_DEFAULT} by default
+     */
+    void setHoldDown(int holdDownExchanges);
 
-        public boolean shouldForget() {
-            return forgetCounter <= 0;
-        }
+    /**
+     * Helper method for checking if a route has to be ignored because its destination is held down
+     *
+     * @param destinationId the destination node id
+     * @param newCost       the cost of the route
+     * @return true if the destination is held down and the route is not cheaper than the lost route
+     */
+    boolean isHeldDown(int destinationId, int newCost);
 
-        @Override
-        public String toString() {
-            return "RouteEntry{ dest: " + destNodeId + ", cost: " + cost + ", next:" + nextNodeId + "}";
-        }
+    /**
+     * Helper method for reducing the hold-down timers of the lost routes. Called once per exchange.
+     *
+     * @return the number of destinations which were held down during the exchange, including the ones whose
+     * hold-downs have just run out
+     */
+    int reduceHoldDownTimers();
 
-        /**
-         * Helper method for copying the entry
-         *
-         * @return a copy of the entry
-         */
-        public RouteTableEntry copy() {
-            return new RouteTableEntry(this.destNodeId, this.cost, this.nextNodeId);
-        }
-    }
+    /**
+     * Helper method for saving the routes, forget counters, version, changed destinations and held down destinations into
+     * a checkpoint
+     *
+     * @param out the checkpoint
+     * @throws IOException if the checkpoint cannot be written
+     */
+    void writeCheckpoint(CheckpointWriter out) throws IOException;
 
+    /**
+     * Helper method for replacing the state of the routing table with the state saved by
+     * {@link #writeCheckpoint(CheckpointWriter)}. The listener and the sink are not notified.
+     *
+     * @param in the checkpoint
+     * @throws IOException if the checkpoint cannot be read
+     */
+    void readCheckpoint(CheckpointReader in) throws IOException;
 }
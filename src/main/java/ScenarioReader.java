@@ -0,0 +1,305 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class which reads a text scenario file incrementally.
+ * <p>
+ * The file is read through a fixed size buffer, so its size does not matter. The first line is the header with the
+ * flags of the simulation. The sections which follow (links, link changes, show best routes, trace routing tables)
+ * hold one record of integers per line and end at a line containing "##". The integers are parsed straight from the
+ * bytes without creating strings or boxed values. Blank lines are skipped and errors report the line number.
+ */
+public class ScenarioReader implements ScenarioSource {
+
+    /**
+     * Size of the read buffer
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Value returned by {@link #peek()} at the end of the input
+     */
+    private static final int END_OF_INPUT = -1;
+
+    /**
+     * The input
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * Buffer holding the next bytes of the input
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * true once the channel has no more bytes
+     */
+    private boolean channelDrained;
+
+    /**
+     * Number of the line the next byte belongs to, starting with 1
+     */
+    private int lineNumber = 1;
+
+    /**
+     * Number of the line of the last record returned by {@link #readRecord(int[])}
+     */
+    private int recordLineNumber;
+
+    /**
+     * Constructor
+     *
+     * @param channel {@link #channel}
+     */
+    public ScenarioReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        this.buffer.flip();
+    }
+
+    /**
+     * Opens a scenario file
+     *
+     * @param fileName the file name
+     * @return reader of the file
+     * @throws IOException if the file cannot be opened
+     */
+    public static ScenarioReader open(String fileName) throws IOException {
+        return new ScenarioReader(FileChannel.open(Paths.get(fileName), StandardOpenOption.READ));
+    }
+
+    /**
+     * Creates a reader over scenario lines held in memory
+     *
+     * @param lines the lines of the scenario
+     * @return reader of the lines
+     */
+    public static ScenarioReader of(String[] lines) {
+        StringBuilder b = new StringBuilder();
+        for (String line : lines) {
+            b.append(line).append('\n');
+        }
+        return new ScenarioReader(Channels.newChannel(new ByteArrayInputStream(b.toString().getBytes(StandardCharsets.UTF_8))));
+    }
+
+    /**
+     * Reads the header line. Must be called before any record is read.
+     *
+     * @return the whitespace separated values of the header line
+     * @throws IOException if the input cannot be read
+     */
+    @Override
+    public List<String> readHeader() throws IOException {
+        List<String> values = new ArrayList<String>();
+        StringBuilder value = new StringBuilder();
+        int c;
+        while ((c = peek()) != END_OF_INPUT) {
+            buffer.get();
+            if (c == '\n') {
+                lineNumber++;
+                break;
+            }
+            if (isSpace(c)) {
+                if (value.length() > 0) {
+                    values.add(value.toString());
+                    value.setLength(0);
+                }
+            } else {
+                value.append((char) c);
+            }
+        }
+        if (value.length() > 0) {
+            values.add(value.toString());
+        }
+        return values;
+    }
+
+    /**
+     * The links of a text scenario are records of the links section
+     *
+     * @return null
+     */
+    @Override
+    public LinkTopology readTopology() {
+        return null;
+    }
+
+    /**
+     * Reads the next record of the current section. Values after the first values.length ones are skipped.
+     *
+     * @param values array the values of the record are stored in
+     * @return the number of values of the record or -1 at the end of the section or of the input
+     * @throws Exception if the record holds something else than integers or the input cannot be read
+     */
+    @Override
+    public int readRecord(int[] values) throws Exception {
+        int count = 0;
+        while (true) {
+            int c = peek();
+            if (c == END_OF_INPUT) {
+                return count > 0 ? count : -1;
+            }
+            if (c == '\n') {
+                buffer.get();
+                lineNumber++;
+                if (count > 0) {
+                    return count;
+                }
+            } else if (isSpace(c)) {
+                buffer.get();
+            } else if (c == '#') {
+                if (isSectionEnd()) {
+                    // the whole line ends the section
+                    skipLine();
+                    return -1;
+                }
+                throw new Exception("Line " + lineNumber + ": expected an integer but found '#'.");
+            } else {
+                if (count == 0) {
+                    recordLineNumber = lineNumber;
+                }
+                if (count < values.length) {
+                    values[count] = readInt();
+                } else {
+                    readInt();
+                }
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Getter for the line number of the last record
+     *
+     * @return the number of the line of the last record returned by {@link #readRecord(int[])}
+     */
+    @Override
+    public int getRecordLineNumber() {
+        return recordLineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Helper method for parsing an integer at the current position
+     */
+    private int readInt() throws Exception {
+        boolean negative = false;
+        if (peek() == '-' || peek() == '+') {
+            negative = buffer.get() == '-';
+        }
+        long value = 0;
+        int digits = 0;
+        int c;
+        while ((c = peek()) >= '0' && c <= '9') {
+            buffer.get();
+            value = value * 10 + (c - '0');
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw new Exception("Line " + lineNumber + ": integer out of range.");
+            }
+            digits++;
+        }
+        if (digits == 0 || (c != END_OF_INPUT && c != '\n' && !isSpace(c))) {
+            throw new Exception("Line " + lineNumber + ": expected an integer but found '" + readToken() + "'.");
+        }
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new Exception("Line " + lineNumber + ": integer out of range.");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Helper method for reading the rest of a malformed token for an error message
+     */
+    private String readToken() throws IOException {
+        StringBuilder token = new StringBuilder();
+        int c;
+        while ((c = peek()) != END_OF_INPUT && c != '\n' && !isSpace(c) && token.length() < 32) {
+            token.append((char) buffer.get());
+        }
+        return token.toString();
+    }
+
+    /**
+     * Helper method for checking if the line at the current position contains "##". Only looks ahead within the
+     * buffer, which always holds the rest of a line of sensible length.
+     */
+    private boolean isSectionEnd() throws IOException {
+        ensureAvailable(2);
+        return buffer.remaining() >= 2 && buffer.get(buffer.position() + 1) == '#';
+    }
+
+    /**
+     * Helper method for skipping the rest of the current line
+     */
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = peek()) != END_OF_INPUT) {
+            buffer.get();
+            if (c == '\n') {
+                lineNumber++;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Helper method for looking at the next byte
+     *
+     * @return the next byte or {@link #END_OF_INPUT}
+     */
+    private int peek() throws IOException {
+        if (!buffer.hasRemaining() && !fill()) {
+            return END_OF_INPUT;
+        }
+        return buffer.get(buffer.position()) & 0xFF;
+    }
+
+    /**
+     * Helper method for making sure the buffer holds a number of bytes unless the input ends sooner
+     */
+    private void ensureAvailable(int bytes) throws IOException {
+        while (buffer.remaining() < bytes && fill()) {
+            // keep reading
+        }
+    }
+
+    /**
+     * Helper method for reading more of the input into the buffer
+     *
+     * @return true if bytes have been read
+     */
+    private boolean fill() throws IOException {
+        if (channelDrained) {
+            return false;
+        }
+        buffer.compact();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0 && buffer.hasRemaining());
+        buffer.flip();
+        if (read == -1) {
+            channelDrained = true;
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
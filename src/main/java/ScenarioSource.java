@@ -0,0 +1,64 @@
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Interface for the sources a {@link Simulator Simulator} reads its scenario from.
+ * <p>
+ * A scenario is the header line with the flags of the simulation followed by the links, link changes, show best routes
+ * and trace routing tables sections, read in this order.
+ */
+public interface ScenarioSource extends Closeable {
+
+    /**
+     * Opens a scenario file, binary or text
+     *
+     * @param fileName the file name
+     * @return source reading the file
+     * @throws IOException if the file cannot be opened
+     */
+    static ScenarioSource open(String fileName) throws IOException {
+        int magic;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(fileName))) {
+            magic = in.available() >= 4 ? Integer.reverseBytes(in.readInt()) : 0;
+        }
+        if (magic == BinaryScenarioWriter.MAGIC) {
+            return BinaryScenarioReader.open(fileName);
+        }
+        return ScenarioReader.open(fileName);
+    }
+
+    /**
+     * Reads the header. Must be called first.
+     *
+     * @return the flags of the header
+     * @throws IOException if the source cannot be read
+     */
+    List<String> readHeader() throws IOException;
+
+    /**
+     * Reads the links if the source holds them ready built. Must be called right after {@link #readHeader()}.
+     *
+     * @return the links or null if they have to be read as records of the links section
+     * @throws IOException if the source cannot be read
+     */
+    LinkTopology readTopology() throws IOException;
+
+    /**
+     * Reads the next record of the current section. Values after the first values.length ones are skipped.
+     *
+     * @param values array the values of the record are stored in
+     * @return the number of values of the record or -1 at the end of the section or of the input
+     * @throws Exception if the record is malformed or the source cannot be read
+     */
+    int readRecord(int[] values) throws Exception;
+
+    /**
+     * Getter for the position of the last record for error messages
+     *
+     * @return the number of the line, or of the record in a binary source, of the last record
+     */
+    int getRecordLineNumber();
+}
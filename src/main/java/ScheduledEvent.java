@@ -8,13 +8,27 @@ public abstract class ScheduledEvent {
      */
     protected final Integer afterExchange;
 
+    /**
+     * Sink the event reports to
+     */
+    protected final SimulationEventSink sink;
+
     /**
      * Constructor
      *
      * @param afterExchange after which exchange should the event happen
+     * @param sink          sink the event reports to
      */
-    public ScheduledEvent(Integer afterExchange) {
+    public ScheduledEvent(Integer afterExchange, SimulationEventSink sink) {
         this.afterExchange = afterExchange;
+        this.sink = sink;
+    }
+
+    /**
+     * @return after which exchange the event happens
+     */
+    public Integer getAfterExchange() {
+        return afterExchange;
     }
 
     /**
@@ -0,0 +1,315 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Reference oracle which checks the routing tables against the true shortest paths of the current link costs.
+ * <p>
+ * The links are symmetric, so the shortest paths towards a destination are the shortest paths from it. They are found
+ * with Dijkstra's algorithm on a bucket queue: the costs are small integers and paths as long as the infinity cost are
+ * not routed anyway, so the search stops at infinity and every node is settled in O(1). The destinations are searched
+ * in parallel on a {@link ForkJoinPool}, every task reusing its own arrays, and the routes of every node towards a
+ * destination are compared as soon as the destination has been searched.
+ */
+public class ShortestPathOracle {
+
+    /**
+     * Number of destinations below which a task is not split any further
+     */
+    private static final int DESTINATIONS_PER_TASK = 8;
+
+    /**
+     * Number of mismatches kept as examples
+     */
+    private static final int EXAMPLES = 10;
+
+    /**
+     * All the nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * The links of the network with their current costs
+     */
+    private final LinkTopology topology;
+
+    /**
+     * The cost at which routes are dropped
+     */
+    private final int infinityCost;
+
+    /**
+     * Constructor
+     *
+     * @param nodes        {@link #nodes}
+     * @param topology     {@link #topology}
+     * @param infinityCost {@link #infinityCost}
+     */
+    public ShortestPathOracle(NetworkNode[] nodes, LinkTopology topology, int infinityCost) {
+        this.nodes = nodes;
+        this.topology = topology;
+        this.infinityCost = infinityCost;
+    }
+
+    /**
+     * Compares the routes of every node towards the given destinations with the shortest paths. The routing tables
+     * must not change while the check runs.
+     *
+     * @param destinations ids of the destinations in ascending order
+     * @param pool         the pool the check runs on
+     * @return the mismatches found
+     */
+    public Validation validate(int[] destinations, ForkJoinPool pool) {
+        return pool.invoke(new ValidationTask(destinations, 0, destinations.length));
+    }
+
+    /**
+     * Counts and examples of the routes which do not match the shortest paths.
+     */
+    public static class Validation {
+        private int destinations;
+        private long routes;
+        private long optimal;
+        private long costTooHigh;
+        private long costTooLow;
+        private long wrongNextHop;
+        private long missing;
+        private long stale;
+        private String[] examples = new String[0];
+
+        private Validation(int destinations) {
+            this.destinations = destinations;
+        }
+
+        /**
+         * Helper method for adding the counts and examples of another part of the check
+         */
+        private Validation add(Validation other) {
+            destinations += other.destinations;
+            routes += other.routes;
+            optimal += other.optimal;
+            costTooHigh += other.costTooHigh;
+            costTooLow += other.costTooLow;
+            wrongNextHop += other.wrongNextHop;
+            missing += other.missing;
+            stale += other.stale;
+            int kept = Math.min(EXAMPLES, examples.length + other.examples.length);
+            String[] merged = Arrays.copyOf(examples, kept);
+            System.arraycopy(other.examples, 0, merged, examples.length, kept - examples.length);
+            examples = merged;
+            return this;
+        }
+
+        /**
+         * Helper method for keeping a mismatch as an example
+         */
+        private void example(String text) {
+            if (examples.length < EXAMPLES) {
+                examples = Arrays.copyOf(examples, examples.length + 1);
+                examples[examples.length - 1] = text;
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder();
+            b.append(String.format(Locale.ROOT, "%d routes towards %d destinations: %d optimal (%.2f%%)", routes, destinations, optimal, routes == 0 ? 100.0 : 100.0 * optimal / routes));
+            b.append(", ").append(costTooHigh).append(" too expensive, ").append(costTooLow).append(" cheaper than possible, ");
+            b.append(wrongNextHop).append(" with a next hop off the shortest paths, ").append(missing).append(" missing, ");
+            b.append(stale).append(" stale\n");
+            for (String example : examples) {
+                b.append('\t').append(example).append('\n');
+            }
+            return b.toString();
+        }
+    }
+
+    /**
+     * Search state of one thread: finds the shortest paths towards one destination at a time, reusing its arrays.
+     */
+    public static class Search {
+        private final LinkTopology topology;
+        private final int infinityCost;
+
+        // distance of every node, a queue entry per improved distance, one bucket per cost below infinity
+        private final int[] distance;
+        private final int[] bucketHeads;
+        private int[] entryNodes;
+        private int[] entryNext;
+
+        /**
+         * Constructor
+         *
+         * @param topology     the links of the network with their current costs
+         * @param numOfNodes   the number of nodes of the network
+         * @param infinityCost the cost at which the search stops
+         */
+        public Search(LinkTopology topology, int numOfNodes, int infinityCost) {
+            this.topology = topology;
+            this.infinityCost = infinityCost;
+            distance = new int[numOfNodes];
+            bucketHeads = new int[infinityCost];
+            entryNodes = new int[numOfNodes];
+            entryNext = new int[numOfNodes];
+        }
+
+        /**
+         * Finds the costs of the shortest paths from every node to a destination
+         *
+         * @param destinationId the destination id
+         * @return the cost of every node indexed by node id, infinity if it is out of reach. The array is reused by
+         * the next search.
+         */
+        public int[] distancesTo(int destinationId) {
+            Arrays.fill(distance, infinityCost);
+            Arrays.fill(bucketHeads, -1);
+            int entries = 0;
+
+            distance[destinationId] = 0;
+            entryNodes[0] = destinationId;
+            entryNext[0] = -1;
+            bucketHeads[0] = entries++;
+            for (int bucket = 0; bucket < infinityCost; bucket++) {
+                for (int entry = bucketHeads[bucket]; entry != -1; entry = entryNext[entry]) {
+                    int nodeId = entryNodes[entry];
+                    if (distance[nodeId] != bucket) {
+                        // settled at a lower cost since the entry was queued
+                        continue;
+                    }
+                    for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                        int linkCost = topology.getCost(slot);
+                        int newDistance = bucket + linkCost;
+                        int neighbourId = topology.getNeighbour(slot);
+                        if (linkCost >= 0 && newDistance < distance[neighbourId]) {
+                            distance[neighbourId] = newDistance;
+                            if (entries == entryNodes.length) {
+                                entryNodes = Arrays.copyOf(entryNodes, 2 * entries);
+                                entryNext = Arrays.copyOf(entryNext, 2 * entries);
+                            }
+                            entryNodes[entries] = neighbourId;
+                            // a zero cost link queues into the bucket being read, ahead of its current entry
+                            if (newDistance == bucket) {
+                                entryNext[entries] = entryNext[entry];
+                                entryNext[entry] = entries;
+                            } else {
+                                entryNext[entries] = bucketHeads[newDistance];
+                                bucketHeads[newDistance] = entries;
+                            }
+                            entries++;
+                        }
+                    }
+                }
+            }
+            return distance;
+        }
+    }
+
+    /**
+     * Task searching a range of destinations and comparing the routes towards them
+     */
+    private class ValidationTask extends RecursiveTask<Validation> {
+        private static final long serialVersionUID = 1L;
+        private final int[] destinations;
+        private final int from;
+        private final int to;
+
+        ValidationTask(int[] destinations, int from, int to) {
+            this.destinations = destinations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Validation compute() {
+            if (to - from > DESTINATIONS_PER_TASK) {
+                int mid = (from + to) >>> 1;
+                ValidationTask left = new ValidationTask(destinations, from, mid);
+                left.fork();
+                Validation right = new ValidationTask(destinations, mid, to).compute();
+                return left.join().add(right);
+            }
+
+            Search search = new Search(topology, nodes.length, infinityCost);
+            Validation validation = new Validation(to - from);
+            for (int i = from; i < to; i++) {
+                int destinationId = destinations[i];
+                int[] distance = search.distancesTo(destinationId);
+                compareRoutes(destinationId, distance, validation);
+            }
+            return validation;
+        }
+
+        /**
+         * Helper method for comparing the routes of every node towards a destination with its shortest paths
+         */
+        private void compareRoutes(int destinationId, int[] distance, Validation validation) {
+            NetworkNode destination = nodes[destinationId];
+            for (int nodeId = 0; nodeId < nodes.length; nodeId++) {
+                if (nodeId == destinationId) {
+                    continue;
+                }
+                int cost = forwardingCost(nodeId, destination);
+                int shortest = distance[nodeId];
+                if (cost >= infinityCost && shortest >= infinityCost) {
+                    // correctly unreachable
+                    continue;
+                }
+                validation.routes++;
+                int nextHop = nodes[nodeId].getNextHopToDest(destination);
+                if (cost >= infinityCost) {
+                    validation.missing++;
+                    validation.example("node " + nodeId + " has no route to " + destinationId + ", shortest cost " + shortest);
+                } else if (shortest >= infinityCost) {
+                    validation.stale++;
+                    validation.example("node " + nodeId + " routes to unreachable " + destinationId + " at cost " + cost + " via " + nextHop);
+                } else if (cost > shortest) {
+                    validation.costTooHigh++;
+                    validation.example("node " + nodeId + " routes to " + destinationId + " at cost " + cost + " via " + nextHop + ", shortest cost " + shortest);
+                } else if (cost < shortest) {
+                    validation.costTooLow++;
+                    validation.example("node " + nodeId + " routes to " + destinationId + " at cost " + cost + " via " + nextHop + ", shortest cost " + shortest);
+                } else if (!isOnShortestPath(nodeId, nextHop, shortest, distance)) {
+                    validation.wrongNextHop++;
+                    validation.example("node " + nodeId + " routes to " + destinationId + " at the shortest cost " + cost + " but via " + nextHop + ", off the shortest paths");
+                } else {
+                    validation.optimal++;
+                }
+            }
+        }
+
+        /**
+         * Helper method for finding the cost of the path packets towards a destination take. A node without a route to
+         * the destination itself forwards by the route to the prefix of its subnet, so the path is followed to the
+         * first node with a route to the destination.
+         *
+         * @return the cost of the path or at least the infinity cost if it ends without a next hop or in a loop
+         */
+        private int forwardingCost(int nodeId, NetworkNode destination) {
+            int destinationId = destination.getNodeId();
+            int cost = 0;
+            for (int hops = 0; hops < nodes.length && nodeId != destinationId; hops++) {
+                int routeCost = nodes[nodeId].getCostToDest(destinationId);
+                if (routeCost < infinityCost) {
+                    return cost + routeCost;
+                }
+                int nextHop = nodes[nodeId].getNextHopToDest(destination);
+                int slot = nextHop >= 0 ? topology.findSlot(nodeId, nextHop) : -1;
+                if (slot == -1 || topology.getCost(slot) < 0) {
+                    return infinityCost;
+                }
+                cost += topology.getCost(slot);
+                nodeId = nextHop;
+            }
+            return nodeId == destinationId ? cost : infinityCost;
+        }
+
+        /**
+         * Helper method for checking that a next hop starts a shortest path
+         */
+        private boolean isOnShortestPath(int nodeId, int nextHop, int shortest, int[] distance) {
+            int slot = nextHop >= 0 ? topology.findSlot(nodeId, nextHop) : -1;
+            return slot != -1 && topology.getCost(slot) >= 0 && topology.getCost(slot) + distance[nextHop] == shortest;
+        }
+    }
+}
@@ -1,5 +1,3 @@
-import java.util.ArrayList;
-
 /**
  * Event which finds and prints the current best route from source to destination node.
  */
@@ -9,47 +7,41 @@ public class ShowBestRouteEvent extends ScheduledEvent {
      * Interface
      */
     public interface ShowBestRouteCapable {
-        ArrayList<NetworkNode> findBestRoute(NetworkNode fromNode, NetworkNode toNode, ArrayList<NetworkNode> currPath);
+        BestRoute findBestRoute(NetworkNode fromNode, NetworkNode toNode);
     }
 
     private final NetworkNode fromNode;
     private final NetworkNode toNode;
     private final ShowBestRouteCapable simulator;
 
-    public ShowBestRouteEvent(Integer afterExchange, NetworkNode fromNode, NetworkNode toNode, ShowBestRouteCapable showBestRouteFinder) {
-        super(afterExchange);
+    public ShowBestRouteEvent(Integer afterExchange, NetworkNode fromNode, NetworkNode toNode, ShowBestRouteCapable showBestRouteFinder, SimulationEventSink sink) {
+        super(afterExchange, sink);
         this.fromNode = fromNode;
         this.toNode = toNode;
         this.simulator = showBestRouteFinder;
     }
 
+    public NetworkNode getFromNode() {
+        return fromNode;
+    }
+
+    public NetworkNode getToNode() {
+        return toNode;
+    }
+
     @Override
     public void executeEvent(Integer currentExchange) {
-        // create empty path
-        ArrayList<NetworkNode> currPath = new ArrayList<NetworkNode>();
-
         // for clarity
-        System.out.println(this.toString());
+        sink.message(this.toString() + "\n");
 
         // find the best route
-        currPath = simulator.findBestRoute(fromNode, toNode, currPath);
+        BestRoute route = simulator.findBestRoute(fromNode, toNode);
+        if (route.getOutcome() == BestRoute.Outcome.LOOP) {
+            sink.message("There is a cycle in the routes meaning the end node (" + toNode.getNodeId() + ") has become unreachable!\n");
+        }
 
         // print the best route
-        StringBuilder b = new StringBuilder("\t" + fromNode.getNodeId() + " - > ");
-        for (int i = 0; i < currPath.size(); i++) {
-            NetworkNode networkNode = currPath.get(i);
-            if (networkNode != null) {
-                b.append(networkNode.getNodeId());
-                if (i != currPath.size() - 1) {
-                    b.append(" -> ");
-                }
-
-            } else {
-                b.append(" next hop unknown yet ");
-                break;
-            }
-        }
-        System.out.println(b.toString());
+        sink.message("\t" + route + "\n");
     }
 
     @Override
@@ -0,0 +1,110 @@
+/**
+ * Interface for the receivers of the simulation output.
+ * <p>
+ * The routing tables report their changes as typed events with primitive arguments so no text is built on the hot
+ * path of the exchange. Formatting is left to the sink, which may skip it, defer it or run it on another thread.
+ * A sink is used by one thread at a time.
+ */
+public interface SimulationEventSink {
+
+    /**
+     * How much of the simulation output is shown.
+     */
+    enum Verbosity {
+        /**
+         * Nothing is shown
+         */
+        QUIET,
+        /**
+         * Rounds, scheduled events and routing table traces are shown
+         */
+        ROUNDS,
+        /**
+         * Everything is shown, including every change of every routing table
+         */
+        ROUTES
+    }
+
+    /**
+     * Why a route has been removed from a routing table.
+     */
+    enum DropReason {
+        /**
+         * The route was learned from a neighbour which has been removed
+         */
+        NEIGHBOUR_REMOVED,
+        /**
+         * The route has not been advertised again before its forget counter ran out
+         */
+        TIMEOUT,
+        /**
+         * The cost of the route has reached infinity
+         */
+        INFINITY,
+        /**
+         * The next hop of the route has withdrawn it
+         */
+        WITHDRAWN
+    }
+
+    /**
+     * Getter for the verbosity
+     *
+     * @return the most detailed output this sink shows
+     */
+    Verbosity getVerbosity();
+
+    /**
+     * A route has been logged in a routing table
+     *
+     * @param nodeId        the id of the node the routing table belongs to
+     * @param destinationId the id of the route destination
+     * @param cost          the cost of the route
+     * @param nextHop       the next hop of the route
+     */
+    void routeLogged(int nodeId, int destinationId, int cost, int nextHop);
+
+    /**
+     * A route has been removed from a routing table
+     *
+     * @param nodeId        the id of the node the routing table belongs to
+     * @param destinationId the id of the route destination
+     * @param cost          the cost of the route or, for {@link DropReason#INFINITY}, the infinity cost which was reached
+     * @param nextHop       the next hop of the route
+     * @param reason        why the route has been removed
+     */
+    void routeDropped(int nodeId, int destinationId, int cost, int nextHop, DropReason reason);
+
+    /**
+     * A neighbour has been removed from a routing table
+     *
+     * @param nodeId      the id of the node the routing table belongs to
+     * @param neighbourId the id of the removed neighbour
+     */
+    void neighbourRemoved(int nodeId, int neighbourId);
+
+    /**
+     * A round of the simulation has finished
+     *
+     * @param round        the index of the round
+     * @param changedNodes the number of nodes whose routing tables have changed in the round
+     */
+    void roundFinished(int round, int changedNodes);
+
+    /**
+     * Any other output of the simulation
+     *
+     * @param text the text, printed as given
+     */
+    void message(String text);
+
+    /**
+     * Waits until everything received so far has been written out
+     */
+    void flush();
+
+    /**
+     * Writes out everything received so far and releases the resources of the sink
+     */
+    void close();
+}
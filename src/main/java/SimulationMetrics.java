@@ -0,0 +1,411 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the per-round metrics of a simulation.
+ * <p>
+ * The nodes add to the counters and record the durations of the phases of the exchange from any thread, without
+ * locking. When a round has finished the simulator closes it with {@link #roundFinished(int, int, long)}, which
+ * writes one line per round to the metrics file, as CSV or as JSON lines, and updates the totals shown over JMX.
+ */
+public class SimulationMetrics implements SimulationMetricsMBean {
+
+    /**
+     * Name the metrics are registered with at the platform MBean server
+     */
+    public static final String OBJECT_NAME = "RIPNetworkSimulator:type=SimulationMetrics";
+
+    /**
+     * The counted things.
+     */
+    public enum Counter {
+        /**
+         * Advertisements sent to a neighbour and handled by it
+         */
+        ADVERTISEMENTS_SENT("advertisementsSent"),
+        /**
+         * Routes read from the handled advertisements
+         */
+        ENTRIES_PROCESSED("entriesProcessed"),
+        /**
+         * Routes logged because they were better or their next hop advertised a new cost
+         */
+        ROUTE_UPDATES("routeUpdates"),
+        /**
+         * Routes dropped because their cost has reached infinity
+         */
+        INFINITY_DROPS("infinityDrops"),
+        /**
+         * Routes removed because their forget counters ran out
+         */
+        FORGET_TIMEOUTS("forgetTimeouts"),
+        /**
+         * Neighbours removed because their link has failed
+         */
+        NEIGHBOURS_REMOVED("neighboursRemoved");
+
+        /**
+         * Name of the counter in the metrics file
+         */
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * The timed phases of an exchange.
+     */
+    public enum Phase {
+        /**
+         * A node checks its links for failures
+         */
+        LINK_CHECK("linkCheck"),
+        /**
+         * A node reduces the forget counters of its routes
+         */
+        FORGET_COUNTERS("forgetCounters"),
+        /**
+         * A node handles the advertisement of a neighbour
+         */
+        MESSAGE_HANDLING("messageHandling"),
+        /**
+         * A scheduled event runs
+         */
+        EVENTS("events");
+
+        /**
+         * Name of the phase in the metrics file
+         */
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * Formats of the metrics file.
+     */
+    public enum Format {
+        /**
+         * A header line and one line of comma separated values per round
+         */
+        CSV,
+        /**
+         * One JSON object per line and round
+         */
+        JSON
+    }
+
+    /**
+     * Counts since the last round
+     */
+    private final LongAdder[] roundCounters = new LongAdder[Counter.values().length];
+
+    /**
+     * Counts of the last round
+     */
+    private final long[] lastRoundCounters = new long[Counter.values().length];
+
+    /**
+     * Counts of all the rounds
+     */
+    private final long[] totalCounters = new long[Counter.values().length];
+
+    /**
+     * Durations of every phase
+     */
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Phase.values().length];
+
+    /**
+     * Stream the metrics file is written to or null if no file is written
+     */
+    private final PrintStream out;
+
+    /**
+     * Format of the metrics file
+     */
+    private final Format format;
+
+    /**
+     * The name the metrics are registered with or null if they are not registered
+     */
+    private ObjectName registeredName;
+
+    /**
+     * Index of the last finished round or -1
+     */
+    private int round = -1;
+
+    /**
+     * Number of nodes whose routing tables have changed in the last round
+     */
+    private int changedNodes;
+
+    /**
+     * Duration of the last round, in nanoseconds
+     */
+    private long lastRoundWallNanos;
+
+    /**
+     * Duration of all the rounds, in nanoseconds
+     */
+    private long totalWallNanos;
+
+    /**
+     * Constructor
+     *
+     * @param out    {@link #out}
+     * @param format {@link #format}
+     */
+    public SimulationMetrics(PrintStream out, Format format) {
+        this.out = out;
+        this.format = format;
+        for (int i = 0; i < roundCounters.length; i++) {
+            roundCounters[i] = new LongAdder();
+        }
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        if (out != null && format == Format.CSV) {
+            StringBuilder b = new StringBuilder("round,changedNodes,wallMillis");
+            for (Counter counter : Counter.values()) {
+                b.append(',').append(counter.label);
+            }
+            for (Phase phase : Phase.values()) {
+                b.append(',').append(phase.label).append("Count");
+                b.append(',').append(phase.label).append("Millis");
+                b.append(',').append(phase.label).append("P50Micros");
+                b.append(',').append(phase.label).append("P99Micros");
+            }
+            out.println(b);
+            out.flush();
+        }
+    }
+
+    /**
+     * Adds to a counter
+     *
+     * @param counter the counter
+     * @param count   the number to add
+     */
+    public void add(Counter counter, long count) {
+        if (count != 0) {
+            roundCounters[counter.ordinal()].add(count);
+        }
+    }
+
+    /**
+     * Records the duration of a phase which started at the given time and ends now
+     *
+     * @param phase      the phase
+     * @param startNanos the {@link System#nanoTime()} at the start of the phase
+     * @return the {@link System#nanoTime()} at the end of the phase, the start of the next one
+     */
+    public long record(Phase phase, long startNanos) {
+        long now = System.nanoTime();
+        histograms[phase.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    /**
+     * Ends a round and writes its metrics. Must not be called while the nodes are exchanging their routes.
+     *
+     * @param round        the index of the round
+     * @param changedNodes the number of nodes whose routing tables have changed in the round
+     * @param wallNanos    the duration of the round, in nanoseconds
+     */
+    public synchronized void roundFinished(int round, int changedNodes, long wallNanos) {
+        this.round = round;
+        this.changedNodes = changedNodes;
+        this.lastRoundWallNanos = wallNanos;
+        this.totalWallNanos += wallNanos;
+        for (int i = 0; i < roundCounters.length; i++) {
+            lastRoundCounters[i] = roundCounters[i].sumThenReset();
+            totalCounters[i] += lastRoundCounters[i];
+        }
+        for (LatencyHistogram histogram : histograms) {
+            histogram.takeRound();
+        }
+        if (out != null) {
+            writeRound();
+        }
+    }
+
+    /**
+     * Registers the metrics with the platform MBean server, replacing the metrics of an earlier simulation
+     *
+     * @throws JMException if the metrics cannot be registered
+     */
+    public synchronized void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+        registeredName = name;
+    }
+
+    /**
+     * Closes the metrics file and unregisters the metrics
+     */
+    public synchronized void close() {
+        if (out != null) {
+            out.close();
+        }
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (JMException e) {
+                // already replaced by the metrics of another simulation
+            }
+            registeredName = null;
+        }
+    }
+
+    /**
+     * Helper method for writing the metrics of the last round as a line of the metrics file
+     */
+    private void writeRound() {
+        StringBuilder b = new StringBuilder();
+        boolean json = format == Format.JSON;
+        if (json) {
+            b.append("{\"round\":").append(round).append(",\"changedNodes\":").append(changedNodes).append(",\"wallMillis\":").append(millis(lastRoundWallNanos));
+        } else {
+            b.append(round).append(',').append(changedNodes).append(',').append(millis(lastRoundWallNanos));
+        }
+        for (Counter counter : Counter.values()) {
+            if (json) {
+                b.append(",\"").append(counter.label).append("\":");
+            } else {
+                b.append(',');
+            }
+            b.append(lastRoundCounters[counter.ordinal()]);
+        }
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = histograms[phase.ordinal()];
+            if (json) {
+                b.append(",\"").append(phase.label).append("\":{\"count\":").append(histogram.getLastRoundCount());
+                b.append(",\"millis\":").append(millis(histogram.getLastRoundNanos()));
+                b.append(",\"p50Micros\":").append(micros(histogram.getLastRoundPercentile(0.5)));
+                b.append(",\"p99Micros\":").append(micros(histogram.getLastRoundPercentile(0.99))).append('}');
+            } else {
+                b.append(',').append(histogram.getLastRoundCount());
+                b.append(',').append(millis(histogram.getLastRoundNanos()));
+                b.append(',').append(micros(histogram.getLastRoundPercentile(0.5)));
+                b.append(',').append(micros(histogram.getLastRoundPercentile(0.99)));
+            }
+        }
+        if (json) {
+            b.append('}');
+        }
+        out.println(b);
+        out.flush();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e3);
+    }
+
+    @Override
+    public synchronized int getRound() {
+        return round;
+    }
+
+    @Override
+    public synchronized int getChangedNodes() {
+        return changedNodes;
+    }
+
+    @Override
+    public synchronized long getLastRoundWallTimeMillis() {
+        return lastRoundWallNanos / 1000000;
+    }
+
+    @Override
+    public synchronized long getTotalWallTimeMillis() {
+        return totalWallNanos / 1000000;
+    }
+
+    @Override
+    public synchronized long getAdvertisementsSent() {
+        return totalCounters[Counter.ADVERTISEMENTS_SENT.ordinal()];
+    }
+
+    @Override
+    public synchronized long getEntriesProcessed() {
+        return totalCounters[Counter.ENTRIES_PROCESSED.ordinal()];
+    }
+
+    @Override
+    public synchronized long getRouteUpdates() {
+        return totalCounters[Counter.ROUTE_UPDATES.ordinal()];
+    }
+
+    @Override
+    public synchronized long getInfinityDrops() {
+        return totalCounters[Counter.INFINITY_DROPS.ordinal()];
+    }
+
+    @Override
+    public synchronized long getForgetTimeouts() {
+        return totalCounters[Counter.FORGET_TIMEOUTS.ordinal()];
+    }
+
+    @Override
+    public synchronized long getNeighboursRemoved() {
+        return totalCounters[Counter.NEIGHBOURS_REMOVED.ordinal()];
+    }
+
+    @Override
+    public synchronized long getLinkCheckMillis() {
+        return histograms[Phase.LINK_CHECK.ordinal()].getTotalNanos() / 1000000;
+    }
+
+    @Override
+    public synchronized long getLinkCheckP99Micros() {
+        return histograms[Phase.LINK_CHECK.ordinal()].getTotalPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public synchronized long getForgetCountersMillis() {
+        return histograms[Phase.FORGET_COUNTERS.ordinal()].getTotalNanos() / 1000000;
+    }
+
+    @Override
+    public synchronized long getForgetCountersP99Micros() {
+        return histograms[Phase.FORGET_COUNTERS.ordinal()].getTotalPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public synchronized long getMessageHandlingMillis() {
+        return histograms[Phase.MESSAGE_HANDLING.ordinal()].getTotalNanos() / 1000000;
+    }
+
+    @Override
+    public synchronized long getMessageHandlingP99Micros() {
+        return histograms[Phase.MESSAGE_HANDLING.ordinal()].getTotalPercentile(0.99) / 1000;
+    }
+
+    @Override
+    public synchronized long getEventsMillis() {
+        return histograms[Phase.EVENTS.ordinal()].getTotalNanos() / 1000000;
+    }
+
+    @Override
+    public synchronized long getEventsP99Micros() {
+        return histograms[Phase.EVENTS.ordinal()].getTotalPercentile(0.99) / 1000;
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * Management interface of the {@link SimulationMetrics SimulationMetrics}, registered with the platform MBean server as
+ * {@value SimulationMetrics#OBJECT_NAME}. The counts and times are totals over the rounds finished so far.
+ */
+public interface SimulationMetricsMBean {
+
+    int getRound();
+
+    int getChangedNodes();
+
+    long getLastRoundWallTimeMillis();
+
+    long getTotalWallTimeMillis();
+
+    long getAdvertisementsSent();
+
+    long getEntriesProcessed();
+
+    long getRouteUpdates();
+
+    long getInfinityDrops();
+
+    long getForgetTimeouts();
+
+    long getNeighboursRemoved();
+
+    long getLinkCheckMillis();
+
+    long getLinkCheckP99Micros();
+
+    long getForgetCountersMillis();
+
+    long getForgetCountersP99Micros();
+
+    long getMessageHandlingMillis();
+
+    long getMessageHandlingP99Micros();
+
+    long getEventsMillis();
+
+    long getEventsP99Micros();
+}
@@ -1,7 +1,11 @@
-import org.apache.commons.io.FileUtils;
-
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * The simulator.
@@ -9,42 +13,248 @@ import java.util.*;
  * It registers when a route table of a node has changed.
  * It also finds the best route between two nodes.
  */
-public class Simulator implements RouteTable.NetworkNodeRouteTableListener, ShowBestRouteEvent.ShowBestRouteCapable {
+public class Simulator implements RouteTable.NetworkNodeRouteTableListener, ShowBestRouteEvent.ShowBestRouteCapable, LinkCostChangeEvent.LinkCostChangeListener {
     public static final Integer DEFAULT_NUM_OF_EXCHANGES = 100;
 
-    private final NetworkLink[][] links;
+    /**
+     * Largest network for which the dense link costs matrix is printed when -printCosts is not given
+     */
+    public static final int DEFAULT_PRINT_COSTS_MAX_NODES = 64;
+
+    /**
+     * Largest network for which array routing tables are used when -routeTable is not given. An array routing table
+     * takes memory for every node of the network, so bigger networks use map routing tables.
+     */
+    public static final int DEFAULT_ARRAY_ROUTE_TABLES_MAX_NODES = 4096;
+
+    /**
+     * Default number of hops after which a packet of the traffic is taken to be looping, the largest IP time to live
+     */
+    public static final int DEFAULT_TIME_TO_LIVE = 255;
+
+    /**
+     * Default number of messages the mailbox of a node holds when the nodes are actors
+     */
+    public static final int DEFAULT_MAILBOX_SIZE = 256;
+
+    /**
+     * Default time between two updates of a node when the exchange is driven by timers, in seconds
+     */
+    public static final int DEFAULT_UPDATE_INTERVAL = 30;
+
+    /**
+     * Default largest random offset of the update timer, in seconds
+     */
+    public static final int DEFAULT_UPDATE_JITTER = 5;
+
+    /**
+     * Default time after which a route which is not advertised again times out, in seconds
+     */
+    public static final int DEFAULT_TIMEOUT = 180;
+
+    /**
+     * Size of the buffer of the standard output stream the simulation output is written to
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final LinkTopology topology;
     private final int numOfNodes;
 
-    private final ArrayList<Integer> nodesWithChangedRoutingTables = new ArrayList<Integer>();
+    /**
+     * Flags of the nodes whose routing tables have changed during the current exchange, indexed by node id.
+     * A node only ever sets its own flag so the flags can be set from the threads of the parallel exchange.
+     */
+    private final boolean[] routingTableChanged;
+
+    /**
+     * Ids of the nodes whose routing tables have changed during the previous exchange
+     */
+    private final BitSet nodesWithChangedRoutingTables = new BitSet();
+
+    /**
+     * Ids of the nodes which send in the next exchange when only the nodes on the worklist send
+     */
+    private final BitSet activeNodes = new BitSet();
+
+    /**
+     * Ids of all nodes in ascending order
+     */
+    private final int[] allNodeIds;
 
-    private final HashMap<Integer, NetworkNode> nodesMap;
+    private final NetworkNode[] nodes;
 
     private final Integer maxExchanges;
     private final HashMap<Integer, ArrayList<ScheduledEvent>> scheduledEvents;
+
+    /**
+     * The trace routing table events, stored once per trace rather than once per exchange
+     */
+    private final TraceSchedule traceSchedule = new TraceSchedule();
+
+    /**
+     * Walk of the rounds over the trace routing table events
+     */
+    private final TraceSchedule.Cursor traceCursor = traceSchedule.cursor();
+
     private final Boolean manual;
     private final Integer infinityCost;
+    private final boolean arrayRouteTables;
+    private final boolean printCosts;
+    private final ParallelExchange parallelExchange;
+
+    /**
+     * The actors of the nodes or null if the nodes do not exchange their routes as messages
+     */
+    private final ActorExchange actorExchange;
+
+    /**
+     * The connections to the processes of the other partitions or null if this process simulates the whole network
+     */
+    private final PartitionExchange partitionExchange;
+
+    /**
+     * The timers driving the exchange or null if the nodes exchange their routes in lock-step rounds
+     */
+    private final TimedExchange timedExchange;
+
+    /**
+     * Simulated time covered by one round when the exchange is driven by timers, in milliseconds
+     */
+    private final long updateIntervalMillis;
+
+    /**
+     * Sink all simulation output goes to
+     */
+    private final SimulationEventSink sink;
+
+    /**
+     * The per-round metrics or null if no metrics are collected
+     */
+    private final SimulationMetrics metrics;
+
+    /**
+     * The analyser of the convergence of the routes or null if it is not analysed
+     */
+    private final ConvergenceAnalyser analyser;
+
+    /**
+     * The hierarchical addresses of the nodes or null if the nodes are only addressed by their ids
+     */
+    private final AddressPlan addressPlan;
+
+    /**
+     * True if the nodes are grouped into subnets by the scenario, rather than only addressed for the forwarding tables
+     */
+    private final boolean subnetsGiven;
+
+    /**
+     * True if the nodes look up their next hops in compiled forwarding tables
+     */
+    private final boolean forwardingTables;
+
+    /**
+     * Resolver of the best routes printed by the scheduled events
+     */
+    private final BestRouteResolver bestRouteResolver;
+
+    /**
+     * Ids of the nodes whose routes to all other nodes are checked at the end of the simulation or null if none are
+     */
+    private final int[] reachabilitySources;
+
+    /**
+     * Ids of the destinations whose routes are compared with the shortest paths at the end of the simulation or null
+     * if the routes are not validated
+     */
+    private final int[] validationDestinations;
+
+    /**
+     * Forwards the packets of the traffic flows after every round or null if there is no traffic
+     */
+    private final TrafficEngine trafficEngine;
+
+    /**
+     * Pool the traffic is forwarded on or null if there is no traffic
+     */
+    private final ForkJoinPool trafficPool;
+
+    /**
+     * Number of threads of the parallel exchange and of the checks at the end of the simulation
+     */
+    private final int threads;
+    private final boolean worklist;
     private boolean splitHorizon;
+
+    /**
+     * Number of exchanges a destination is held down for after its route has been lost, 0 if routes are not held down
+     */
+    private final int holdDown;
+
+    /**
+     * Triggered updates flag. When set the nodes whose routes change during an exchange send the changed routes to
+     * their neighbours within the same exchange, until no node has unsent changes.
+     */
+    private final boolean triggeredUpdates;
     private boolean isStable = false;
     private final boolean untilStability;
 
-    public void startSimulation() {
+    /**
+     * Index of the first exchange {@link #startSimulation()} simulates. Later than 0 after a checkpoint is restored.
+     */
+    private int firstExchange = 0;
+
+    /**
+     * Index of the next exchange to be simulated
+     */
+    private int nextExchange = 0;
+
+    /**
+     * Index of the first exchange whose scheduled events have not been executed yet
+     */
+    private int nextEventsExchange = 0;
+
+    /**
+     * File the state is saved to or null if no checkpoint is taken
+     */
+    private final String checkpointFileName;
+
+    /**
+     * Index of the exchange after which the checkpoint is taken or -1 to take it when the simulation ends
+     */
+    private final int checkpointAfter;
+
+    public void startSimulation() throws Exception {
         // for clarity
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! Starting simulation !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+        sink.message("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! Starting simulation !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!\n");
 
         // print simulator initial state
-        printCosts();
-        printStateOfNodes();
-        printScheduledEvents();
+        if (sink.getVerbosity() != SimulationEventSink.Verbosity.QUIET) {
+            if (printCosts) {
+                printCosts();
+            }
+            printStateOfNodes();
+            printScheduledEvents();
+        }
+        if (partitionExchange != null) {
+            // the workers answer the questions about their nodes until the coordinator has printed them
+            partitionExchange.finishEvents();
+        }
 
         // automatic vs manual
         Scanner userInput = new Scanner(System.in);
         String userInputLine;
-        for (int currIteration = 0; currIteration < maxExchanges; currIteration++) {
+        boolean checkpointSaved = false;
+        if (nextEventsExchange < firstExchange) {
+            // the checkpoint was taken before the events of its last exchange
+            simulateNetworkEvents(nextEventsExchange);
+        }
+        for (int currIteration = firstExchange; currIteration < maxExchanges; currIteration++) {
             boolean shouldContinue;
             if (!manual) {
                 shouldContinue = simulateRound(currIteration);
             } else {
-                System.out.println("Press enter to simulate next round or toggle split horizon");
+                sink.message("Press enter to simulate next round or toggle split horizon\n");
+                sink.flush();
                 userInputLine = userInput.nextLine();
                 if (userInputLine == null) {
                     break;
@@ -61,15 +271,72 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
                     shouldContinue = simulateRound(currIteration);
                 } else {
                     // unrecognized command
-                    System.out.println("Command not recognized.");
+                    sink.message("Command not recognized.\n");
                     shouldContinue = true;
                 }
             }
+            if (checkpointFileName != null && currIteration == checkpointAfter) {
+                saveCheckpoint(checkpointFileName);
+                checkpointSaved = true;
+            }
             if (!shouldContinue) {
                 break;
             }
         }
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! End simulation !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+        if (checkpointFileName != null && !checkpointSaved) {
+            saveCheckpoint(checkpointFileName);
+        }
+        if (parallelExchange != null) {
+            parallelExchange.shutdown();
+        }
+        if (actorExchange != null) {
+            actorExchange.shutdown();
+        }
+        if (partitionExchange != null) {
+            partitionExchange.close();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (trafficEngine != null) {
+            trafficPool.shutdown();
+            sink.message("Traffic in total: " + trafficEngine.getTotal() + "\n" + trafficEngine.busiestLinks() + "\n");
+        }
+        if (validationDestinations != null || reachabilitySources != null) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                if (validationDestinations != null) {
+                    validateRoutes(pool);
+                }
+                if (reachabilitySources != null) {
+                    checkReachability(pool);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (analyser != null) {
+            analyser.printSummary();
+        }
+        if (subnetsGiven) {
+            printRouteTableSizes();
+        }
+        sink.message("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!! End simulation !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!\n");
+        sink.close();
+    }
+
+    /**
+     * Helper method for printing how many routes the routing tables hold
+     */
+    private void printRouteTableSizes() {
+        long totalRoutes = 0;
+        int maxRoutes = 0;
+        for (NetworkNode node : nodes) {
+            totalRoutes += node.getNumOfRoutes();
+            maxRoutes = Math.max(maxRoutes, node.getNumOfRoutes());
+        }
+        sink.message("Routing tables: " + totalRoutes + " routes, " + String.format("%.1f", (double) totalRoutes / numOfNodes)
+                + " per node on average, at most " + maxRoutes + "\n");
     }
 
     /**
@@ -79,23 +346,49 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
      * @return true if simulation should continue, false if not
      */
     public boolean simulateRound(int currExchange) {
-        System.out.println("========================= Round " + currExchange + " ==========================");
+        long roundStart = System.nanoTime();
+        sink.message("========================= Round " + currExchange + " ==========================\n");
 
         // simulate network exchange
-        simulateNetworkExchange();
-        System.out.println();
+        if (timedExchange != null) {
+            simulateTimedExchange(currExchange);
+        } else if (actorExchange != null) {
+            simulateActorExchange();
+        } else {
+            simulateNetworkExchange();
+        }
+        if (holdDown > 0) {
+            // every node counts down, also the nodes which have not sent
+            int heldDown = 0;
+            for (NetworkNode node : nodes) {
+                heldDown += node.reduceHoldDownTimers();
+            }
+            if (heldDown > 0) {
+                // the held down destinations may get routes again once their hold-downs have run out
+                isStable = false;
+            }
+        }
+        if (analyser != null) {
+            analyser.roundFinished(currExchange, nodesWithChangedRoutingTables);
+        }
+        bestRouteResolver.invalidate(nodesWithChangedRoutingTables);
+        nextExchange = currExchange + 1;
+        sink.message("\n");
 
         if (isStable) {
             // network stable. Decide if simulations should continue.
             if (untilStability) {
-                System.out.println("------- !!! ------- Stability reached after exchange: " + (currExchange - 1) + " ------- !!! ------\n");
+                sink.message("------- !!! ------- Stability reached after exchange: " + (currExchange - 1) + " ------- !!! ------\n\n");
+                if (metrics != null) {
+                    metrics.roundFinished(currExchange, 0, System.nanoTime() - roundStart);
+                }
                 return false;
             } else {
-                System.out.println("------- !!! ------- Network stable for this round ------- !!! ------\n");
+                sink.message("------- !!! ------- Network stable for this round ------- !!! ------\n\n");
             }
         } else {
             // network was not stable.
-            System.out.println("------- !!! ------- There were a changes in node routing tables ------- !!! -------");
+            sink.message("------- !!! ------- There were a changes in node routing tables ------- !!! -------\n");
 
             // print ids of nodes with changes
             printChangedNodes();
@@ -104,7 +397,15 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
         // simulate network events
         simulateNetworkEvents(currExchange);
 
-        System.out.println("========================= End round " + currExchange + " ==========================\n\n");
+        if (trafficEngine != null) {
+            // the packets see the routes of this exchange and the link costs its events left
+            sink.message("Traffic after exchange " + currExchange + ": " + forwardTraffic() + "\n\n");
+        }
+
+        if (metrics != null) {
+            metrics.roundFinished(currExchange, nodesWithChangedRoutingTables.cardinality(), System.nanoTime() - roundStart);
+        }
+        sink.roundFinished(currExchange, nodesWithChangedRoutingTables.cardinality());
         return true;
     }
 
@@ -112,13 +413,12 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
      * Prints ids of nodes which route's tables have changed during the previous exchange
      */
     private void printChangedNodes() {
-        System.out.println("Nodes with changed routing tables: ");
-        Collections.sort(nodesWithChangedRoutingTables);
-        for (Integer nodeIdWithChangedRoutingTable : nodesWithChangedRoutingTables) {
-            System.out.print(nodeIdWithChangedRoutingTable + " ");
+        StringBuilder b = new StringBuilder("Nodes with changed routing tables: \n");
+        for (int nodeId = nodesWithChangedRoutingTables.nextSetBit(0); nodeId >= 0; nodeId = nodesWithChangedRoutingTables.nextSetBit(nodeId + 1)) {
+            b.append(nodeId).append(" ");
         }
-        System.out.println();
-        System.out.println();
+        b.append("\n\n");
+        sink.message(b.toString());
     }
 
     /**
@@ -128,45 +428,183 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
      */
     private void simulateNetworkEvents(int currExchange) {
         ArrayList<ScheduledEvent> scheduledEvents = this.scheduledEvents.get(currExchange);
-        if (scheduledEvents != null) {
-            // events exist so execute them
-            System.out.println("########### ScheduledEvents after exchange " + currExchange + " ###########");
-            for (ScheduledEvent event : scheduledEvents) {
-                event.executeEvent(currExchange);
-                System.out.println();
+        List<TraceRouteTableEvent> traces = traceCursor.moveTo(currExchange);
+        if (scheduledEvents != null || !traces.isEmpty()) {
+            // events exist so execute them, the traces after the other events
+            sink.message("########### ScheduledEvents after exchange " + currExchange + " ###########\n");
+            if (scheduledEvents != null) {
+                for (ScheduledEvent event : scheduledEvents) {
+                    executeEvent(event, currExchange);
+                }
+            }
+            for (TraceRouteTableEvent event : traces) {
+                executeEvent(event, currExchange);
             }
         }
+        if (partitionExchange != null) {
+            // the workers answer the questions about their nodes until the coordinator has run its events
+            partitionExchange.finishEvents();
+        }
+        nextEventsExchange = currExchange + 1;
+    }
+
+    /**
+     * Helper method for executing a scheduled event and timing it
+     *
+     * @param event        the event
+     * @param currExchange the current exchange index
+     */
+    private void executeEvent(ScheduledEvent event, int currExchange) {
+        long start = metrics != null ? System.nanoTime() : 0;
+        event.executeEvent(currExchange);
+        if (metrics != null) {
+            metrics.record(SimulationMetrics.Phase.EVENTS, start);
+        }
+        sink.message("\n");
+    }
+
+    /**
+     * Simulates the updates and agings of the nodes during the update interval of a round
+     *
+     * @param currExchange the index of the round
+     */
+    private void simulateTimedExchange(int currExchange) {
+        sink.message("simulate network exchange start\n");
+        long firedTimers = timedExchange.getFiredTimers();
+        timedExchange.simulateUntil((currExchange + 1) * updateIntervalMillis);
+        collectChangedNodes(null);
+        sink.message("simulated time " + timedExchange.getTime() + " ms, " + (timedExchange.getFiredTimers() - firedTimers) + " timers fired\n");
+        sink.message("simulate network exchange finish\n");
+    }
+
+    /**
+     * Simulates a network exchange in which the nodes send their routes as messages until the network is quiescent
+     */
+    private void simulateActorExchange() {
+        sink.message("simulate network exchange start\n");
+        actorExchange.simulateExchange();
+        collectChangedNodes(null);
+        long droppedMessages = actorExchange.takeDroppedMessages();
+        if (droppedMessages > 0) {
+            // the dropped routes may still change the routing tables
+            isStable = false;
+        }
+        sink.message(actorExchange.takeDeliveredMessages() + " messages delivered, " + droppedMessages + " dropped\n");
+        sink.message("simulate network exchange finish\n");
     }
 
     /**
      * Simulates a network exchange
      */
     private void simulateNetworkExchange() {
-        System.out.println("simulate network exchange start");
+        sink.message("simulate network exchange start\n");
+
+        // with a worklist only the active nodes send and only they and their neighbours can change
+        BitSet senders = worklist ? activeNodes : null;
+        BitSet touchedNodes = worklist ? getNodesAround(activeNodes) : null;
+
+        if (partitionExchange != null) {
+            // the nodes of the other partitions are simulated by other processes
+            partitionExchange.simulateExchange();
+        } else if (parallelExchange != null) {
+            // every node reads the routes its neighbours had at the end of the previous exchange
+            int[] senderIds = senders != null ? toNodeIds(senders) : allNodeIds;
+            int[] receiverIds = touchedNodes != null ? toNodeIds(touchedNodes) : allNodeIds;
+            parallelExchange.simulateExchange(senderIds, receiverIds, senders);
+        } else if (senders != null) {
+            // tell every active node to contact its neighbour
+            for (int nodeId = senders.nextSetBit(0); nodeId >= 0; nodeId = senders.nextSetBit(nodeId + 1)) {
+                nodes[nodeId].sendCostsToNeighbours();
+            }
+        } else {
+            // tell every node to contact its neighbour
+            for (NetworkNode node : nodes) {
+                node.sendCostsToNeighbours();
+            }
+        }
+
+        if (triggeredUpdates) {
+            sendTriggeredUpdates(touchedNodes);
+        }
+
+        // update stability check
+        collectChangedNodes(touchedNodes);
+        if (partitionExchange != null) {
+            // the network is stable only if every partition is
+            isStable = partitionExchange.agreeOnStability(nodesWithChangedRoutingTables);
+        }
 
-        // reset stability check
-        resetStabilityCheck();
+        if (worklist) {
+            // nodes with changed routing tables send in the next exchange
+            activeNodes.clear();
+            activeNodes.or(nodesWithChangedRoutingTables);
 
-        // tell every node to contact its neighbour
-        for (NetworkNode node : nodesMap.values()) {
-            node.sendCostsToNeighbours();
+            // nodes which have lost routes ask their neighbours for all their routes
+            for (int nodeId = touchedNodes.nextSetBit(0); nodeId >= 0; nodeId = touchedNodes.nextSetBit(nodeId + 1)) {
+                if (nodes[nodeId].takeRoutesLost()) {
+                    for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                        nodes[topology.getNeighbour(slot)].requestFullAdvertisement();
+                        activeNodes.set(topology.getNeighbour(slot));
+                    }
+                }
+            }
         }
 
-        System.out.println("simulate network exchange finish");
+        sink.message("simulate network exchange finish\n");
     }
 
     /**
-     * Print link costs matrix
+     * Lets the nodes whose routes have changed since their advertisement send the changed routes to their neighbours,
+     * pass after pass, until no node has unsent changes. A route cannot be longer than the infinity cost so the passes
+     * are limited to {@link #infinityCost}; changes left after that are sent in the next exchange.
+     *
+     * @param touchedNodes the nodes which may have changed during the exchange, extended by the nodes the triggered
+     *                     updates reach, or null if any node may have changed
      */
-    public void printCosts() {
-        StringBuilder b = new StringBuilder("links costs:\n");
-        for (int i = 0; i < numOfNodes; i++) {
-            for (int y = 0; y < numOfNodes; y++) {
-                b.append("\t" + links[i][y]);
+    private void sendTriggeredUpdates(BitSet touchedNodes) {
+        BitSet candidates = touchedNodes != null ? (BitSet) touchedNodes.clone() : null;
+        BitSet updatedNodes = new BitSet(numOfNodes);
+        for (int pass = 0; pass < infinityCost; pass++) {
+            updatedNodes.clear();
+            if (candidates != null) {
+                for (int nodeId = candidates.nextSetBit(0); nodeId >= 0; nodeId = candidates.nextSetBit(nodeId + 1)) {
+                    sendTriggeredUpdate(nodeId, updatedNodes);
+                }
+            } else {
+                for (int nodeId = 0; nodeId < numOfNodes; nodeId++) {
+                    sendTriggeredUpdate(nodeId, updatedNodes);
+                }
             }
-            b.append("\n");
+            if (updatedNodes.isEmpty()) {
+                break;
+            }
+
+            // only the neighbours of the nodes which have sent can have changed
+            candidates = getNodesAround(updatedNodes);
+            if (touchedNodes != null) {
+                touchedNodes.or(candidates);
+            }
+        }
+    }
+
+    /**
+     * Helper method for letting a node send a triggered update if its routes have changed since its advertisement
+     *
+     * @param nodeId       the node id
+     * @param updatedNodes the nodes which have sent a triggered update in this pass
+     */
+    private void sendTriggeredUpdate(int nodeId, BitSet updatedNodes) {
+        if (nodes[nodeId].hasUnpublishedChanges()) {
+            nodes[nodeId].sendTriggeredUpdate();
+            updatedNodes.set(nodeId);
         }
-        System.out.println(b.toString());
+    }
+
+    /**
+     * Print link costs matrix
+     */
+    public void printCosts() {
+        sink.message(topology.toDenseString() + "\n");
     }
 
     /**
@@ -186,7 +624,11 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
             }
             b.append("\n");
         }
-        System.out.println(b.toString());
+        // every trace once with its range, after the other events of each exchange
+        for (TraceRouteTableEvent event : traceSchedule.getTraces()) {
+            b.append("\tAt exchanges " + event.getAfterExchange() + " to " + (event.getExchangeEndIndex() - 1) + " : [" + event + "; ]\n");
+        }
+        sink.message(b.toString() + "\n");
     }
 
     /**
@@ -194,18 +636,95 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
      */
     public void printStateOfNodes() {
         StringBuilder b = new StringBuilder("State of nodes:\n\n");
-        for (NetworkNode node : nodesMap.values()) {
+        for (NetworkNode node : nodes) {
             b.append(node.toString() + "\n");
         }
-        System.out.println(b.toString());
+        sink.message(b.toString() + "\n");
     }
 
     /**
-     * Resets the stability check.
+     * Collects the nodes whose routing tables have changed during the exchange and resets their flags.
+     *
+     * @param candidates the only nodes which may have changed or null if any node may have changed
      */
-    private void resetStabilityCheck() {
+    private void collectChangedNodes(BitSet candidates) {
         nodesWithChangedRoutingTables.clear();
-        isStable = true;
+        if (candidates != null) {
+            for (int nodeId = candidates.nextSetBit(0); nodeId >= 0; nodeId = candidates.nextSetBit(nodeId + 1)) {
+                collectChangedNode(nodeId);
+            }
+        } else {
+            for (int nodeId = 0; nodeId < numOfNodes; nodeId++) {
+                collectChangedNode(nodeId);
+            }
+        }
+        isStable = nodesWithChangedRoutingTables.isEmpty();
+    }
+
+    /**
+     * Helper method for moving the changed flag of a node into {@link #nodesWithChangedRoutingTables}
+     *
+     * @param nodeId the node id
+     */
+    private void collectChangedNode(int nodeId) {
+        if (routingTableChanged[nodeId]) {
+            routingTableChanged[nodeId] = false;
+            nodesWithChangedRoutingTables.set(nodeId);
+            if (forwardingTables) {
+                nodes[nodeId].refreshForwardingTable();
+            }
+        }
+    }
+
+    /**
+     * Helper method for finding the nodes and their neighbours
+     *
+     * @param nodeIds the ids of the nodes
+     * @return the ids of the nodes and of all their neighbours
+     */
+    private BitSet getNodesAround(BitSet nodeIds) {
+        BitSet around = (BitSet) nodeIds.clone();
+        for (int nodeId = nodeIds.nextSetBit(0); nodeId >= 0; nodeId = nodeIds.nextSetBit(nodeId + 1)) {
+            for (int slot = topology.firstSlot(nodeId); slot < topology.endSlot(nodeId); slot++) {
+                around.set(topology.getNeighbour(slot));
+            }
+        }
+        return around;
+    }
+
+    /**
+     * Helper method for listing the ids of a set of nodes
+     *
+     * @param nodeIds the set of node ids
+     * @return the node ids in ascending order
+     */
+    private static int[] toNodeIds(BitSet nodeIds) {
+        int[] ids = new int[nodeIds.cardinality()];
+        int i = 0;
+        for (int nodeId = nodeIds.nextSetBit(0); nodeId >= 0; nodeId = nodeIds.nextSetBit(nodeId + 1)) {
+            ids[i++] = nodeId;
+        }
+        return ids;
+    }
+
+    /**
+     * Helper method for picking distinct node ids at random
+     *
+     * @param count  the number of ids
+     * @param random the source of randomness
+     * @return the picked ids in ascending order
+     */
+    private int[] sampleNodeIds(int count, Random random) {
+        int[] ids = allNodeIds.clone();
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(ids.length - i);
+            int id = ids[j];
+            ids[j] = ids[i];
+            ids[i] = id;
+        }
+        int[] sample = Arrays.copyOf(ids, count);
+        Arrays.sort(sample);
+        return sample;
     }
 
     /**
@@ -213,60 +732,144 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
      *
      * @param nodeId the id of the node whose route table registered an update
      */
-    public void onRouteTableUpdate(Integer nodeId) {
-        if (!nodesWithChangedRoutingTables.contains(nodeId)) {
-            nodesWithChangedRoutingTables.add(nodeId);
+    public void onRouteTableUpdate(int nodeId) {
+        // concurrent writes only ever store the same value and are visible once the exchange has joined
+        routingTableChanged[nodeId] = true;
+    }
+
+    /**
+     * Handles change in the cost of a link
+     *
+     * @param node1Id one end of the link
+     * @param node2Id the other end of the link
+     */
+    public void onLinkCostChange(int node1Id, int node2Id) {
+        if (trafficEngine != null) {
+            trafficEngine.onLinkCostChange();
+        }
+        if (worklist) {
+            // both ends have to tell their neighbours about the change
+            activeNodes.set(node1Id);
+            activeNodes.set(node2Id);
         }
-        isStable = false;
     }
 
     /**
      * Helper method for turning split-horizon off.
      */
     private void splitHorizonOff() {
-        System.out.println("split horizon on");
+        sink.message("split horizon on\n");
         splitHorizon = false;
-        for (NetworkNode node : nodesMap.values()) {
+        for (NetworkNode node : nodes) {
             node.setSplitHorizon(splitHorizon);
         }
+        if (worklist) {
+            // every node has to advertise its routes again
+            activeNodes.set(0, numOfNodes);
+        }
     }
 
     /**
      * Helper method for turning split-horizon on.
      */
     private void splitHorizonOn() {
-        System.out.println("split horizon off");
+        sink.message("split horizon off\n");
         splitHorizon = true;
-        for (NetworkNode node : nodesMap.values()) {
+        for (NetworkNode node : nodes) {
             node.setSplitHorizon(splitHorizon);
         }
+        if (worklist) {
+            // every node has to advertise its routes again
+            activeNodes.set(0, numOfNodes);
+        }
     }
 
     /**
-     * Constructor
+     * Constructor. Reads the config file and runs the simulation.
      *
      * @param fileName the config file name
      * @throws Exception
      */
     public Simulator(String fileName) throws Exception {
-        // read file and parse into lines
-        String[] inputLines = FileUtils.readFileToString(new File(fileName)).split("\n");
-        int inputLinesIndex = 0;
+        // stream the file, or map it if it is binary
+        this(ScenarioSource.open(fileName), fileName, 0, 0, null);
 
-        // look for numOfNodes
-        List<String> configValues = Arrays.asList(inputLines[inputLinesIndex++].split("\\s+"));
-        int numOfNodesIndex = configValues.indexOf("-numOfNodes");
-        if (numOfNodesIndex == -1) {
-            // this program wants at least this parameter
-            throw new Exception("Must specify number of nodes in the network");
-        }
-        numOfNodes = Integer.valueOf(configValues.get(numOfNodesIndex + 1));
-        if (numOfNodes <= 0) {
-            throw new Exception("numOfNodes must be in the range [1, inf).");
-        }
+        startSimulation();
+    }
 
-        // look maxExchanges flag
-        int maxExchangesIndex = configValues.indexOf("-maxExchanges");
+    /**
+     * Constructor. Sets up the network without running the simulation.
+     *
+     * @param inputLines the lines of the config
+     * @throws Exception
+     */
+    public Simulator(String[] inputLines) throws Exception {
+        this(ScenarioReader.of(inputLines));
+    }
+
+    /**
+     * Constructor. Sets up the network without running the simulation. The reader is closed once the scenario has been
+     * read.
+     *
+     * @param reader reader of the config
+     * @throws Exception
+     */
+    public Simulator(ScenarioSource reader) throws Exception {
+        this(reader, null, 0, 0, null);
+    }
+
+    /**
+     * Constructor. Sets up the network without running the simulation, reporting to the given metrics instead of
+     * the ones of the -metrics and -jmx flags. The reader is closed once the scenario has been read.
+     *
+     * @param reader  reader of the config
+     * @param metrics the metrics the simulation reports to
+     * @throws Exception
+     */
+    public Simulator(ScenarioSource reader, SimulationMetrics metrics) throws Exception {
+        this(reader, null, 0, 0, metrics);
+    }
+
+    /**
+     * Constructor. Sets up the network, or one partition of it, without running the simulation. The reader is closed
+     * once the scenario has been read.
+     *
+     * @param reader          reader of the config
+     * @param fileName        the config file name or null if the config is not read from a file
+     * @param partition       the partition this process simulates, 0 unless this is a partition worker
+     * @param coordinatorPort the port of the coordinator if this is a partition worker
+     * @throws Exception
+     */
+    public Simulator(ScenarioSource reader, String fileName, int partition, int coordinatorPort) throws Exception {
+        this(reader, fileName, partition, coordinatorPort, null);
+    }
+
+    /**
+     * Constructor. Sets up the network, or one partition of it, without running the simulation. The reader is closed
+     * once the scenario has been read.
+     *
+     * @param reader          reader of the config
+     * @param fileName        the config file name or null if the config is not read from a file
+     * @param partition       the partition this process simulates, 0 unless this is a partition worker
+     * @param coordinatorPort the port of the coordinator if this is a partition worker
+     * @param givenMetrics    the metrics the simulation reports to or null to collect them as the flags say
+     * @throws Exception
+     */
+    private Simulator(ScenarioSource reader, String fileName, int partition, int coordinatorPort, SimulationMetrics givenMetrics) throws Exception {
+        // look for numOfNodes
+        List<String> configValues = reader.readHeader();
+        int numOfNodesIndex = configValues.indexOf("-numOfNodes");
+        if (numOfNodesIndex == -1) {
+            // this program wants at least this parameter
+            throw new Exception("Must specify number of nodes in the network");
+        }
+        numOfNodes = Integer.valueOf(configValues.get(numOfNodesIndex + 1));
+        if (numOfNodes <= 0) {
+            throw new Exception("numOfNodes must be in the range [1, inf).");
+        }
+
+        // look maxExchanges flag
+        int maxExchangesIndex = configValues.indexOf("-maxExchanges");
         if (maxExchangesIndex != -1) {
             maxExchanges = Integer.valueOf(configValues.get(maxExchangesIndex + 1));
             if (maxExchanges <= 0) {
@@ -284,6 +887,21 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
             untilStability = false;
         }
 
+        // look for checkpoint flags
+        int checkpointIndex = configValues.indexOf("-checkpoint");
+        checkpointFileName = checkpointIndex != -1 ? configValues.get(checkpointIndex + 1) : null;
+        int checkpointAfterIndex = configValues.indexOf("-checkpointAfter");
+        if (checkpointAfterIndex != -1) {
+            checkpointAfter = Integer.valueOf(configValues.get(checkpointAfterIndex + 1));
+            if (checkpointAfter < 0) {
+                throw new Exception("checkpointAfter must be in the range [0, inf).");
+            }
+        } else {
+            checkpointAfter = -1;
+        }
+        int restoreIndex = configValues.indexOf("-restore");
+        String restoreFileName = restoreIndex != -1 ? configValues.get(restoreIndex + 1) : null;
+
         // look for manual flag
         int manualIndex = configValues.indexOf("-manual");
         if (manualIndex != -1) {
@@ -294,12 +912,26 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
 
         // look for split horizon flag
         int splitHorizonIndex = configValues.indexOf("-splitHorizon");
+        boolean poisonReverse = false;
         if (splitHorizonIndex != -1) {
-            splitHorizon = configValues.get(splitHorizonIndex + 1).equals("on");
+            String splitHorizonValue = configValues.get(splitHorizonIndex + 1);
+            poisonReverse = splitHorizonValue.equals("poison");
+            splitHorizon = splitHorizonValue.equals("on") || poisonReverse;
         } else {
             splitHorizon = false;
         }
 
+        // look for hold-down flag
+        int holdDownIndex = configValues.indexOf("-holdDown");
+        if (holdDownIndex != -1) {
+            holdDown = Integer.valueOf(configValues.get(holdDownIndex + 1));
+            if (holdDown < 0) {
+                throw new Exception("holdDown must be in the range [0, inf).");
+            }
+        } else {
+            holdDown = RouteTable.HOLD_DOWN_DEFAULT;
+        }
+
         // look for infinity
         int infinityCostIndex = configValues.indexOf("-infinity");
         if (infinityCostIndex != -1) {
@@ -311,140 +943,939 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
             infinityCost = RouteTable.INFINITY_COST_DEFAULT;
         }
 
+        // look for route table implementation flag
+        int routeTableIndex = configValues.indexOf("-routeTable");
+        if (routeTableIndex != -1) {
+            String routeTableValue = configValues.get(routeTableIndex + 1);
+            if (!routeTableValue.equals("array") && !routeTableValue.equals("map")) {
+                throw new Exception("routeTable must be one of [array, map].");
+            }
+            arrayRouteTables = routeTableValue.equals("array");
+        } else {
+            arrayRouteTables = numOfNodes <= DEFAULT_ARRAY_ROUTE_TABLES_MAX_NODES;
+        }
 
-        // instantiate nodes
-        nodesMap = new HashMap<Integer, NetworkNode>();
-        for (int i = 0; i < numOfNodes; i++) {
-            NetworkNode node = new NetworkNode(i, this, splitHorizon, infinityCost);
-            nodesMap.put(i, node);
+        // look for print costs flag
+        int printCostsIndex = configValues.indexOf("-printCosts");
+        if (printCostsIndex != -1) {
+            printCosts = Boolean.valueOf(configValues.get(printCostsIndex + 1));
+        } else {
+            printCosts = numOfNodes <= DEFAULT_PRINT_COSTS_MAX_NODES;
         }
 
-        // instantiate links with default value FAILED_LINK_COST = -1 => not connected
-        links = new NetworkLink[numOfNodes][numOfNodes];
-        for (int i = 0; i < numOfNodes; i++) {
-            for (int y = i; y < numOfNodes; y++) {
-                if (i == y) {
-                    // distance to self = 0
-                    links[i][y] = new NetworkLink(0, nodesMap.get(i), nodesMap.get(y));
-                } else {
-                    // distance to others set to FAILED_LINK_COST
-                    NetworkLink networkLink = new NetworkLink(RouteTable.FAILED_LINK_COST, nodesMap.get(i), nodesMap.get(y));
-                    links[i][y] = networkLink;
-                    links[y][i] = networkLink;
+        // look for advertisement flags
+        int advertiseIndex = configValues.indexOf("-advertise");
+        boolean deltaAdvertisements = false;
+        if (advertiseIndex != -1) {
+            String advertiseValue = configValues.get(advertiseIndex + 1);
+            if (!advertiseValue.equals("full") && !advertiseValue.equals("delta")) {
+                throw new Exception("advertise must be one of [full, delta].");
+            }
+            deltaAdvertisements = advertiseValue.equals("delta");
+        }
+        int fullRefreshEvery = 1;
+        if (deltaAdvertisements) {
+            // routes have to be re-advertised before the neighbours' forget counters run out
+            fullRefreshEvery = RouteTable.FORGET_AFTER_DEFAULT - 1;
+            int fullRefreshEveryIndex = configValues.indexOf("-fullRefreshEvery");
+            if (fullRefreshEveryIndex != -1) {
+                fullRefreshEvery = Integer.valueOf(configValues.get(fullRefreshEveryIndex + 1));
+                if (fullRefreshEvery <= 0 || fullRefreshEvery >= RouteTable.FORGET_AFTER_DEFAULT) {
+                    throw new Exception("fullRefreshEvery must be in the range [1, " + RouteTable.FORGET_AFTER_DEFAULT + ").");
                 }
             }
         }
 
-        // parse connections
-        for (; inputLinesIndex < inputLines.length; inputLinesIndex++) {
-            String inputLine = inputLines[inputLinesIndex];
-            if (inputLine.contains("##")) {
-                break;
+        // look for exchange mode flag
+        int exchangeIndex = configValues.indexOf("-exchange");
+        boolean parallel = false;
+        boolean actors = false;
+        if (exchangeIndex != -1) {
+            String exchangeValue = configValues.get(exchangeIndex + 1);
+            if (!exchangeValue.equals("sequential") && !exchangeValue.equals("parallel") && !exchangeValue.equals("actors")) {
+                throw new Exception("exchange must be one of [sequential, parallel, actors].");
+            }
+            parallel = exchangeValue.equals("parallel");
+            actors = exchangeValue.equals("actors");
+        }
+        int mailboxSizeIndex = configValues.indexOf("-mailboxSize");
+        int mailboxSize = DEFAULT_MAILBOX_SIZE;
+        if (mailboxSizeIndex != -1) {
+            mailboxSize = Integer.valueOf(configValues.get(mailboxSizeIndex + 1));
+            if (mailboxSize <= 0) {
+                throw new Exception("mailboxSize must be in the range [1, inf).");
             }
-            String[] inputLineValues = inputLine.split("\\s+");
-            Integer fromNodeId = Integer.valueOf(inputLineValues[0]);
-            Integer toNodeId = Integer.valueOf(inputLineValues[1]);
-            Integer linkCost = Integer.valueOf(inputLineValues[2]);
+        }
+
+        // look for number of threads of the parallel exchange
+        int threadsIndex = configValues.indexOf("-threads");
+        int threads = Runtime.getRuntime().availableProcessors();
+        if (threadsIndex != -1) {
+            threads = Integer.valueOf(configValues.get(threadsIndex + 1));
+            if (threads <= 0) {
+                throw new Exception("threads must be in the range [1, inf).");
+            }
+        }
+
+        // look for scheduling flag
+        int scheduleIndex = configValues.indexOf("-schedule");
+        if (scheduleIndex != -1) {
+            String scheduleValue = configValues.get(scheduleIndex + 1);
+            if (!scheduleValue.equals("all") && !scheduleValue.equals("worklist")) {
+                throw new Exception("schedule must be one of [all, worklist].");
+            }
+            worklist = scheduleValue.equals("worklist");
+        } else {
+            worklist = false;
+        }
+        if (actors && (worklist || deltaAdvertisements)) {
+            // dropped messages are only made up for by full advertisements
+            throw new Exception("exchange actors cannot be combined with schedule worklist or advertise delta.");
+        }
+
+        // look for timing flags
+        int timingIndex = configValues.indexOf("-timing");
+        boolean timed = false;
+        if (timingIndex != -1) {
+            String timingValue = configValues.get(timingIndex + 1);
+            if (!timingValue.equals("rounds") && !timingValue.equals("events")) {
+                throw new Exception("timing must be one of [rounds, events].");
+            }
+            timed = timingValue.equals("events");
+        }
+        if (timed && (parallel || actors || worklist)) {
+            throw new Exception("timing events cannot be combined with exchange parallel, exchange actors or schedule worklist.");
+        }
+
+        // look for triggered updates flag
+        int triggeredUpdatesIndex = configValues.indexOf("-triggeredUpdates");
+        triggeredUpdates = triggeredUpdatesIndex != -1 && Boolean.valueOf(configValues.get(triggeredUpdatesIndex + 1));
+        if (triggeredUpdates && (parallel || actors || timed)) {
+            // the actors and the timers send triggered updates anyway
+            throw new Exception("triggeredUpdates cannot be combined with exchange parallel, exchange actors or timing events.");
+        }
+        if (holdDown > 0 && worklist) {
+            // quiescent neighbours would not advertise the routes ignored during the hold-down again
+            throw new Exception("holdDown cannot be combined with schedule worklist.");
+        }
+        int updateIntervalIndex = configValues.indexOf("-updateInterval");
+        int updateInterval = DEFAULT_UPDATE_INTERVAL;
+        if (updateIntervalIndex != -1) {
+            updateInterval = Integer.valueOf(configValues.get(updateIntervalIndex + 1));
+            if (updateInterval <= 0) {
+                throw new Exception("updateInterval must be in the range [1, inf).");
+            }
+        }
+        int updateJitterIndex = configValues.indexOf("-updateJitter");
+        int updateJitter = Math.min(DEFAULT_UPDATE_JITTER, updateInterval - 1);
+        if (updateJitterIndex != -1) {
+            updateJitter = Integer.valueOf(configValues.get(updateJitterIndex + 1));
+            if (updateJitter < 0 || updateJitter >= updateInterval) {
+                throw new Exception("updateJitter must be in the range [0, updateInterval).");
+            }
+        }
+        int timeoutIndex = configValues.indexOf("-timeout");
+        int timeout = DEFAULT_TIMEOUT;
+        if (timeoutIndex != -1) {
+            timeout = Integer.valueOf(configValues.get(timeoutIndex + 1));
+            if (timeout <= 0) {
+                throw new Exception("timeout must be in the range [1, inf).");
+            }
+        }
+        updateIntervalMillis = 1000L * updateInterval;
+
+        // look for partitions flag
+        int partitionsIndex = configValues.indexOf("-partitions");
+        int partitions = 1;
+        if (partitionsIndex != -1) {
+            partitions = Integer.valueOf(configValues.get(partitionsIndex + 1));
+            if (partitions <= 0 || partitions > numOfNodes) {
+                throw new Exception("partitions must be in the range [1, numOfNodes].");
+            }
+        }
+        if (partitions > 1 && (parallel || actors || worklist || timed || triggeredUpdates || holdDown > 0 || manual || checkpointFileName != null || restoreFileName != null)) {
+            throw new Exception("partitions cannot be combined with exchange parallel, exchange actors, schedule worklist, timing events, triggered updates, hold-down, manual or checkpoints.");
+        }
+        if (partitions > 1 && fileName == null) {
+            // the other processes read the scenario themselves
+            throw new Exception("partitions needs the config to be read from a file.");
+        }
+
+        // look for verbosity flag
+        int verbosityIndex = configValues.indexOf("-verbosity");
+        SimulationEventSink.Verbosity verbosity = SimulationEventSink.Verbosity.ROUTES;
+        if (verbosityIndex != -1) {
+            String verbosityValue = configValues.get(verbosityIndex + 1);
+            if (!verbosityValue.equals("quiet") && !verbosityValue.equals("rounds") && !verbosityValue.equals("routes")) {
+                throw new Exception("verbosity must be one of [quiet, rounds, routes].");
+            }
+            verbosity = SimulationEventSink.Verbosity.valueOf(verbosityValue.toUpperCase());
+        }
+        if (verbosity == SimulationEventSink.Verbosity.QUIET || partition != 0) {
+            // the coordinator prints the output of a partitioned simulation
+            sink = NoOpEventSink.INSTANCE;
+        } else {
+            // the output is formatted and written on a separate thread
+            PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE), false);
+            sink = new AsyncEventSink(new TextEventSink(out, verbosity));
+        }
+
+        // look for metrics flags
+        int metricsIndex = configValues.indexOf("-metrics");
+        String metricsFileName = metricsIndex != -1 ? configValues.get(metricsIndex + 1) : null;
+        int metricsFormatIndex = configValues.indexOf("-metricsFormat");
+        SimulationMetrics.Format metricsFormat = SimulationMetrics.Format.CSV;
+        if (metricsFormatIndex != -1) {
+            String metricsFormatValue = configValues.get(metricsFormatIndex + 1);
+            if (!metricsFormatValue.equals("csv") && !metricsFormatValue.equals("json")) {
+                throw new Exception("metricsFormat must be one of [csv, json].");
+            }
+            metricsFormat = SimulationMetrics.Format.valueOf(metricsFormatValue.toUpperCase());
+        }
+        int jmxIndex = configValues.indexOf("-jmx");
+        boolean jmx = jmxIndex != -1 && Boolean.valueOf(configValues.get(jmxIndex + 1));
+        if (givenMetrics != null) {
+            // the metrics were set up by the caller
+            metrics = givenMetrics;
+        } else if ((metricsFileName != null || jmx) && partition == 0) {
+            // the metrics of a partitioned simulation are the coordinator's
+            PrintStream metricsOut = metricsFileName != null ? new PrintStream(new BufferedOutputStream(new FileOutputStream(metricsFileName), OUTPUT_BUFFER_SIZE), false, "UTF-8") : null;
+            metrics = new SimulationMetrics(metricsOut, metricsFormat);
+            if (jmx) {
+                metrics.registerMBean();
+            }
+        } else {
+            metrics = null;
+        }
+
+        // look for convergence analysis flag
+        int analyseConvergenceIndex = configValues.indexOf("-analyseConvergence");
+        boolean analyseConvergence = analyseConvergenceIndex != -1 && Boolean.valueOf(configValues.get(analyseConvergenceIndex + 1));
+        if (analyseConvergence && partitions > 1) {
+            // the next hops of a routing loop may be simulated by other processes
+            throw new Exception("analyseConvergence cannot be combined with partitions.");
+        }
+
+        // look for subnets flags
+        int subnetsIndex = configValues.indexOf("-subnets");
+        int subnets = 0;
+        if (subnetsIndex != -1) {
+            subnets = Integer.valueOf(configValues.get(subnetsIndex + 1));
+            if (subnets <= 0 || subnets > numOfNodes) {
+                throw new Exception("subnets must be in the range [1, numOfNodes].");
+            }
+        }
+        int bordersIndex = configValues.indexOf("-borders");
+        String borders = bordersIndex != -1 ? configValues.get(bordersIndex + 1) : "auto";
+        if (subnets > 0 && (partitions > 1 || analyseConvergence)) {
+            // the routes to the prefixes are kept under destination ids the other processes and the analyser do not know
+            throw new Exception("subnets cannot be combined with partitions or analyseConvergence.");
+        }
+
+        // look for forwarding tables flag
+        int fibIndex = configValues.indexOf("-fib");
+        forwardingTables = fibIndex != -1 && Boolean.valueOf(configValues.get(fibIndex + 1));
+        if (forwardingTables && partitions > 1) {
+            throw new Exception("fib cannot be combined with partitions.");
+        }
+
+        // look for reachability flag
+        int reachabilityIndex = configValues.indexOf("-reachability");
+        int reachabilitySource = -1;
+        if (reachabilityIndex != -1) {
+            String reachabilityValue = configValues.get(reachabilityIndex + 1);
+            if (!reachabilityValue.equals("all")) {
+                reachabilitySource = Integer.valueOf(reachabilityValue);
+                if (reachabilitySource < 0 || reachabilitySource >= numOfNodes) {
+                    throw new Exception("reachability must be all or a node id in the range [0, numOfNodes).");
+                }
+            }
+            if (partitions > 1) {
+                // the routes would be followed through other processes
+                throw new Exception("reachability cannot be combined with partitions.");
+            }
+        }
+
+        // look for validation flag
+        int validateIndex = configValues.indexOf("-validate");
+        int validationSample = 0;
+        if (validateIndex != -1) {
+            String validateValue = configValues.get(validateIndex + 1);
+            validationSample = validateValue.equals("all") ? numOfNodes : Integer.valueOf(validateValue);
+            if (validationSample <= 0 || validationSample > numOfNodes) {
+                throw new Exception("validate must be all or a number of destinations in the range [1, numOfNodes].");
+            }
+            if (partitions > 1) {
+                // the routing tables are kept by other processes
+                throw new Exception("validate cannot be combined with partitions.");
+            }
+        }
+
+        // look for traffic flags
+        int trafficIndex = configValues.indexOf("-traffic");
+        String trafficValue = trafficIndex != -1 ? configValues.get(trafficIndex + 1) : null;
+        int packetsIndex = configValues.indexOf("-packets");
+        int packetsPerFlow = 1;
+        if (packetsIndex != -1) {
+            packetsPerFlow = Integer.valueOf(configValues.get(packetsIndex + 1));
+            if (packetsPerFlow <= 0) {
+                throw new Exception("packets must be in the range [1, inf).");
+            }
+        }
+        int ttlIndex = configValues.indexOf("-ttl");
+        int timeToLive = DEFAULT_TIME_TO_LIVE;
+        if (ttlIndex != -1) {
+            timeToLive = Integer.valueOf(configValues.get(ttlIndex + 1));
+            if (timeToLive <= 0) {
+                throw new Exception("ttl must be in the range [1, inf).");
+            }
+        }
+        if (trafficValue != null && partitions > 1) {
+            // the next hops are kept by other processes
+            throw new Exception("traffic cannot be combined with partitions.");
+        }
+
+        // look for generated topology flags
+        int topologyIndex = configValues.indexOf("-topology");
+        String generatedTopology = topologyIndex != -1 ? configValues.get(topologyIndex + 1) : null;
+        int degreeIndex = configValues.indexOf("-degree");
+        int degree = 4;
+        if (degreeIndex != -1) {
+            degree = Integer.valueOf(configValues.get(degreeIndex + 1));
+            if (degree <= 0) {
+                throw new Exception("degree must be in the range [1, inf).");
+            }
+        }
+        int maxLinkCostIndex = configValues.indexOf("-maxLinkCost");
+        int maxLinkCost = 1;
+        if (maxLinkCostIndex != -1) {
+            maxLinkCost = Integer.valueOf(configValues.get(maxLinkCostIndex + 1));
+            if (maxLinkCost <= 0) {
+                throw new Exception("maxLinkCost must be in the range [1, inf).");
+            }
+        }
+        int linkFailuresIndex = configValues.indexOf("-linkFailures");
+        int linkFailures = 0;
+        if (linkFailuresIndex != -1) {
+            linkFailures = Integer.valueOf(configValues.get(linkFailuresIndex + 1));
+            if (linkFailures < 0) {
+                throw new Exception("linkFailures must be in the range [0, inf).");
+            }
+        }
+        int seedIndex = configValues.indexOf("-seed");
+        long seed = seedIndex != -1 ? Long.valueOf(configValues.get(seedIndex + 1)) : 0L;
+        Random random = new Random(seed);
+
+        // read connections stored ready built
+        LinkTopology storedTopology = reader.readTopology();
+        if (storedTopology != null && storedTopology.getNumOfNodes() != numOfNodes) {
+            throw new Exception("The stored links are for " + storedTopology.getNumOfNodes() + " nodes but numOfNodes is " + numOfNodes + ".");
+        }
+
+        // generate connections
+        LinkTopology.Builder topologyBuilder = new LinkTopology.Builder(numOfNodes);
+        if (generatedTopology != null) {
+            if (storedTopology != null) {
+                // the generated links are added to the stored ones
+                storedTopology.copyLinksTo(topologyBuilder);
+            }
+            if (generatedTopology.equals("erdosRenyi")) {
+                TopologyGenerator.erdosRenyi(topologyBuilder, numOfNodes, degree, maxLinkCost, random);
+            } else if (generatedTopology.equals("barabasiAlbert")) {
+                TopologyGenerator.barabasiAlbert(topologyBuilder, numOfNodes, Math.max(1, degree / 2), maxLinkCost, random);
+            } else if (generatedTopology.equals("grid") || generatedTopology.equals("torus")) {
+                TopologyGenerator.grid(topologyBuilder, numOfNodes, generatedTopology.equals("torus"), maxLinkCost, random);
+            } else if (generatedTopology.equals("fatTree")) {
+                if (degree % 2 != 0 || TopologyGenerator.fatTreeNodes(degree) != numOfNodes) {
+                    throw new Exception("fatTree needs an even degree and numOfNodes = 5 * degree^2 / 4 + degree^3 / 4.");
+                }
+                TopologyGenerator.fatTree(topologyBuilder, degree, maxLinkCost, random);
+            } else {
+                throw new Exception("topology must be one of [erdosRenyi, barabasiAlbert, grid, torus, fatTree].");
+            }
+        }
+
+        // parse connections
+        int[] inputLineValues = new int[3];
+        while (readRecord(reader, inputLineValues, "links")) {
+            int fromNodeId = inputLineValues[0];
+            int toNodeId = inputLineValues[1];
+            int linkCost = inputLineValues[2];
             if (fromNodeId >= numOfNodes || toNodeId >= numOfNodes) {
-                throw new Exception("node with ID >= numOfNodes (" + numOfNodes + ") supplied in the links matrix");
+                throw new Exception("Line " + reader.getRecordLineNumber() + ": node with ID >= numOfNodes (" + numOfNodes + ") supplied in the links matrix");
             }
-            NetworkLink networkLink = links[fromNodeId][toNodeId];
-            networkLink.cost = linkCost;
-            NetworkNode fromNode = nodesMap.get(fromNodeId);
-            NetworkNode toNode = nodesMap.get(toNodeId);
-            fromNode.addNeighbour(toNode, networkLink);
-            toNode.addNeighbour(fromNode, networkLink);
+            topologyBuilder.addLink(fromNodeId, toNodeId, linkCost);
+        }
+        topology = storedTopology != null && generatedTopology == null ? storedTopology : topologyBuilder.build();
+
+        // split the network across processes
+        nodes = new NetworkNode[numOfNodes];
+        int[] partitionOf = null;
+        if (partitions > 1) {
+            // every process finds the same partitions
+            partitionOf = GraphPartitioner.partition(topology, partitions);
+            if (partition == 0) {
+                sink.message("Network split into " + partitions + " partitions, " + GraphPartitioner.edgeCut(topology, partitionOf) + " of " + topology.getNumOfLinks() + " links cut\n");
+                partitionExchange = PartitionExchange.coordinate(nodes, topology, partitionOf, partitions, fileName);
+            } else {
+                partitionExchange = PartitionExchange.join(nodes, topology, partitionOf, partitions, partition, coordinatorPort);
+            }
+        } else {
+            partitionExchange = null;
+        }
+
+        // group the nodes into subnets
+        if (subnets > 0) {
+            int[] subnetOf = AddressPlan.contiguousSubnets(topology, GraphPartitioner.partition(topology, subnets));
+            int contiguousSubnets = 0;
+            for (int subnet : subnetOf) {
+                contiguousSubnets = Math.max(contiguousSubnets, subnet + 1);
+            }
+            BitSet summarizing;
+            if (borders.equals("auto")) {
+                summarizing = AddressPlan.borderNodes(topology, subnetOf);
+            } else if (borders.equals("none")) {
+                summarizing = new BitSet(numOfNodes);
+            } else {
+                summarizing = new BitSet(numOfNodes);
+                for (String border : borders.split(",")) {
+                    int borderId = Integer.valueOf(border);
+                    if (borderId < 0 || borderId >= numOfNodes) {
+                        throw new Exception("borders must be auto, none or a comma separated list of node ids in the range [0, numOfNodes).");
+                    }
+                    summarizing.set(borderId);
+                }
+            }
+            addressPlan = new AddressPlan(subnetOf, contiguousSubnets, summarizing);
+            sink.message("Network split into " + contiguousSubnets + " subnets of /" + addressPlan.getPrefixLength() + " prefixes, "
+                    + addressPlan.getNumOfSummarizingNodes() + " border nodes summarise\n");
+        } else if (forwardingTables) {
+            // one subnet without summaries gives every node an address
+            addressPlan = new AddressPlan(new int[numOfNodes], 1, new BitSet(numOfNodes));
+        } else {
+            addressPlan = null;
         }
-        inputLinesIndex++; // move to next line
+
+        subnetsGiven = subnets > 0;
+
+        // instantiate nodes
+        for (int i = 0; i < numOfNodes; i++) {
+            if (partitionOf != null && partitionOf[i] != partition) {
+                // the routing table is kept by the process of the node's partition
+                nodes[i] = new RemoteNetworkNode(i, splitHorizon, nodes, topology, partitionExchange);
+                nodes[i].setPoisonReverse(poisonReverse);
+                continue;
+            }
+            RouteTable routeTable;
+            if (arrayRouteTables) {
+                routeTable = new ArrayRouteTable(i, this, infinityCost, addressPlan != null ? addressPlan.getNumOfDestinations() : numOfNodes);
+            } else {
+                routeTable = new HashRouteTable(i, this, infinityCost);
+            }
+            routeTable.setHoldDown(holdDown);
+            nodes[i] = new NetworkNode(i, routeTable, splitHorizon, nodes, topology, fullRefreshEvery);
+            nodes[i].setPoisonReverse(poisonReverse);
+            // quiescent nodes do not advertise so routes cannot time out; they are withdrawn instead
+            nodes[i].setExplicitWithdrawals(worklist || timed);
+            nodes[i].setTimedAging(timed);
+            nodes[i].setEventSink(sink);
+            nodes[i].setMetrics(metrics);
+            nodes[i].setAddressPlan(addressPlan);
+            if (forwardingTables) {
+                nodes[i].enableForwardingTable();
+            }
+        }
+        analyser = analyseConvergence ? new ConvergenceAnalyser(nodes, sink, infinityCost) : null;
+        if (analyser != null) {
+            for (NetworkNode node : nodes) {
+                node.setConvergenceAnalyser(analyser);
+            }
+        }
+        routingTableChanged = new boolean[numOfNodes];
+        allNodeIds = new int[numOfNodes];
+        for (int i = 0; i < numOfNodes; i++) {
+            allNodeIds[i] = i;
+        }
+        activeNodes.set(0, numOfNodes);
+        bestRouteResolver = new BestRouteResolver(nodes);
+        this.threads = threads;
+        if (reachabilityIndex == -1) {
+            reachabilitySources = null;
+        } else if (reachabilitySource == -1) {
+            reachabilitySources = allNodeIds;
+        } else {
+            reachabilitySources = new int[]{reachabilitySource};
+        }
+        if (validationSample == 0) {
+            validationDestinations = null;
+        } else if (validationSample == numOfNodes) {
+            validationDestinations = allNodeIds;
+        } else {
+            // a sample of the destinations, the same for the same seed
+            validationDestinations = sampleNodeIds(validationSample, new Random(seed));
+        }
+        if (trafficValue == null) {
+            trafficEngine = null;
+            trafficPool = null;
+        } else {
+            trafficEngine = createTrafficEngine(trafficValue, packetsPerFlow, timeToLive, seed);
+            trafficPool = new ForkJoinPool(threads);
+        }
+        parallelExchange = parallel ? new ParallelExchange(nodes, threads, sink) : null;
+        actorExchange = actors ? new ActorExchange(nodes, topology, threads, mailboxSize, sink) : null;
+        timedExchange = timed ? new TimedExchange(nodes, updateIntervalMillis, 1000L * updateJitter, 1000L * timeout, new Random(seed)) : null;
 
         // parse link changes
         scheduledEvents = new HashMap<Integer, ArrayList<ScheduledEvent>>();
-        for (; inputLinesIndex < inputLines.length; inputLinesIndex++) {
-            String inputLine = inputLines[inputLinesIndex];
-            if (inputLine.contains("##")) {
-                break;
+        inputLineValues = new int[4];
+        while (readRecord(reader, inputLineValues, "link changes")) {
+            int fromNodeId = inputLineValues[0];
+            int toNodeId = inputLineValues[1];
+            int changeAfterExchange = inputLineValues[2];
+            int newCost = inputLineValues[3];
+            if (fromNodeId >= numOfNodes || toNodeId >= numOfNodes) {
+                throw new Exception("Line " + reader.getRecordLineNumber() + ": node with ID >= numOfNodes (" + numOfNodes + ") used in the Link-Cost-Change scheduling.");
             }
-            String[] inputLineValues = inputLine.split("\\s+");
-            Integer fromNodeId = Integer.valueOf(inputLineValues[0]);
-            Integer toNodeId = Integer.valueOf(inputLineValues[1]);
-            Integer changeAfterExchange = Integer.valueOf(inputLineValues[2]);
-            Integer newCost = Integer.valueOf(inputLineValues[3]);
+            scheduleLinkCostChange(fromNodeId, toNodeId, changeAfterExchange, newCost);
+        }
+
+        // generate link failures
+        if (linkFailures > 0) {
+            TopologyGenerator.linkFailures(topology, linkFailures, maxExchanges, random, new TopologyGenerator.LinkChangeListener() {
+                @Override
+                public void onLinkChange(int node1Id, int node2Id, int afterExchange, int newCost) {
+                    scheduleLinkCostChange(node1Id, node2Id, afterExchange, newCost);
+                }
+            });
+        }
+
+        // parse show best route
+        inputLineValues = new int[3];
+        while (readRecord(reader, inputLineValues, "show best routes")) {
+            int fromNodeId = inputLineValues[0];
+            int toNodeId = inputLineValues[1];
+            int showAfterExchange = inputLineValues[2];
             if (fromNodeId >= numOfNodes || toNodeId >= numOfNodes) {
-                throw new Exception("node with ID >= numOfNodes (" + numOfNodes + ") used in the Link-Cost-Change scheduling.");
+                throw new Exception("Line " + reader.getRecordLineNumber() + ": node with ID >= numOfNodes (" + numOfNodes + ") used in the Show-Best-Route scheduling.");
+            }
+            scheduleShowBestRoute(fromNodeId, toNodeId, showAfterExchange);
+        }
+
+        // parse trace routing tables
+        while (readRecord(reader, inputLineValues, "trace routing tables")) {
+            int nodeId = inputLineValues[0];
+            int exchangeStartIndex = inputLineValues[1];
+            int exchangeEndIndex = inputLineValues[2];
+            if (nodeId >= numOfNodes) {
+                throw new Exception("Line " + reader.getRecordLineNumber() + ": node with ID >= numOfNodes (" + numOfNodes + ") used in the Trace-Route-Table scheduling.");
+            }
+            scheduleTraceRouteTable(nodeId, exchangeStartIndex, exchangeEndIndex);
+        }
+        reader.close();
+
+        // continue from a saved state
+        if (restoreFileName != null) {
+            restoreCheckpoint(restoreFileName);
+        }
+    }
+
+    /**
+     * Helper method for building the traffic engine of the -traffic flag
+     *
+     * @param trafficValue   all for a flow between every two nodes, a number of random flows or a file of flows
+     * @param packetsPerFlow the packets of every flow of all or the random flows
+     * @param timeToLive     the number of hops after which a packet is taken to be looping
+     * @param seed           the seed of the random flows
+     * @return the traffic engine
+     * @throws Exception if the flows are invalid or cannot be read
+     */
+    private TrafficEngine createTrafficEngine(String trafficValue, int packetsPerFlow, int timeToLive, long seed) throws Exception {
+        int[] sources;
+        int[] destinations;
+        int[] packets;
+        if (trafficValue.equals("all")) {
+            long numOfFlows = (long) numOfNodes * (numOfNodes - 1);
+            if (numOfFlows == 0 || numOfFlows > Integer.MAX_VALUE - 8) {
+                throw new Exception("traffic all needs between 2 and " + (int) Math.sqrt(Integer.MAX_VALUE) + " nodes.");
+            }
+            sources = new int[(int) numOfFlows];
+            destinations = new int[(int) numOfFlows];
+            int flow = 0;
+            for (int sourceId = 0; sourceId < numOfNodes; sourceId++) {
+                for (int destinationId = 0; destinationId < numOfNodes; destinationId++) {
+                    if (sourceId != destinationId) {
+                        sources[flow] = sourceId;
+                        destinations[flow++] = destinationId;
+                    }
+                }
             }
-            if (changeAfterExchange >= maxExchanges) {
-                System.out.println("WARNING! A link cost change has been scheduled to happen after the simulation has finished. ChangeAfterExchange index > maxExchanges");
+            packets = new int[(int) numOfFlows];
+            Arrays.fill(packets, packetsPerFlow);
+        } else if (trafficValue.matches("[0-9]+")) {
+            int numOfFlows = Integer.valueOf(trafficValue);
+            if (numOfFlows <= 0 || numOfNodes < 2) {
+                throw new Exception("traffic must ask for at least 1 flow between 2 nodes.");
             }
-            if (newCost < -1) {
-                System.out.println("WARNING! A link cost change has been scheduled with unappropriate new cost value (<-1). Changing to -1.");
-                newCost = RouteTable.FAILED_LINK_COST;
+            // random flows, the same for the same seed
+            Random random = new Random(seed);
+            sources = new int[numOfFlows];
+            destinations = new int[numOfFlows];
+            for (int flow = 0; flow < numOfFlows; flow++) {
+                sources[flow] = random.nextInt(numOfNodes);
+                destinations[flow] = (sources[flow] + 1 + random.nextInt(numOfNodes - 1)) % numOfNodes;
             }
-            NetworkLink networkLink = links[fromNodeId][toNodeId];
-            LinkCostChangeEvent event = new LinkCostChangeEvent(changeAfterExchange, networkLink, newCost);
-            ArrayList<ScheduledEvent> scheduledNetworkEvents = scheduledEvents.get(changeAfterExchange);
-            if (scheduledNetworkEvents == null) {
-                scheduledNetworkEvents = new ArrayList<ScheduledEvent>();
-                scheduledEvents.put(changeAfterExchange, scheduledNetworkEvents);
+            packets = new int[numOfFlows];
+            Arrays.fill(packets, packetsPerFlow);
+        } else {
+            // one flow per line: source, destination and packets
+            sources = new int[16];
+            destinations = new int[16];
+            packets = new int[16];
+            int numOfFlows = 0;
+            BufferedReader flowReader = new BufferedReader(new FileReader(trafficValue));
+            try {
+                int lineNumber = 0;
+                String line;
+                while ((line = flowReader.readLine()) != null) {
+                    lineNumber++;
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    String[] values = line.split("\\s+");
+                    if (values.length != 3) {
+                        throw new Exception(trafficValue + " line " + lineNumber + ": expected source, destination and packets.");
+                    }
+                    int sourceId = Integer.valueOf(values[0]);
+                    int destinationId = Integer.valueOf(values[1]);
+                    int flowPackets = Integer.valueOf(values[2]);
+                    if (sourceId < 0 || sourceId >= numOfNodes || destinationId < 0 || destinationId >= numOfNodes || sourceId == destinationId) {
+                        throw new Exception(trafficValue + " line " + lineNumber + ": a flow must be between two different nodes in the range [0, numOfNodes).");
+                    }
+                    if (flowPackets <= 0) {
+                        throw new Exception(trafficValue + " line " + lineNumber + ": packets must be in the range [1, inf).");
+                    }
+                    if (numOfFlows == sources.length) {
+                        sources = Arrays.copyOf(sources, 2 * numOfFlows);
+                        destinations = Arrays.copyOf(destinations, 2 * numOfFlows);
+                        packets = Arrays.copyOf(packets, 2 * numOfFlows);
+                    }
+                    sources[numOfFlows] = sourceId;
+                    destinations[numOfFlows] = destinationId;
+                    packets[numOfFlows++] = flowPackets;
+                }
+            } finally {
+                flowReader.close();
+            }
+            if (numOfFlows == 0) {
+                throw new Exception(trafficValue + " holds no flows.");
             }
-            scheduledNetworkEvents.add(event);
+            sources = Arrays.copyOf(sources, numOfFlows);
+            destinations = Arrays.copyOf(destinations, numOfFlows);
+            packets = Arrays.copyOf(packets, numOfFlows);
         }
-        inputLinesIndex++;
+        return new TrafficEngine(nodes, topology, infinityCost, timeToLive, sources, destinations, packets, threads);
+    }
 
-        // parse show best route
-        for (; inputLinesIndex < inputLines.length; inputLinesIndex++) {
-            String inputLine = inputLines[inputLinesIndex];
-            if (inputLine.contains("##")) {
-                break;
+    /**
+     * Helper method for reading a record of a section of the config
+     *
+     * @param reader  reader of the config
+     * @param values  array the values are stored in, its length is the number of values the record must have
+     * @param section the name of the section for error messages
+     * @return false at the end of the section
+     * @throws Exception if the record is malformed
+     */
+    private static boolean readRecord(ScenarioSource reader, int[] values, String section) throws Exception {
+        int count = reader.readRecord(values);
+        if (count == -1) {
+            return false;
+        }
+        if (count < values.length) {
+            throw new Exception("Line " + reader.getRecordLineNumber() + ": expected " + values.length + " values in the " + section + " section but found " + count + ".");
+        }
+        return true;
+    }
+
+    /**
+     * Schedules a change of the cost of a link
+     *
+     * @param fromNodeId          one end of the link
+     * @param toNodeId            the other end of the link
+     * @param changeAfterExchange after which exchange the cost changes
+     * @param newCost             the new cost of the link
+     */
+    public void scheduleLinkCostChange(int fromNodeId, int toNodeId, int changeAfterExchange, int newCost) {
+        if (changeAfterExchange >= maxExchanges) {
+            sink.message("WARNING! A link cost change has been scheduled to happen after the simulation has finished. ChangeAfterExchange index > maxExchanges\n");
+        }
+        if (newCost < -1) {
+            sink.message("WARNING! A link cost change has been scheduled with unappropriate new cost value (<-1). Changing to -1.\n");
+            newCost = RouteTable.FAILED_LINK_COST;
+        }
+        if (topology.findSlot(fromNodeId, toNodeId) == -1) {
+            sink.message("WARNING! A link cost change has been scheduled for nodes " + fromNodeId + " and " + toNodeId + " which are not linked. Ignoring it.\n");
+            return;
+        }
+        LinkCostChangeEvent event = new LinkCostChangeEvent(changeAfterExchange, topology, fromNodeId, toNodeId, newCost, this, sink);
+        ArrayList<ScheduledEvent> scheduledNetworkEvents = scheduledEvents.get(changeAfterExchange);
+        if (scheduledNetworkEvents == null) {
+            scheduledNetworkEvents = new ArrayList<ScheduledEvent>();
+            scheduledEvents.put(changeAfterExchange, scheduledNetworkEvents);
+        }
+        scheduledNetworkEvents.add(event);
+    }
+
+    /**
+     * Schedules printing the best route between two nodes
+     *
+     * @param fromNodeId        the start of the route
+     * @param toNodeId          the end of the route
+     * @param showAfterExchange after which exchange the route is printed
+     */
+    public void scheduleShowBestRoute(int fromNodeId, int toNodeId, int showAfterExchange) {
+        if (showAfterExchange >= maxExchanges) {
+            sink.message("WARNING! A Show-Best-Route has been scheduled to happen after the simulation has finished. ChangeAfterExchange index > maxExchanges\n");
+        }
+        if (partitionExchange != null && !partitionExchange.isCoordinator()) {
+            // the coordinator prints the routes
+            return;
+        }
+        ShowBestRouteEvent event = new ShowBestRouteEvent(showAfterExchange, nodes[fromNodeId], nodes[toNodeId], this, sink);
+        addScheduledEvent(showAfterExchange, event);
+    }
+
+    /**
+     * Schedules printing the routing table of a node after every exchange of a range
+     *
+     * @param nodeId             the node id
+     * @param exchangeStartIndex the first exchange after which the table is printed
+     * @param exchangeEndIndex   the exchange after the last one after which the table is printed
+     */
+    public void scheduleTraceRouteTable(int nodeId, int exchangeStartIndex, int exchangeEndIndex) {
+        if (exchangeStartIndex >= maxExchanges || exchangeEndIndex >= maxExchanges) {
+            sink.message("WARNING! A Trace-Route-Table has been scheduled to happen after the simulation has finished. ExchangeStartIndex || ExchangeEndIndex > maxExchanges\n");
+        }
+        if (partitionExchange != null && !partitionExchange.isCoordinator()) {
+            // the coordinator prints the routing tables
+            return;
+        }
+        traceSchedule.add(new TraceRouteTableEvent(nodes[nodeId], exchangeStartIndex, exchangeEndIndex, sink));
+    }
+
+    /**
+     * Helper method for adding an event to the events of an exchange
+     *
+     * @param afterExchange the exchange index
+     * @param event         the event
+     */
+    private void addScheduledEvent(int afterExchange, ScheduledEvent event) {
+        ArrayList<ScheduledEvent> scheduledNetworkEvents = scheduledEvents.get(afterExchange);
+        if (scheduledNetworkEvents == null) {
+            scheduledNetworkEvents = new ArrayList<ScheduledEvent>();
+            scheduledEvents.put(afterExchange, scheduledNetworkEvents);
+        }
+        scheduledNetworkEvents.add(event);
+    }
+
+    /**
+     * Saves the state of the simulation: the routing tables with their forget counters, the link costs, the exchange
+     * index and the scheduled events which have not been executed yet. The file is written as little endian ints:
+     * <pre>
+     * magic, version (written by {@link CheckpointWriter#create(String)})
+     * numOfNodes, numOfSlots, fingerprint of the links (2 ints), infinityCost, number of subnets (0 without subnets)
+     * nextExchange, nextEventsExchange, isStable, splitHorizon
+     * costs[numOfSlots]
+     * number of active nodes, active node ids
+     * the state of every node, see {@link NetworkNode#writeCheckpoint(CheckpointWriter)}
+     * number of link changes, (node1, node2, afterExchange, newCost) per link change
+     * number of show best routes, (fromNode, toNode, afterExchange) per show best route
+     * number of trace routing tables, (node, startExchange, endExchange) per trace routing table
+     * </pre>
+     *
+     * @param fileName the checkpoint file name
+     * @throws Exception if the file cannot be written
+     */
+    public void saveCheckpoint(String fileName) throws Exception {
+        if (timedExchange != null) {
+            throw new Exception("Checkpoints cannot be taken when the exchange is driven by timers.");
+        }
+        int numOfSlots = topology.endSlot(numOfNodes - 1);
+        try (CheckpointWriter out = CheckpointWriter.create(fileName)) {
+            out.putInt(numOfNodes);
+            out.putInt(numOfSlots);
+            out.putLong(topology.fingerprint());
+            out.putInt(infinityCost);
+            out.putInt(addressPlan != null ? addressPlan.getNumOfSubnets() : 0);
+            out.putInt(nextExchange);
+            out.putInt(nextEventsExchange);
+            out.putInt(isStable ? 1 : 0);
+            out.putInt(splitHorizon ? 1 : 0);
+            for (int slot = 0; slot < numOfSlots; slot++) {
+                out.putInt(topology.getCost(slot));
             }
-            String[] inputLineValues = inputLine.split("\\s+");
-            Integer fromNodeId = Integer.valueOf(inputLineValues[0]);
-            Integer toNodeId = Integer.valueOf(inputLineValues[1]);
-            Integer showAfterExchange = Integer.valueOf(inputLineValues[2]);
-            if (fromNodeId >= numOfNodes || toNodeId >= numOfNodes) {
-                throw new Exception("node with ID >= numOfNodes (" + numOfNodes + ") used in the Show-Best-Route scheduling.");
+            out.putInt(activeNodes.cardinality());
+            for (int nodeId = activeNodes.nextSetBit(0); nodeId >= 0; nodeId = activeNodes.nextSetBit(nodeId + 1)) {
+                out.putInt(nodeId);
+            }
+            for (NetworkNode node : nodes) {
+                node.writeCheckpoint(out);
+            }
+
+            // the events which have not been executed, every trace routing table once
+            ArrayList<LinkCostChangeEvent> linkChanges = new ArrayList<LinkCostChangeEvent>();
+            ArrayList<ShowBestRouteEvent> showBestRoutes = new ArrayList<ShowBestRouteEvent>();
+            ArrayList<Integer> sortedKeys = new ArrayList<Integer>(scheduledEvents.keySet());
+            Collections.sort(sortedKeys);
+            for (Integer key : sortedKeys) {
+                if (key < nextEventsExchange) {
+                    continue;
+                }
+                for (ScheduledEvent event : scheduledEvents.get(key)) {
+                    if (event instanceof LinkCostChangeEvent) {
+                        linkChanges.add((LinkCostChangeEvent) event);
+                    } else if (event instanceof ShowBestRouteEvent) {
+                        showBestRoutes.add((ShowBestRouteEvent) event);
+                    }
+                }
+            }
+            out.putInt(linkChanges.size());
+            for (LinkCostChangeEvent event : linkChanges) {
+                out.putInt(event.getNode1Id());
+                out.putInt(event.getNode2Id());
+                out.putInt(event.getAfterExchange());
+                out.putInt(event.getNewCost());
             }
-            if (showAfterExchange >= maxExchanges) {
-                System.out.println("WARNING! A Show-Best-Route has been scheduled to happen after the simulation has finished. ChangeAfterExchange index > maxExchanges");
+            out.putInt(showBestRoutes.size());
+            for (ShowBestRouteEvent event : showBestRoutes) {
+                out.putInt(event.getFromNode().getNodeId());
+                out.putInt(event.getToNode().getNodeId());
+                out.putInt(event.getAfterExchange());
             }
-            ShowBestRouteEvent event = new ShowBestRouteEvent(showAfterExchange, nodesMap.get(fromNodeId), nodesMap.get(toNodeId), this);
-            ArrayList<ScheduledEvent> scheduledNetworkEvents = scheduledEvents.get(showAfterExchange);
-            if (scheduledNetworkEvents == null) {
-                scheduledNetworkEvents = new ArrayList<ScheduledEvent>();
-                scheduledEvents.put(showAfterExchange, scheduledNetworkEvents);
+            ArrayList<TraceRouteTableEvent> traces = new ArrayList<TraceRouteTableEvent>();
+            for (TraceRouteTableEvent event : traceSchedule.getTraces()) {
+                if (event.getExchangeEndIndex() > nextEventsExchange) {
+                    traces.add(event);
+                }
+            }
+            out.putInt(traces.size());
+            for (TraceRouteTableEvent event : traces) {
+                out.putInt(event.getNode().getNodeId());
+                out.putInt(Math.max(event.getAfterExchange(), nextEventsExchange));
+                out.putInt(event.getExchangeEndIndex());
             }
-            scheduledNetworkEvents.add(event);
         }
-        inputLinesIndex++;
+        sink.message("Checkpoint saved to " + fileName + " before exchange " + nextExchange + "\n");
+    }
 
-        // parse trace routing tables
-        for (; inputLinesIndex < inputLines.length; inputLinesIndex++) {
-            String inputLine = inputLines[inputLinesIndex];
-            if (inputLine.contains("##")) {
-                break;
+    /**
+     * Restores the state saved by {@link #saveCheckpoint(String)}. The network must have the same links, the link costs
+     * may differ. If the checkpoint holds pending events, they are the events of the scenario it was saved from and
+     * replace the events scheduled by this simulation, so restoring with the same scenario runs every event once.
+     * Otherwise the events of this simulation are kept. The simulation continues with the exchange after the last
+     * saved one.
+     *
+     * @param fileName the checkpoint file name
+     * @throws Exception if the file cannot be read or was saved for another network
+     */
+    public void restoreCheckpoint(String fileName) throws Exception {
+        if (timedExchange != null) {
+            throw new Exception("Checkpoints cannot be restored when the exchange is driven by timers.");
+        }
+        int numOfSlots = topology.endSlot(numOfNodes - 1);
+        try (CheckpointReader in = CheckpointReader.open(fileName)) {
+            if (in.getInt() != numOfNodes || in.getInt() != numOfSlots || in.getLong() != topology.fingerprint()) {
+                throw new Exception("The checkpoint " + fileName + " was saved for a network with other links.");
             }
-            String[] inputLineValues = inputLine.split("\\s+");
-            Integer nodeId = Integer.valueOf(inputLineValues[0]);
-            Integer exchangeStartIndex = Integer.valueOf(inputLineValues[1]);
-            Integer exchangeEndIndex = Integer.valueOf(inputLineValues[2]);
-            if (nodeId >= numOfNodes) {
-                throw new Exception("node with ID >= numOfNodes (" + numOfNodes + ") used in the Trace-Route-Table scheduling.");
+            if (in.getInt() != infinityCost) {
+                throw new Exception("The checkpoint " + fileName + " was saved with another infinity cost.");
             }
-            if (exchangeStartIndex >= maxExchanges || exchangeEndIndex >= maxExchanges) {
-                System.out.println("WARNING! A Trace-Route-Table has been scheduled to happen after the simulation has finished. ExchangeStartIndex || ExchangeEndIndex > maxExchanges");
+            if (in.getInt() != (addressPlan != null ? addressPlan.getNumOfSubnets() : 0)) {
+                throw new Exception("The checkpoint " + fileName + " was saved with other subnets.");
             }
-            TraceRouteTableEvent event = new TraceRouteTableEvent(nodesMap.get(nodeId), exchangeStartIndex, exchangeEndIndex);
-            for (int i = exchangeStartIndex; i < exchangeEndIndex; i++) {
-                ArrayList<ScheduledEvent> scheduledNetworkEvents = scheduledEvents.get(i);
-                if (scheduledNetworkEvents == null) {
-                    scheduledNetworkEvents = new ArrayList<ScheduledEvent>();
-                    scheduledEvents.put(i, scheduledNetworkEvents);
-                }
-                scheduledNetworkEvents.add(event);
+            nextExchange = in.getInt();
+            nextEventsExchange = in.getInt();
+            firstExchange = nextExchange;
+            isStable = in.getInt() != 0;
+            splitHorizon = in.getInt() != 0;
+            int[] costs = new int[numOfSlots];
+            in.getInts(costs, 0, numOfSlots);
+            for (int slot = 0; slot < numOfSlots; slot++) {
+                topology.setCost(slot, costs[slot]);
+            }
+            int[] active = new int[in.getInt()];
+            in.getInts(active, 0, active.length);
+            activeNodes.clear();
+            for (int nodeId : active) {
+                activeNodes.set(nodeId);
+            }
+            for (NetworkNode node : nodes) {
+                node.setSplitHorizon(splitHorizon);
+                node.readCheckpoint(in);
+            }
+
+            int[] linkChanges = new int[4 * in.getInt()];
+            in.getInts(linkChanges, 0, linkChanges.length);
+            int[] showBestRoutes = new int[3 * in.getInt()];
+            in.getInts(showBestRoutes, 0, showBestRoutes.length);
+            int[] traces = new int[3 * in.getInt()];
+            in.getInts(traces, 0, traces.length);
+            if (linkChanges.length + showBestRoutes.length + traces.length > 0) {
+                // the scenario the checkpoint was saved from scheduled these, the earlier ones have run already
+                scheduledEvents.clear();
+                traceSchedule.clear();
+            }
+            for (int i = 0; i < linkChanges.length; i += 4) {
+                scheduleLinkCostChange(linkChanges[i], linkChanges[i + 1], linkChanges[i + 2], linkChanges[i + 3]);
+            }
+            for (int i = 0; i < showBestRoutes.length; i += 3) {
+                scheduleShowBestRoute(showBestRoutes[i], showBestRoutes[i + 1], showBestRoutes[i + 2]);
+            }
+            for (int i = 0; i < traces.length; i += 3) {
+                scheduleTraceRouteTable(traces[i], traces[i + 1], traces[i + 2]);
             }
         }
+    }
+
+    /**
+     * Getter for a node
+     *
+     * @param nodeId the node id
+     * @return the node
+     */
+    public NetworkNode getNode(int nodeId) {
+        return nodes[nodeId];
+    }
 
+    public int getNumOfNodes() {
+        return numOfNodes;
+    }
 
-        startSimulation();
+    public LinkTopology getTopology() {
+        return topology;
+    }
+
+    /**
+     * @return the index of the next exchange to be simulated
+     */
+    public int getNextExchange() {
+        return nextExchange;
+    }
+
+    /**
+     * @return true if no routing table has changed during the previous exchange
+     */
+    public boolean isStable() {
+        return isStable;
+    }
+
+    /**
+     * Forwards the packets of the traffic flows once along the current routes
+     *
+     * @return the counts of the forwarded packets or null if the simulation has no traffic
+     */
+    public TrafficEngine.Traffic forwardTraffic() {
+        return trafficEngine != null ? trafficEngine.forward(trafficPool) : null;
     }
 
 
@@ -453,28 +1884,33 @@ public class Simulator implements RouteTable.NetworkNodeRouteTableListener, Show
      *
      * @param fromNode from node
      * @param toNode   to node
-     * @param currPath current path
-     * @return the path between the two nodes
+     * @return the route between the two nodes
      */
-    public ArrayList<NetworkNode> findBestRoute(NetworkNode fromNode, NetworkNode toNode, ArrayList<NetworkNode> currPath) {
-        if (fromNode == null || toNode == null || fromNode.getNodeId().equals(toNode.getNodeId())) {
-            return null;
-        } else {
-            Integer nextNodeInPathId = fromNode.getNextHopToDest(toNode);
-            if (nextNodeInPathId != null) {
-                NetworkNode nextNodeInPath = nodesMap.get(nextNodeInPathId);
-                if (currPath.contains(nextNodeInPath)) {
-                    System.out.println("There is a cycle in the routes meaning the end node (" + toNode.getNodeId() + ") has become unreachable!");
-                    return currPath;
-                } else {
-                    currPath.add(nextNodeInPath);
-                    findBestRoute(nextNodeInPath, toNode, currPath);
-                    return currPath;
-                }
-            } else {
-                currPath.add(null);
-                return currPath;
-            }
-        }
+    public BestRoute findBestRoute(NetworkNode fromNode, NetworkNode toNode) {
+        return bestRouteResolver.resolve(fromNode.getNodeId(), toNode.getNodeId());
+    }
+
+    /**
+     * Follows the routes from the {@link #reachabilitySources} to all other nodes in parallel and prints how many
+     * reach their destinations
+     *
+     * @param pool the pool the check runs on
+     */
+    private void checkReachability(ForkJoinPool pool) {
+        BestRouteResolver.Reachability reachability = bestRouteResolver.checkReachability(reachabilitySources, pool);
+        String sources = reachabilitySources.length == numOfNodes ? "all nodes" : "node " + reachabilitySources[0];
+        sink.message("Reachability from " + sources + ": " + reachability + "\n\n");
+    }
+
+    /**
+     * Compares the routes towards the {@link #validationDestinations} with the shortest paths of the current link
+     * costs in parallel and prints the mismatches
+     *
+     * @param pool the pool the check runs on
+     */
+    private void validateRoutes(ForkJoinPool pool) {
+        ShortestPathOracle oracle = new ShortestPathOracle(nodes, topology, infinityCost);
+        ShortestPathOracle.Validation validation = oracle.validate(validationDestinations, pool);
+        sink.message("Validation against the shortest paths " + (isStable ? "after stability" : "before stability") + ": " + validation + "\n");
     }
 }
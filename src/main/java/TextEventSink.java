@@ -0,0 +1,131 @@
+import java.io.PrintStream;
+
+/**
+ * Sink which prints the simulation output as text on the calling thread.
+ */
+public class TextEventSink implements SimulationEventSink {
+
+    /**
+     * The stream the output is printed to
+     */
+    private final PrintStream out;
+
+    /**
+     * The most detailed output which is printed
+     */
+    private final Verbosity verbosity;
+
+    /**
+     * Buffer the lines are built in
+     */
+    private final StringBuilder line = new StringBuilder(128);
+
+    /**
+     * Constructor
+     *
+     * @param out       {@link #out}
+     * @param verbosity {@link #verbosity}
+     */
+    public TextEventSink(PrintStream out, Verbosity verbosity) {
+        this.out = out;
+        this.verbosity = verbosity;
+    }
+
+    @Override
+    public Verbosity getVerbosity() {
+        return verbosity;
+    }
+
+    @Override
+    public void routeLogged(int nodeId, int destinationId, int cost, int nextHop) {
+        if (verbosity == Verbosity.ROUTES) {
+            line.setLength(0);
+            line.append("Node ").append(nodeId).append(" logging ");
+            appendEntry(destinationId, cost, nextHop);
+            println();
+        }
+    }
+
+    @Override
+    public void routeDropped(int nodeId, int destinationId, int cost, int nextHop, DropReason reason) {
+        if (verbosity == Verbosity.ROUTES) {
+            line.setLength(0);
+            line.append("Node ").append(nodeId);
+            switch (reason) {
+                case NEIGHBOUR_REMOVED:
+                    line.append(" will remove entry because it came from neightbor ").append(nextHop).append(" : ");
+                    appendEntry(destinationId, cost, nextHop);
+                    break;
+                case TIMEOUT:
+                    line.append(" removing timeout entry: ");
+                    appendEntry(destinationId, cost, nextHop);
+                    break;
+                case INFINITY:
+                    line.append(" dropping route for dest (").append(destinationId).append(") because infinity (").append(cost).append(") was reached.");
+                    break;
+                case WITHDRAWN:
+                    line.append(" withdrawing route for dest (").append(destinationId).append(") because its next hop no longer has one.");
+                    break;
+            }
+            println();
+        }
+    }
+
+    @Override
+    public void neighbourRemoved(int nodeId, int neighbourId) {
+        if (verbosity == Verbosity.ROUTES) {
+            line.setLength(0);
+            line.append("Node ").append(nodeId).append(" remove neighbour ").append(neighbourId);
+            println();
+        }
+    }
+
+    @Override
+    public void roundFinished(int round, int changedNodes) {
+        if (verbosity != Verbosity.QUIET) {
+            out.print("========================= End round " + round + " ==========================\n\n\n");
+        }
+    }
+
+    @Override
+    public void message(String text) {
+        if (verbosity != Verbosity.QUIET) {
+            out.print(text);
+        }
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        out.flush();
+    }
+
+    /**
+     * Helper method for appending a route in the same form as {@link HashRouteTable.RouteTableEntry#toString()}
+     *
+     * @param destinationId the destination node id
+     * @param cost          the cost of the route
+     * @param nextHop       the next hop of the route
+     */
+    private void appendEntry(int destinationId, int cost, int nextHop) {
+        line.append("RouteEntry{ dest: ").append(destinationId).append(", cost: ").append(cost).append(", next:");
+        if (nextHop == RouteTable.NO_NEXT_HOP) {
+            line.append("null");
+        } else {
+            line.append(nextHop);
+        }
+        line.append('}');
+    }
+
+    /**
+     * Helper method for printing the line built in {@link #line}
+     */
+    private void println() {
+        line.append('\n');
+        out.append(line);
+    }
+}
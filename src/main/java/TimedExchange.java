@@ -0,0 +1,133 @@
+import java.util.Random;
+
+/**
+ * Network exchange driven by RIP timers over simulated time instead of lock-step rounds.
+ * <p>
+ * Every node has an update timer which sends its routes to its neighbours every update interval, offset by a random
+ * jitter each time it is set so the nodes drift apart as real routers do. Every node also has an aging timer which
+ * reduces the forget counters of its routes {@link RouteTable#FORGET_AFTER_DEFAULT} times per timeout, so a route which
+ * is not advertised again times out between three quarters of the timeout and the timeout. The timers are kept in an
+ * {@link EventQueue EventQueue} and fire one at a time in time order.
+ */
+public class TimedExchange {
+
+    /**
+     * Event kind of the update timer
+     */
+    private static final int UPDATE = 0;
+
+    /**
+     * Event kind of the aging timer
+     */
+    private static final int AGE = 1;
+
+    /**
+     * The nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * The pending timers
+     */
+    private final EventQueue queue;
+
+    /**
+     * Time between two updates of a node before the jitter is added, in milliseconds
+     */
+    private final long updateInterval;
+
+    /**
+     * Largest offset added to or taken from the update interval, in milliseconds
+     */
+    private final long updateJitter;
+
+    /**
+     * Time between two agings of the routes of a node, in milliseconds
+     */
+    private final long agingInterval;
+
+    /**
+     * Source of the jitter
+     */
+    private final Random random;
+
+    /**
+     * The current simulated time in milliseconds
+     */
+    private long now;
+
+    /**
+     * Number of timers which have fired
+     */
+    private long firedTimers;
+
+    /**
+     * Constructor. Starts the timers of every node at a random time within the first update interval.
+     *
+     * @param nodes          {@link #nodes}
+     * @param updateInterval {@link #updateInterval}
+     * @param updateJitter   {@link #updateJitter}
+     * @param timeout        time after which a route which is not advertised again times out, in milliseconds
+     * @param random         {@link #random}
+     */
+    public TimedExchange(NetworkNode[] nodes, long updateInterval, long updateJitter, long timeout, Random random) {
+        this.nodes = nodes;
+        this.queue = new EventQueue(2 * nodes.length);
+        this.updateInterval = updateInterval;
+        this.updateJitter = updateJitter;
+        this.agingInterval = Math.max(1, timeout / RouteTable.FORGET_AFTER_DEFAULT);
+        this.random = random;
+        for (int nodeId = 0; nodeId < nodes.length; nodeId++) {
+            long start = (long) (random.nextDouble() * updateInterval);
+            queue.schedule(start, UPDATE, nodeId);
+            queue.schedule(start + agingInterval, AGE, nodeId);
+        }
+    }
+
+    /**
+     * Fires the timers which are due before a point in simulated time
+     *
+     * @param endTime the simulated time to advance to, in milliseconds
+     */
+    public void simulateUntil(long endTime) {
+        while (!queue.isEmpty() && queue.nextTime() < endTime) {
+            now = queue.nextTime();
+            int kind = queue.nextKind();
+            int nodeId = queue.nextTarget();
+            queue.removeNext();
+            firedTimers++;
+            if (kind == UPDATE) {
+                nodes[nodeId].sendCostsToNeighbours();
+                queue.schedule(now + nextUpdateDelay(), UPDATE, nodeId);
+            } else {
+                nodes[nodeId].ageRoutes();
+                queue.schedule(now + agingInterval, AGE, nodeId);
+            }
+        }
+        now = Math.max(now, endTime);
+    }
+
+    /**
+     * @return the current simulated time in milliseconds
+     */
+    public long getTime() {
+        return now;
+    }
+
+    /**
+     * @return the number of timers which have fired
+     */
+    public long getFiredTimers() {
+        return firedTimers;
+    }
+
+    /**
+     * Helper method for drawing the time until the next update of a node
+     */
+    private long nextUpdateDelay() {
+        if (updateJitter == 0) {
+            return updateInterval;
+        }
+        return updateInterval - updateJitter + (long) (random.nextDouble() * (2 * updateJitter + 1));
+    }
+}
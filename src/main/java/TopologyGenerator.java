@@ -0,0 +1,243 @@
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * Class which generates synthetic networks straight into a {@link LinkTopology.Builder LinkTopology.Builder}.
+ * <p>
+ * No text is produced and every generator runs in time and memory linear in the number of links, so networks with
+ * millions of nodes can be simulated without input files. All randomness comes from the given {@link Random}, so the
+ * same seed always gives the same network.
+ */
+public final class TopologyGenerator {
+
+    private TopologyGenerator() {
+    }
+
+    /**
+     * Interface for the receivers of generated link changes.
+     */
+    public interface LinkChangeListener {
+        void onLinkChange(int node1Id, int node2Id, int afterExchange, int newCost);
+    }
+
+    /**
+     * Generates an Erdos-Renyi G(n, p) random graph with p chosen for the given average degree.
+     * The candidate pairs are skipped over geometrically (Batagelj and Brandes) so the time is linear in the links.
+     *
+     * @param builder       the builder the links are added to
+     * @param numOfNodes    number of nodes
+     * @param averageDegree expected number of neighbours per node
+     * @param maxLinkCost   link costs are drawn from [1, maxLinkCost]
+     * @param random        source of randomness
+     */
+    public static void erdosRenyi(LinkTopology.Builder builder, int numOfNodes, double averageDegree, int maxLinkCost, Random random) {
+        if (numOfNodes < 2 || averageDegree <= 0) {
+            return;
+        }
+        double p = Math.min(1.0, averageDegree / (numOfNodes - 1));
+        if (p == 1.0) {
+            for (int v = 1; v < numOfNodes; v++) {
+                for (int w = 0; w < v; w++) {
+                    builder.addLink(w, v, linkCost(maxLinkCost, random));
+                }
+            }
+            return;
+        }
+
+        // walk the pairs (w, v) with w < v in order, jumping over the pairs which are not linked
+        double logOneMinusP = Math.log(1.0 - p);
+        int v = 1;
+        long w = -1;
+        while (v < numOfNodes) {
+            w += 1 + (long) Math.floor(Math.log(1.0 - random.nextDouble()) / logOneMinusP);
+            while (w >= v && v < numOfNodes) {
+                w -= v;
+                v++;
+            }
+            if (v < numOfNodes) {
+                builder.addLink((int) w, v, linkCost(maxLinkCost, random));
+            }
+        }
+    }
+
+    /**
+     * Generates a Barabasi-Albert preferential attachment graph. It starts from a clique of linksPerNode + 1 nodes and
+     * links every further node to linksPerNode distinct existing nodes picked with probability proportional to their
+     * degree.
+     *
+     * @param builder      the builder the links are added to
+     * @param numOfNodes   number of nodes
+     * @param linksPerNode number of links of every added node
+     * @param maxLinkCost  link costs are drawn from [1, maxLinkCost]
+     * @param random       source of randomness
+     */
+    public static void barabasiAlbert(LinkTopology.Builder builder, int numOfNodes, int linksPerNode, int maxLinkCost, Random random) {
+        int initialNodes = Math.min(numOfNodes, linksPerNode + 1);
+
+        // every link appears twice, once per endpoint, so a uniform pick is proportional to the degree
+        long numOfLinks = (long) initialNodes * (initialNodes - 1) / 2 + (long) (numOfNodes - initialNodes) * linksPerNode;
+        int[] endpoints = new int[(int) Math.min(Integer.MAX_VALUE - 8, 2 * numOfLinks)];
+        int size = 0;
+
+        for (int v = 1; v < initialNodes; v++) {
+            for (int w = 0; w < v; w++) {
+                builder.addLink(w, v, linkCost(maxLinkCost, random));
+                endpoints[size++] = w;
+                endpoints[size++] = v;
+            }
+        }
+
+        int[] targets = new int[linksPerNode];
+        for (int v = initialNodes; v < numOfNodes; v++) {
+            int found = 0;
+            while (found < linksPerNode) {
+                int target = size == 0 ? random.nextInt(v) : endpoints[random.nextInt(size)];
+                if (!contains(targets, found, target)) {
+                    targets[found++] = target;
+                }
+            }
+            for (int i = 0; i < linksPerNode; i++) {
+                builder.addLink(targets[i], v, linkCost(maxLinkCost, random));
+                endpoints[size++] = targets[i];
+                endpoints[size++] = v;
+            }
+        }
+    }
+
+    /**
+     * Generates a 2D grid, or a torus when the rows and columns wrap around. The nodes are laid out row by row in rows
+     * of ceil(sqrt(numOfNodes)) nodes, the last row may be shorter.
+     *
+     * @param builder     the builder the links are added to
+     * @param numOfNodes  number of nodes
+     * @param torus       true to link the ends of every row and column
+     * @param maxLinkCost link costs are drawn from [1, maxLinkCost]
+     * @param random      source of randomness
+     */
+    public static void grid(LinkTopology.Builder builder, int numOfNodes, boolean torus, int maxLinkCost, Random random) {
+        int width = (int) Math.ceil(Math.sqrt(numOfNodes));
+        int height = (numOfNodes + width - 1) / width;
+        for (int node = 0; node < numOfNodes; node++) {
+            int row = node / width;
+            int column = node % width;
+            int rowLength = Math.min(width, numOfNodes - row * width);
+            int columnLength = column < numOfNodes - (height - 1) * width ? height : height - 1;
+
+            if (column + 1 < rowLength) {
+                builder.addLink(node, node + 1, linkCost(maxLinkCost, random));
+            } else if (torus && rowLength > 2) {
+                builder.addLink(row * width, node, linkCost(maxLinkCost, random));
+            }
+
+            if (row + 1 < columnLength) {
+                builder.addLink(node, node + width, linkCost(maxLinkCost, random));
+            } else if (torus && columnLength > 2) {
+                builder.addLink(column, node, linkCost(maxLinkCost, random));
+            }
+        }
+    }
+
+    /**
+     * Helper method for the size of a fat-tree
+     *
+     * @param k the number of ports of every switch, even
+     * @return the number of nodes of the fat-tree, switches and hosts
+     */
+    public static long fatTreeNodes(int k) {
+        long half = k / 2;
+        return half * half + 2L * k * half + k * half * half;
+    }
+
+    /**
+     * Generates a k-ary fat-tree. The (k/2)^2 core switches come first, then every pod with its k/2 aggregation and
+     * k/2 edge switches, then the k/2 hosts of every edge switch.
+     *
+     * @param builder     the builder the links are added to
+     * @param k           the number of ports of every switch, even
+     * @param maxLinkCost link costs are drawn from [1, maxLinkCost]
+     * @param random      source of randomness
+     */
+    public static void fatTree(LinkTopology.Builder builder, int k, int maxLinkCost, Random random) {
+        int half = k / 2;
+        int firstPod = half * half;
+        int firstHost = firstPod + k * k;
+        for (int pod = 0; pod < k; pod++) {
+            int firstAggregation = firstPod + pod * k;
+            int firstEdge = firstAggregation + half;
+            for (int a = 0; a < half; a++) {
+                // aggregation switch a reaches the a-th group of core switches
+                for (int c = 0; c < half; c++) {
+                    builder.addLink(a * half + c, firstAggregation + a, linkCost(maxLinkCost, random));
+                }
+            }
+            for (int e = 0; e < half; e++) {
+                for (int a = 0; a < half; a++) {
+                    builder.addLink(firstAggregation + a, firstEdge + e, linkCost(maxLinkCost, random));
+                }
+                int hosts = firstHost + (pod * half + e) * half;
+                for (int h = 0; h < half; h++) {
+                    builder.addLink(firstEdge + e, hosts + h, linkCost(maxLinkCost, random));
+                }
+            }
+        }
+    }
+
+    /**
+     * Generates a schedule of link failures. The failing links are picked uniformly among the links of the topology,
+     * every link fails at most once.
+     *
+     * @param topology     the links of the network
+     * @param numOfFailures number of failures, capped at the number of links
+     * @param maxExchanges failures happen after exchanges drawn from [0, maxExchanges)
+     * @param random       source of randomness
+     * @param listener     receiver of the failures
+     */
+    public static void linkFailures(LinkTopology topology, int numOfFailures, int maxExchanges, Random random, LinkChangeListener listener) {
+        linkFailures(topology, numOfFailures, 0, maxExchanges, random, listener);
+    }
+
+    /**
+     * Generates a schedule of link failures within a window of exchanges. The failing links are picked uniformly among
+     * the links of the topology, every link fails at most once.
+     *
+     * @param topology      the links of the network
+     * @param numOfFailures number of failures, capped at the number of links
+     * @param firstExchange failures happen after exchanges drawn from [firstExchange, firstExchange + spread)
+     * @param spread        number of exchanges the failures are spread over
+     * @param random        source of randomness
+     * @param listener      receiver of the failures
+     */
+    public static void linkFailures(LinkTopology topology, int numOfFailures, int firstExchange, int spread, Random random, LinkChangeListener listener) {
+        int numOfSlots = 2 * topology.getNumOfLinks();
+        numOfFailures = Math.min(numOfFailures, topology.getNumOfLinks());
+        HashSet<Integer> failedSlots = new HashSet<Integer>();
+        while (failedSlots.size() < numOfFailures) {
+            int slot = random.nextInt(numOfSlots);
+            int reverseSlot = topology.getReverseSlot(slot);
+            if (!failedSlots.contains(reverseSlot) && failedSlots.add(slot)) {
+                int node1Id = topology.getNeighbour(reverseSlot);
+                int node2Id = topology.getNeighbour(slot);
+                listener.onLinkChange(node1Id, node2Id, firstExchange + random.nextInt(spread), RouteTable.FAILED_LINK_COST);
+            }
+        }
+    }
+
+    /**
+     * Helper method for drawing a link cost
+     */
+    private static int linkCost(int maxLinkCost, Random random) {
+        return maxLinkCost == 1 ? 1 : 1 + random.nextInt(maxLinkCost);
+    }
+
+    /**
+     * Helper method for looking for a value among the first values of an array
+     */
+    private static boolean contains(int[] values, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -5,18 +5,32 @@ public class TraceRouteTableEvent extends ScheduledEvent {
 
     private final NetworkNode node;
 
-    public TraceRouteTableEvent(NetworkNode node, Integer exchangeStartIndex, Integer exchangeEndIndex) {
-        super(exchangeStartIndex);
+    /**
+     * The exchange after the last one after which the table is printed
+     */
+    private final Integer exchangeEndIndex;
+
+    public TraceRouteTableEvent(NetworkNode node, Integer exchangeStartIndex, Integer exchangeEndIndex, SimulationEventSink sink) {
+        super(exchangeStartIndex, sink);
         this.node = node;
+        this.exchangeEndIndex = exchangeEndIndex;
+    }
+
+    public NetworkNode getNode() {
+        return node;
+    }
+
+    public Integer getExchangeEndIndex() {
+        return exchangeEndIndex;
     }
 
     @Override
     public void executeEvent(Integer currentExchange) {
         // for clarity
-        System.out.println(this.toString());
+        sink.message(this.toString() + "\n");
 
         // print table
-        node.printTable();
+        node.printTable(sink);
     }
 
     @Override
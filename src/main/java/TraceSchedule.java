@@ -0,0 +1,148 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Schedule of the events which print the routing table of a node after every exchange of a range.
+ * <p>
+ * Every trace is stored once, under the exchange it starts after, rather than once per exchange of its range. A
+ * {@link Cursor} walks the exchanges in ascending order: it activates the traces whose range has started and drops the
+ * ones whose range has ended, so an exchange costs O(active traces) and a trace costs nothing until its first exchange.
+ * The active traces run in the order they were scheduled.
+ */
+public class TraceSchedule {
+
+    /**
+     * Every scheduled trace, indexed by the order it was scheduled in
+     */
+    private final ArrayList<TraceRouteTableEvent> traces = new ArrayList<TraceRouteTableEvent>();
+
+    /**
+     * Indices of the traces by the exchange they start after
+     */
+    private final TreeMap<Integer, ArrayList<Integer>> starts = new TreeMap<Integer, ArrayList<Integer>>();
+
+    /**
+     * Schedules a trace. The traces must be scheduled before a cursor walks past their first exchange.
+     *
+     * @param event the trace
+     */
+    public void add(TraceRouteTableEvent event) {
+        if (event.getExchangeEndIndex() <= event.getAfterExchange()) {
+            // an empty range never prints
+            return;
+        }
+        ArrayList<Integer> startingTraces = starts.get(event.getAfterExchange());
+        if (startingTraces == null) {
+            startingTraces = new ArrayList<Integer>();
+            starts.put(event.getAfterExchange(), startingTraces);
+        }
+        startingTraces.add(traces.size());
+        traces.add(event);
+    }
+
+    /**
+     * Drops every scheduled trace. No cursor may have moved yet.
+     */
+    public void clear() {
+        traces.clear();
+        starts.clear();
+    }
+
+    /**
+     * @return every scheduled trace in the order they were scheduled
+     */
+    public List<TraceRouteTableEvent> getTraces() {
+        return Collections.unmodifiableList(traces);
+    }
+
+    /**
+     * @return a cursor before the first exchange
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walk over the exchanges in ascending order which keeps the traces active in the current one.
+     */
+    public class Cursor {
+
+        /**
+         * Indices of the active traces in ascending order
+         */
+        private int[] activeIndices = new int[4];
+        private int numOfActive;
+
+        /**
+         * The active traces in the order they were scheduled
+         */
+        private final ArrayList<TraceRouteTableEvent> active = new ArrayList<TraceRouteTableEvent>();
+        private final List<TraceRouteTableEvent> activeView = Collections.unmodifiableList(active);
+
+        /**
+         * The exchanges whose traces have been activated are the ones before this one
+         */
+        private int nextStart = Integer.MIN_VALUE;
+
+        /**
+         * Moves the cursor to an exchange
+         *
+         * @param exchange the exchange index, not lower than the previous one
+         * @return the traces which print after the exchange, in the order they were scheduled. The list is reused by
+         * the next move.
+         */
+        public List<TraceRouteTableEvent> moveTo(int exchange) {
+            boolean changed = false;
+
+            // drop the traces which have ended
+            int kept = 0;
+            for (int i = 0; i < numOfActive; i++) {
+                if (traces.get(activeIndices[i]).getExchangeEndIndex() > exchange) {
+                    activeIndices[kept++] = activeIndices[i];
+                }
+            }
+            changed |= kept != numOfActive;
+            numOfActive = kept;
+
+            // activate the traces which have started, also the ones which started before the cursor
+            if (exchange >= nextStart) {
+                for (Map.Entry<Integer, ArrayList<Integer>> entry : starts.subMap(nextStart, true, exchange, true).entrySet()) {
+                    for (int index : entry.getValue()) {
+                        if (traces.get(index).getExchangeEndIndex() > exchange) {
+                            activate(index);
+                            changed = true;
+                        }
+                    }
+                }
+                nextStart = exchange + 1;
+            }
+
+            if (changed) {
+                active.clear();
+                for (int i = 0; i < numOfActive; i++) {
+                    active.add(traces.get(activeIndices[i]));
+                }
+            }
+            return activeView;
+        }
+
+        /**
+         * Helper method for adding a trace to the active ones in the order of their indices
+         */
+        private void activate(int index) {
+            if (numOfActive == activeIndices.length) {
+                activeIndices = Arrays.copyOf(activeIndices, 2 * numOfActive);
+            }
+            int i = numOfActive++;
+            while (i > 0 && activeIndices[i - 1] > index) {
+                activeIndices[i] = activeIndices[i - 1];
+                i--;
+            }
+            activeIndices[i] = index;
+        }
+    }
+}
@@ -0,0 +1,416 @@
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Data plane of the network: forwards the packets of a list of flows hop by hop along the next hops of the nodes.
+ * <p>
+ * A packet is delivered when it reaches its destination, dropped when a node on its way has no route to the destination
+ * (its route is at infinity), lost when the link to the next hop is down, and looped when its time to live runs out.
+ * The routing tables do not change while the packets are forwarded, so the packets of a flow all take the same path and
+ * every flow is followed once per forwarding. The flows are sorted by destination and split into a fixed number of
+ * chunks which are forwarded in parallel on a {@link ForkJoinPool}; every chunk counts the packets it sends over each
+ * link in its own array, and the arrays are added up once all chunks have finished. The stretch of a delivered flow is
+ * the cost of its path over the cost of the shortest path, which is searched once per destination and only again after
+ * a link cost has changed.
+ */
+public class TrafficEngine {
+
+    /**
+     * Number of chunks per thread, so that the threads stay busy when the chunks take different times
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Number of busiest links printed in the summary
+     */
+    private static final int BUSIEST_LINKS = 5;
+
+    /**
+     * All the nodes of the network indexed by node id
+     */
+    private final NetworkNode[] nodes;
+
+    /**
+     * The links of the network with their current costs
+     */
+    private final LinkTopology topology;
+
+    /**
+     * The cost at which routes are dropped
+     */
+    private final int infinityCost;
+
+    /**
+     * Number of hops after which a packet is taken to be looping
+     */
+    private final int timeToLive;
+
+    /**
+     * Source, destination and packets of every flow, sorted by destination
+     */
+    private final int[] flowSources;
+    private final int[] flowDestinations;
+    private final int[] flowPackets;
+
+    /**
+     * Cost of the shortest path of every flow, infinity if its destination is out of reach
+     */
+    private final int[] flowShortest;
+
+    /**
+     * First flow of every chunk, and the end of the last chunk. A chunk never splits the flows of a destination.
+     */
+    private final int[] chunkStarts;
+
+    /**
+     * Packets every chunk sent over each link in the latest forwarding, indexed by chunk and slot. The slot of a link
+     * at a node stands for the direction away from the node.
+     */
+    private final long[][] chunkLinkPackets;
+
+    /**
+     * Packets sent over each link in all forwardings, indexed by slot
+     */
+    private final long[] linkPackets;
+
+    /**
+     * Counts of all forwardings
+     */
+    private final Traffic total = new Traffic();
+
+    /**
+     * Number of forwardings
+     */
+    private int forwardings;
+
+    /**
+     * Whether a link cost has changed since the shortest paths were searched
+     */
+    private boolean linksChanged = true;
+
+    /**
+     * Constructor
+     *
+     * @param nodes        {@link #nodes}
+     * @param topology     {@link #topology}
+     * @param infinityCost {@link #infinityCost}
+     * @param timeToLive   {@link #timeToLive}
+     * @param sources      the source of every flow
+     * @param destinations the destination of every flow, different from its source
+     * @param packets      the packets of every flow per forwarding
+     * @param threads      the number of threads the packets are forwarded on
+     */
+    public TrafficEngine(NetworkNode[] nodes, LinkTopology topology, int infinityCost, int timeToLive, int[] sources, int[] destinations, int[] packets, int threads) {
+        this.nodes = nodes;
+        this.topology = topology;
+        this.infinityCost = infinityCost;
+        this.timeToLive = timeToLive;
+        int numOfFlows = sources.length;
+
+        // counting sort of the flows by destination
+        int[] destinationStarts = new int[nodes.length + 1];
+        for (int destinationId : destinations) {
+            destinationStarts[destinationId + 1]++;
+        }
+        for (int destinationId = 0; destinationId < nodes.length; destinationId++) {
+            destinationStarts[destinationId + 1] += destinationStarts[destinationId];
+        }
+        flowSources = new int[numOfFlows];
+        flowDestinations = new int[numOfFlows];
+        flowPackets = new int[numOfFlows];
+        flowShortest = new int[numOfFlows];
+        int[] next = Arrays.copyOf(destinationStarts, nodes.length);
+        for (int flow = 0; flow < numOfFlows; flow++) {
+            int sorted = next[destinations[flow]]++;
+            flowSources[sorted] = sources[flow];
+            flowDestinations[sorted] = destinations[flow];
+            flowPackets[sorted] = packets[flow];
+        }
+
+        // cut the flows into chunks of about the same size at the boundaries between destinations
+        int numOfChunks = Math.max(1, Math.min(numOfFlows, CHUNKS_PER_THREAD * threads));
+        int[] starts = new int[numOfChunks + 1];
+        int chunks = 0;
+        for (int flow = 0; flow < numOfFlows; ) {
+            starts[chunks++] = flow;
+            int end = Math.min(numOfFlows, flow + (numOfFlows + numOfChunks - 1) / numOfChunks);
+            flow = end < numOfFlows ? destinationStarts[flowDestinations[end - 1] + 1] : end;
+        }
+        starts[chunks] = numOfFlows;
+        chunkStarts = Arrays.copyOf(starts, chunks + 1);
+        // every link has a slot at each end, one per direction
+        chunkLinkPackets = new long[chunks][2 * topology.getNumOfLinks()];
+        linkPackets = new long[2 * topology.getNumOfLinks()];
+    }
+
+    /**
+     * Handles change in the cost of a link, after which the shortest paths have to be searched again
+     */
+    public void onLinkCostChange() {
+        linksChanged = true;
+    }
+
+    /**
+     * Forwards the packets of every flow once. The routing tables and the link costs must not change while the packets
+     * are forwarded.
+     *
+     * @param pool the pool the packets are forwarded on
+     * @return the counts of the forwarding
+     */
+    public Traffic forward(ForkJoinPool pool) {
+        boolean searchPaths = linksChanged;
+        linksChanged = false;
+        Traffic traffic = pool.invoke(new ForwardingTask(searchPaths, 0, chunkLinkPackets.length));
+
+        // add up the packets of every link
+        long busiestCount = -1;
+        for (int slot = 0; slot < linkPackets.length; slot++) {
+            long count = 0;
+            for (long[] packets : chunkLinkPackets) {
+                count += packets[slot];
+            }
+            linkPackets[slot] += count;
+            if (count > busiestCount) {
+                busiestCount = count;
+                traffic.busiestSlot = slot;
+            }
+        }
+        traffic.busiestPackets = busiestCount;
+        forwardings++;
+        total.add(traffic);
+        return traffic;
+    }
+
+    /**
+     * Getter for the counts of all forwardings
+     *
+     * @return the counts of all forwardings so far
+     */
+    public Traffic getTotal() {
+        return total;
+    }
+
+    /**
+     * Prints the links which carried the most packets in all forwardings
+     *
+     * @return one line per link, busiest first
+     */
+    public String busiestLinks() {
+        // slots of the busiest links in descending order of packets
+        int[] busiest = new int[Math.min(BUSIEST_LINKS, linkPackets.length)];
+        int count = 0;
+        int used = 0;
+        for (int slot = 0; slot < linkPackets.length; slot++) {
+            if (linkPackets[slot] == 0) {
+                continue;
+            }
+            used++;
+            int i = Math.min(count, busiest.length - 1);
+            if (count == busiest.length && linkPackets[slot] <= linkPackets[busiest[i]]) {
+                continue;
+            }
+            while (i > 0 && linkPackets[busiest[i - 1]] < linkPackets[slot]) {
+                busiest[i] = busiest[i - 1];
+                i--;
+            }
+            busiest[i] = slot;
+            count = Math.min(count + 1, busiest.length);
+        }
+
+        StringBuilder b = new StringBuilder();
+        b.append(used).append(" of ").append(linkPackets.length).append(" link directions carried packets, the busiest:\n");
+        for (int i = 0; i < count; i++) {
+            int slot = busiest[i];
+            b.append(String.format(Locale.ROOT, "\t%s: %d packets, %.1f per round, %.2f%% of the packets sent\n", linkName(slot),
+                    linkPackets[slot], (double) linkPackets[slot] / forwardings, 100.0 * linkPackets[slot] / Math.max(1, total.packets)));
+        }
+        return b.toString();
+    }
+
+    /**
+     * Helper method for naming the link of a slot by its ends
+     */
+    private String linkName(int slot) {
+        // the slots of a node are contiguous, so the node owning a slot is found by binary search over the nodes
+        int low = 0;
+        int high = nodes.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (topology.firstSlot(mid) <= slot) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + "->" + topology.getNeighbour(slot);
+    }
+
+    /**
+     * Counts of the packets of one or more forwardings.
+     */
+    public class Traffic {
+        private long flows;
+        private long packets;
+        private long delivered;
+        private long looped;
+        private long dropped;
+        private long lost;
+        private long hops;
+        private double stretch;
+        private long stretched;
+        private double maxStretch;
+        private int busiestSlot = -1;
+        private long busiestPackets;
+
+        /**
+         * Helper method for adding the counts of another part of the forwarding
+         */
+        private Traffic add(Traffic other) {
+            flows += other.flows;
+            packets += other.packets;
+            delivered += other.delivered;
+            looped += other.looped;
+            dropped += other.dropped;
+            lost += other.lost;
+            hops += other.hops;
+            stretch += other.stretch;
+            stretched += other.stretched;
+            maxStretch = Math.max(maxStretch, other.maxStretch);
+            return this;
+        }
+
+        public long getPackets() {
+            return packets;
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public long getLooped() {
+            return looped;
+        }
+
+        public long getDropped() {
+            return dropped;
+        }
+
+        public long getLost() {
+            return lost;
+        }
+
+        /**
+         * @return the mean stretch of the delivered packets with a shortest path of positive cost
+         */
+        public double getMeanStretch() {
+            return stretched == 0 ? 1.0 : stretch / stretched;
+        }
+
+        @Override
+        public String toString() {
+            String text = String.format(Locale.ROOT, "%d packets of %d flows: %d delivered (%.2f%%), %d looped, %d dropped at infinity, %d lost on down links, mean %.2f hops, stretch mean %.3f max %.2f",
+                    packets, flows, delivered, packets == 0 ? 100.0 : 100.0 * delivered / packets, looped, dropped, lost,
+                    delivered == 0 ? 0.0 : (double) hops / delivered, getMeanStretch(), Math.max(1.0, maxStretch));
+            if (busiestSlot != -1 && busiestPackets > 0) {
+                text += ", busiest link " + linkName(busiestSlot) + " with " + busiestPackets + " packets";
+            }
+            return text;
+        }
+    }
+
+    /**
+     * Task forwarding the flows of a range of chunks
+     */
+    private class ForwardingTask extends RecursiveTask<Traffic> {
+        private static final long serialVersionUID = 1L;
+        private final boolean searchPaths;
+        private final int from;
+        private final int to;
+
+        ForwardingTask(boolean searchPaths, int from, int to) {
+            this.searchPaths = searchPaths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Traffic compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ForwardingTask left = new ForwardingTask(searchPaths, from, mid);
+                left.fork();
+                Traffic right = new ForwardingTask(searchPaths, mid, to).compute();
+                return left.join().add(right);
+            }
+
+            long[] packetsOnLink = chunkLinkPackets[from];
+            Arrays.fill(packetsOnLink, 0);
+            if (searchPaths) {
+                searchShortestPaths(chunkStarts[from], chunkStarts[from + 1]);
+            }
+            Traffic traffic = new Traffic();
+            for (int flow = chunkStarts[from]; flow < chunkStarts[from + 1]; flow++) {
+                int destinationId = flowDestinations[flow];
+                NetworkNode destination = nodes[destinationId];
+                int packets = flowPackets[flow];
+                traffic.flows++;
+                traffic.packets += packets;
+
+                // follow the next hops until the destination, a node without a route, a down link or the time to live
+                int hop = flowSources[flow];
+                int hopCount = 0;
+                int cost = 0;
+                int nextHop = 0;
+                while (hop != destinationId && hopCount < timeToLive) {
+                    nextHop = nodes[hop].getNextHopToDest(destination);
+                    if (nextHop == RouteTable.NO_NEXT_HOP) {
+                        break;
+                    }
+                    int slot = topology.findSlot(hop, nextHop);
+                    if (slot == -1 || topology.getCost(slot) < 0) {
+                        break;
+                    }
+                    packetsOnLink[slot] += packets;
+                    cost += topology.getCost(slot);
+                    hopCount++;
+                    hop = nextHop;
+                }
+
+                if (hop == destinationId) {
+                    traffic.delivered += packets;
+                    traffic.hops += (long) hopCount * packets;
+                    int shortest = flowShortest[flow];
+                    if (shortest > 0 && shortest < infinityCost) {
+                        double stretch = (double) cost / shortest;
+                        traffic.stretch += stretch * packets;
+                        traffic.stretched += packets;
+                        traffic.maxStretch = Math.max(traffic.maxStretch, stretch);
+                    }
+                } else if (hopCount == timeToLive) {
+                    traffic.looped += packets;
+                } else if (nextHop == RouteTable.NO_NEXT_HOP) {
+                    traffic.dropped += packets;
+                } else {
+                    traffic.lost += packets;
+                }
+            }
+            return traffic;
+        }
+
+        /**
+         * Helper method for searching the shortest paths of a range of flows, once per destination
+         */
+        private void searchShortestPaths(int firstFlow, int endFlow) {
+            ShortestPathOracle.Search search = new ShortestPathOracle.Search(topology, nodes.length, infinityCost);
+            int[] distance = null;
+            for (int flow = firstFlow; flow < endFlow; flow++) {
+                if (flow == firstFlow || flowDestinations[flow] != flowDestinations[flow - 1]) {
+                    distance = search.distancesTo(flowDestinations[flow]);
+                }
+                flowShortest[flow] = distance[flowSources[flow]];
+            }
+        }
+    }
+}